@@ -0,0 +1,309 @@
+package com.simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * In-place MSD radix sort on bytes (American flag sort) for signed ints and
+ * longs. Each pass counts the keys per byte value, then cycles every element
+ * into its bucket with swaps, so no output array is needed; the buckets are
+ * then sorted on the next byte down. The sign bit is flipped while reading a
+ * digit, which puts negative keys first. Leading bytes that all keys share
+ * are skipped after one counting pass, and ranges of at most {@value #INSERTION_SORT_THRESHOLD}
+ * elements finish with insertion sort.
+ * <p>
+ * Ranges larger than the sequential cutoff are partitioned on the calling
+ * worker and their buckets handed to the fork/join pool, one task each.
+ * Scratch memory is reported once up front, as the counters each pool
+ * thread holds at most, since thousands of small tasks never hold theirs at once.
+ */
+public final class AmericanFlagSort {
+
+    private static final int RADIX = 256;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    // Counters of one partitioning task plus one sequential sort below it
+    private static final long WORKER_SCRATCH_BYTES =
+            ((2L * RADIX + 1) + (Integer.BYTES * (RADIX + 1L) + RADIX)) * Integer.BYTES;
+
+    private AmericanFlagSort() {
+    }
+
+    // ==================== INT KEYS ====================
+
+    /**
+     * Sorts the int array, reporting a highlight for every key read while
+     * counting and a swap for every element moved into its bucket.
+     */
+    public static void sort(int[] array, StepSink sink, int cutoff) {
+        if (array.length < 2) return;
+        long scratch = WORKER_SCRATCH_BYTES * ForkJoinPool.getCommonPoolParallelism();
+        sink.allocate(scratch);
+        // The root task records into the caller's sink; invoke() hands it over and back
+        ForkJoinPool.commonPool().invoke(new IntTask(array, sink, 0, array.length, Integer.SIZE - 8, cutoff));
+        sink.release(scratch);
+    }
+
+    private static int digit(int value, int shift) {
+        return ((value ^ Integer.MIN_VALUE) >>> shift) & (RADIX - 1);
+    }
+
+    private static class IntTask extends RecursiveAction {
+        private final int[] array;
+        private final StepSink sink;
+        private final int from, to, shift, cutoff;
+
+        IntTask(int[] array, StepSink sink, int from, int to, int shift, int cutoff) {
+            this.array = array;
+            this.sink = sink;
+            this.from = from;
+            this.to = to;
+            this.shift = shift;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            sink.lane(from, to);
+            if (to - from <= cutoff) {
+                sortSequential(array, sink, from, to, shift);
+                return;
+            }
+            sink.enterCall();
+            int[] bounds = new int[RADIX + 1];
+            int used = partition(array, sink, from, to, shift, bounds, new int[RADIX]);
+            if (used > 0) {
+                // Every bucket is independent now; each gets its own worker
+                List<IntTask> tasks = new ArrayList<>();
+                for (int b = 0; b < RADIX; b++) {
+                    if (bounds[b + 1] - bounds[b] > 1) {
+                        tasks.add(new IntTask(array, sink.fork(), bounds[b], bounds[b + 1], used - 8, cutoff));
+                    }
+                }
+                invokeAll(tasks);
+                sink.join(tasks.stream().map(task -> task.sink).toArray(StepSink[]::new));
+            }
+            sink.exitCall();
+        }
+    }
+
+    private static void sortSequential(int[] array, StepSink sink, int from, int to, int shift) {
+        if (to - from < 2) return;
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(array, sink, from, to);
+            return;
+        }
+        // One bounds array per byte position; a range's children always sit on a lower byte
+        int[][] bounds = new int[Integer.BYTES][RADIX + 1];
+        sortRange(array, sink, from, to, shift, bounds, new int[RADIX]);
+    }
+
+    private static void sortRange(int[] array, StepSink sink, int from, int to, int shift,
+                                  int[][] bounds, int[] counts) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(array, sink, from, to);
+            return;
+        }
+        sink.enterCall();
+        int used = partition(array, sink, from, to, shift, bounds[shift / 8], counts);
+        if (used > 0) {
+            int[] buckets = bounds[shift / 8];
+            for (int b = 0; b < RADIX; b++) {
+                if (buckets[b + 1] - buckets[b] > 1) {
+                    sortRange(array, sink, buckets[b], buckets[b + 1], used - 8, bounds, counts);
+                }
+            }
+        }
+        sink.exitCall();
+    }
+
+    /**
+     * Distributes [from, to) into buckets by the byte at {@code shift}, or by
+     * the highest lower byte the keys differ in if they all share that one.
+     * Fills {@code bounds} with the bucket starts (plus {@code to}) and returns
+     * the shift used, or -1 if all keys are equal.
+     */
+    private static int partition(int[] array, StepSink sink, int from, int to, int shift,
+                                 int[] bounds, int[] counts) {
+        Arrays.fill(counts, 0);
+        int first = array[from];
+        int differing = 0;
+        for (int i = from; i < to; i++) {
+            counts[digit(array[i], shift)]++;
+            differing |= array[i] ^ first;
+            sink.highlight(i);
+        }
+        if (counts[digit(first, shift)] == to - from) {
+            // All keys share this byte; count again on the highest byte where any differ
+            if (differing == 0) return -1;
+            shift = (31 - Integer.numberOfLeadingZeros(differing)) & ~7;
+            Arrays.fill(counts, 0);
+            for (int i = from; i < to; i++) {
+                counts[digit(array[i], shift)]++;
+                sink.highlight(i);
+            }
+        }
+
+        bounds[0] = from;
+        for (int b = 0; b < RADIX; b++) {
+            bounds[b + 1] = bounds[b] + counts[b];
+        }
+        // counts now holds the next free slot of every bucket
+        System.arraycopy(bounds, 0, counts, 0, RADIX);
+        for (int b = 0; b < RADIX; b++) {
+            int end = bounds[b + 1];
+            while (counts[b] < end) {
+                int i = counts[b];
+                int value = array[i];
+                int d = digit(value, shift);
+                // Carry the element to its bucket and pick up whatever sat there, until
+                // one belongs in slot i; each hop is a swap of slot i with the target
+                while (d != b) {
+                    int j = counts[d]++;
+                    int displaced = array[j];
+                    array[j] = value;
+                    sink.swap(i, j);
+                    value = displaced;
+                    d = digit(value, shift);
+                }
+                array[i] = value;
+                counts[b]++;
+            }
+        }
+        return shift;
+    }
+
+    private static void insertionSort(int[] array, StepSink sink, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from; j--) {
+                sink.compare(j - 1, j);
+                if (array[j - 1] <= array[j]) break;
+                int temp = array[j - 1];
+                array[j - 1] = array[j];
+                array[j] = temp;
+                sink.swap(j - 1, j);
+            }
+        }
+    }
+
+    // ==================== LONG KEYS ====================
+
+    /** Sorts the long array with the same scheme; long keys are never traced. */
+    public static void sort(long[] array, int cutoff) {
+        if (array.length < 2) return;
+        ForkJoinPool.commonPool().invoke(new LongTask(array, 0, array.length, Long.SIZE - 8, cutoff));
+    }
+
+    private static int digit(long value, int shift) {
+        return (int) ((value ^ Long.MIN_VALUE) >>> shift) & (RADIX - 1);
+    }
+
+    private static class LongTask extends RecursiveAction {
+        private final long[] array;
+        private final int from, to, shift, cutoff;
+
+        LongTask(long[] array, int from, int to, int shift, int cutoff) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+            this.shift = shift;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= cutoff) {
+                sortSequential(array, from, to, shift);
+                return;
+            }
+            int[] bounds = new int[RADIX + 1];
+            int used = partition(array, from, to, shift, bounds, new int[RADIX]);
+            if (used > 0) {
+                List<LongTask> tasks = new ArrayList<>();
+                for (int b = 0; b < RADIX; b++) {
+                    if (bounds[b + 1] - bounds[b] > 1) {
+                        tasks.add(new LongTask(array, bounds[b], bounds[b + 1], used - 8, cutoff));
+                    }
+                }
+                invokeAll(tasks);
+            }
+        }
+    }
+
+    private static void sortSequential(long[] array, int from, int to, int shift) {
+        if (to - from < 2) return;
+        sortRange(array, from, to, shift, new int[Long.BYTES][RADIX + 1], new int[RADIX]);
+    }
+
+    private static void sortRange(long[] array, int from, int to, int shift, int[][] bounds, int[] counts) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(array, from, to);
+            return;
+        }
+        int used = partition(array, from, to, shift, bounds[shift / 8], counts);
+        if (used > 0) {
+            int[] buckets = bounds[shift / 8];
+            for (int b = 0; b < RADIX; b++) {
+                if (buckets[b + 1] - buckets[b] > 1) {
+                    sortRange(array, buckets[b], buckets[b + 1], used - 8, bounds, counts);
+                }
+            }
+        }
+    }
+
+    private static int partition(long[] array, int from, int to, int shift, int[] bounds, int[] counts) {
+        Arrays.fill(counts, 0);
+        long first = array[from];
+        long differing = 0;
+        for (int i = from; i < to; i++) {
+            counts[digit(array[i], shift)]++;
+            differing |= array[i] ^ first;
+        }
+        if (counts[digit(first, shift)] == to - from) {
+            if (differing == 0) return -1;
+            shift = (63 - Long.numberOfLeadingZeros(differing)) & ~7;
+            Arrays.fill(counts, 0);
+            for (int i = from; i < to; i++) {
+                counts[digit(array[i], shift)]++;
+            }
+        }
+
+        bounds[0] = from;
+        for (int b = 0; b < RADIX; b++) {
+            bounds[b + 1] = bounds[b] + counts[b];
+        }
+        System.arraycopy(bounds, 0, counts, 0, RADIX);
+        for (int b = 0; b < RADIX; b++) {
+            int end = bounds[b + 1];
+            while (counts[b] < end) {
+                int i = counts[b];
+                long value = array[i];
+                int d = digit(value, shift);
+                while (d != b) {
+                    int j = counts[d]++;
+                    long displaced = array[j];
+                    array[j] = value;
+                    value = displaced;
+                    d = digit(value, shift);
+                }
+                array[i] = value;
+                counts[b]++;
+            }
+        }
+        return shift;
+    }
+
+    private static void insertionSort(long[] array, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            long key = array[i];
+            int j = i - 1;
+            while (j >= from && array[j] > key) {
+                array[j + 1] = array[j];
+                j--;
+            }
+            array[j + 1] = key;
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.simulator;
 
 import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.chart.*;
 import javafx.scene.control.*;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.VBox;
 import java.util.*;
 
 public class AnalysisController {
@@ -43,11 +46,34 @@ public class AnalysisController {
     @FXML private TableColumn<Row, String> dWorstColumn;
     @FXML private TableColumn<Row, String> dSpaceColumn;
 
+    // Simulated cache behaviour
+    @FXML private VBox cachePane;
+    @FXML private TextField cacheElementsField, l1SizeField, l2SizeField, associativityField, lineSizeField;
+    @FXML private Button simulateCacheButton;
+    @FXML private Label cacheNameALabel, cacheNameBLabel, cacheStatsALabel, cacheStatsBLabel, cacheStatusLabel;
+    @FXML private Pane heatmapAHost, heatmapBHost;
+
+    // Every access goes through the cache model, so large quadratic runs get a smaller array
+    private static final long MAX_CACHE_SIMULATION_STEPS = 50_000_000L;
+    private static final int MAX_CACHE_ELEMENTS = 1 << 22;
+    private static final int HEATMAP_CELLS = 128;
+    // Fixed, so repeated simulations of the same pair are comparable
+    private static final long CACHE_INPUT_SEED = 42;
+    private static final String HEATMAP_LEGEND =
+            "Heatmap: L1 misses along the array (index 0 on the left), blue = few, red = many, same scale for both.";
+
     private AlgorithmRepository repo;
+    private final SortingService sortingService = new SortingService();
+    private CacheHeatmapRenderer heatmapA, heatmapB;
+    private Task<CacheSink[]> cacheTask;
 
     @FXML
     public void initialize() {
         repo = AlgorithmRepository.getInstance();
+        if (heatmapAHost != null && heatmapBHost != null) {
+            heatmapA = new CacheHeatmapRenderer(heatmapAHost);
+            heatmapB = new CacheHeatmapRenderer(heatmapBHost);
+        }
         setupControls();
         setupTable();
         setupDomainTable();
@@ -153,6 +179,7 @@ public class AnalysisController {
             comparisonTable.setItems(FXCollections.observableArrayList());
             complexityChart.getData().clear();
             performanceChart.getData().clear();
+            resetCacheSimulation(null, null);
             return;
         }
 
@@ -177,6 +204,126 @@ public class AnalysisController {
 
         // Narrative
         analysisText.setText(buildNarrative(cat, A, B));
+        resetCacheSimulation(A.getName(), B.getName());
+    }
+
+    // Shows the cache panel only when both algorithms can be run, and drops stale results
+    private void resetCacheSimulation(String aName, String bName) {
+        if (cachePane == null) return;
+        boolean runnable = aName != null && bName != null
+                && sortingService.getAlgorithm(aName) != null && sortingService.getAlgorithm(bName) != null;
+        cachePane.setVisible(runnable);
+        cachePane.setManaged(runnable);
+        if (cacheTask != null) {
+            cacheTask.cancel();
+            finishCacheTask();
+        }
+        if (!runnable) return;
+        cacheStatusLabel.setText(HEATMAP_LEGEND);
+        cacheNameALabel.setText("🔷 " + aName);
+        cacheNameBLabel.setText("🟣 " + bName);
+        cacheStatsALabel.setText("-");
+        cacheStatsBLabel.setText("-");
+        if (heatmapA != null) heatmapA.clear();
+        if (heatmapB != null) heatmapB.clear();
+    }
+
+    /**
+     * Sorts the same uniform array with both algorithms while every element
+     * access goes through an L1/L2 cache model, then shows the hit rates and
+     * a heatmap of L1 misses along the array.
+     */
+    @FXML
+    private void simulateCache() {
+        String aName = algoAComboBox.getValue();
+        String bName = algoBComboBox.getValue();
+        SortingAlgorithm algorithmA = sortingService.getAlgorithm(aName);
+        SortingAlgorithm algorithmB = sortingService.getAlgorithm(bName);
+        if (algorithmA == null || algorithmB == null || cacheTask != null) return;
+
+        int size, l1Size, l2Size, ways, lineSize;
+        try {
+            size = parsePositive(cacheElementsField);
+            l1Size = parsePositive(l1SizeField);
+            l2Size = parsePositive(l2SizeField);
+            ways = parsePositive(associativityField);
+            lineSize = parsePositive(lineSizeField);
+        } catch (NumberFormatException e) {
+            cacheStatusLabel.setText("⚠️ Enter positive whole numbers for the array size and cache settings.");
+            return;
+        }
+        if (size > MAX_CACHE_ELEMENTS) {
+            cacheStatusLabel.setText("⚠️ At most " + MAX_CACHE_ELEMENTS + " elements can be simulated.");
+            return;
+        }
+        List<CacheSimulator.Level> levels = List.of(
+                new CacheSimulator.Level("L1", l1Size << 10, ways),
+                new CacheSimulator.Level("L2", l2Size << 10, ways));
+        try {
+            new CacheSimulator(lineSize, levels);
+        } catch (IllegalArgumentException e) {
+            cacheStatusLabel.setText("⚠️ " + e.getMessage());
+            return;
+        }
+
+        // Halve the array until both sorts stay within the step budget
+        int reduced = size;
+        while (reduced > 16 && Math.max(algorithmA.estimateSteps(reduced), algorithmB.estimateSteps(reduced))
+                > MAX_CACHE_SIMULATION_STEPS) {
+            reduced /= 2;
+        }
+        int elements = reduced;
+
+        Task<CacheSink[]> task = new Task<>() {
+            @Override
+            protected CacheSink[] call() {
+                updateMessage("Generating " + elements + " uniform elements...");
+                int[] input = new InputGenerator().generate(InputGenerator.Distribution.UNIFORM,
+                        elements, 0, Math.max(elements, 100) - 1, CACHE_INPUT_SEED);
+                updateMessage("Simulating " + aName + " on " + elements + " elements...");
+                CacheSink sinkA = sortingService.simulateCache(aName, Arrays.copyOf(input, elements),
+                        new CacheSimulator(lineSize, levels));
+                if (isCancelled()) return null;
+                updateMessage("Simulating " + bName + " on " + elements + " elements...");
+                CacheSink sinkB = sortingService.simulateCache(bName, input, new CacheSimulator(lineSize, levels));
+                return new CacheSink[] { sinkA, sinkB };
+            }
+        };
+        cacheTask = task;
+        simulateCacheButton.setDisable(true);
+        cacheStatusLabel.textProperty().bind(task.messageProperty());
+        task.setOnSucceeded(e -> {
+            finishCacheTask();
+            CacheSink[] sinks = task.getValue();
+            long[] heatA = sinks[0].heatmap(HEATMAP_CELLS);
+            long[] heatB = sinks[1].heatmap(HEATMAP_CELLS);
+            long max = Math.max(Arrays.stream(heatA).max().orElse(0), Arrays.stream(heatB).max().orElse(0));
+            heatmapA.show(heatA, max);
+            heatmapB.show(heatB, max);
+            cacheStatsALabel.setText(sinks[0].describe());
+            cacheStatsBLabel.setText(sinks[1].describe());
+            cacheStatusLabel.setText(String.format("%,d uniform elements (%s, %,d cache lines)%s. %s",
+                    elements, SortMetrics.formatBytes(elements * (long) Integer.BYTES), sinks[0].lineCount(),
+                    elements < size ? ", reduced from " + size + " to keep the simulation quick" : "", HEATMAP_LEGEND));
+            System.out.println("Cache simulation of " + aName + " vs " + bName + " on " + elements + " elements done");
+        });
+        task.setOnFailed(e -> {
+            finishCacheTask();
+            cacheStatusLabel.setText("⚠️ Simulation failed: " + task.getException());
+        });
+        sortingService.getTraceExecutor().submit(task);
+    }
+
+    private void finishCacheTask() {
+        cacheTask = null;
+        cacheStatusLabel.textProperty().unbind();
+        simulateCacheButton.setDisable(false);
+    }
+
+    private static int parsePositive(TextField field) {
+        int value = Integer.parseInt(field.getText().trim().replace(",", "").replace("_", ""));
+        if (value <= 0) throw new NumberFormatException();
+        return value;
     }
 
     private void fillSummary(AlgorithmRecord r, Label name, Label best, Label avg, Label worst, Label space) {
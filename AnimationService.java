@@ -9,6 +9,10 @@ public class AnimationService {
 
     private static AnimationService instance;
     private double animationSpeed = 1.0;
+    private boolean turboMode = false;
+
+    // Turbo playback rate at speed 0: steps per second, multiplied by 100 per unit of speed
+    private static final double TURBO_BASE_STEPS_PER_SECOND = 60.0;
 
     private AnimationService() {}
 
@@ -27,6 +31,26 @@ public class AnimationService {
         return animationSpeed;
     }
 
+    public void setTurboMode(boolean turboMode) {
+        this.turboMode = turboMode;
+    }
+
+    public boolean isTurboMode() {
+        return turboMode;
+    }
+
+    /**
+     * Step rate for trace playback. Normal mode plays one step per second per unit
+     * of speed; turbo mode scales exponentially so the 5x speed cap does not bound
+     * how fast long traces can finish.
+     */
+    public double getPlaybackStepsPerSecond() {
+        if (turboMode) {
+            return TURBO_BASE_STEPS_PER_SECOND * Math.pow(100, animationSpeed);
+        }
+        return animationSpeed;
+    }
+
     // Smooth color transition for highlighting elements
     public Timeline createHighlightAnimation(Node node, Color fromColor, Color toColor) {
         String fromStyle = String.format("-fx-background-color: #%02X%02X%02X;",
@@ -1,6 +1,7 @@
 // Enhanced BaseController.java
 package com.simulator;
 
+import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Slider;
@@ -11,15 +12,17 @@ import java.util.ResourceBundle;
 public abstract class BaseController implements Initializable {
     protected AnimationService animationService;
     protected ThemeManager themeManager;
+    protected PlaybackEngine playbackEngine;
     protected boolean isAnimating = false;
     protected boolean isPaused = false;
-    protected Slider speedSlider;
+    @FXML protected Slider speedSlider;
 
     @Override
     public final void initialize(URL location, ResourceBundle resources) {
         // Initialize common services
         animationService = AnimationService.getInstance();
         themeManager = ThemeManager.getInstance();
+        playbackEngine = new PlaybackEngine();
 
         // Register scene for theme updates
         Platform.runLater(() -> {
@@ -34,6 +37,7 @@ public abstract class BaseController implements Initializable {
         setupEventHandlers();
         configureAnimations();
         setupKeyboardShortcuts();
+        loadInitialState();
 
         System.out.println(getClass().getSimpleName() + " initialized successfully");
     }
@@ -48,6 +52,11 @@ public abstract class BaseController implements Initializable {
     protected abstract void setupEventHandlers();
     protected abstract void configureAnimations();
 
+    // Called last, once every component and handler is in place
+    protected void loadInitialState() {
+        // Override if needed
+    }
+
     // Common functionality with default implementation
     protected void setupKeyboardShortcuts() {
         // Default keyboard shortcuts for all modules
@@ -67,25 +76,32 @@ public abstract class BaseController implements Initializable {
         });
     }
 
-    // Common animation control methods
+    // Common animation control methods - playback itself is driven by the shared PlaybackEngine
     protected void startAnimation() {
         if (!isAnimating) {
             isAnimating = true;
             isPaused = false;
             updateControlStates();
             onAnimationStart();
+            playbackEngine.play();
         }
     }
 
     protected void pauseAnimation() {
         if (isAnimating) {
             isPaused = !isPaused;
+            if (isPaused) {
+                playbackEngine.pause();
+            } else {
+                playbackEngine.play();
+            }
             updateControlStates();
             onAnimationPause(isPaused);
         }
     }
 
     protected void stopAnimation() {
+        playbackEngine.stop();
         isAnimating = false;
         isPaused = false;
         updateControlStates();
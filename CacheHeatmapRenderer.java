@@ -0,0 +1,69 @@
+package com.simulator;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Canvas strip showing cache misses along an array, left to right from index
+ * 0. Each cell is one slice of cache lines, coloured on a log scale from cold
+ * (few misses) to hot, so two algorithms drawn against the same maximum can be
+ * compared cell by cell.
+ */
+public class CacheHeatmapRenderer {
+
+    private static final Color EMPTY_COLOR = Color.rgb(148, 163, 184, 0.15);
+    private static final Color COLD_COLOR = Color.web("#1e3a8a");
+    private static final Color WARM_COLOR = Color.web("#f59e0b");
+    private static final Color HOT_COLOR = Color.web("#ef4444");
+
+    private final Canvas canvas = new Canvas();
+    private long[] heat = new long[0];
+    private long max = 1;
+
+    public CacheHeatmapRenderer(Pane host) {
+        host.getChildren().add(canvas);
+        canvas.widthProperty().bind(host.widthProperty());
+        canvas.heightProperty().bind(host.heightProperty());
+        canvas.widthProperty().addListener((obs, oldVal, newVal) -> draw());
+        canvas.heightProperty().addListener((obs, oldVal, newVal) -> draw());
+    }
+
+    /** Shows the given miss counts, scaled so that {@code max} is the hottest colour. */
+    public void show(long[] heat, long max) {
+        this.heat = heat;
+        this.max = Math.max(1, max);
+        draw();
+    }
+
+    public void clear() {
+        show(new long[0], 1);
+    }
+
+    private void draw() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        gc.clearRect(0, 0, width, height);
+        if (heat.length == 0) {
+            gc.setFill(EMPTY_COLOR);
+            gc.fillRect(0, 0, width, height);
+            return;
+        }
+        double cellWidth = width / heat.length;
+        double scale = Math.log1p(max);
+        for (int i = 0; i < heat.length; i++) {
+            gc.setFill(colorFor(Math.log1p(heat[i]) / scale));
+            // Overlap by a pixel so fractional widths leave no seams
+            gc.fillRect(i * cellWidth, 0, cellWidth + 1, height);
+        }
+    }
+
+    private static Color colorFor(double level) {
+        if (level <= 0) return EMPTY_COLOR;
+        return level < 0.5
+                ? COLD_COLOR.interpolate(WARM_COLOR, level * 2)
+                : WARM_COLOR.interpolate(HOT_COLOR, (level - 0.5) * 2);
+    }
+}
@@ -0,0 +1,141 @@
+package com.simulator;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Model of a set-associative cache hierarchy with LRU replacement, fed one
+ * byte address at a time. Each access is looked up level by level until one
+ * hits; every level it missed then loads the line. Reads and writes are
+ * treated alike (write-allocate, write-back), and no prefetching is modelled,
+ * so the hit rates show the locality of the access pattern itself.
+ * Access is synchronized, since the workers of a parallel sort share one hierarchy.
+ */
+public class CacheSimulator {
+
+    public static final int DEFAULT_LINE_SIZE = 64;
+
+    /** One cache level; size and associativity must give a power-of-two number of sets. */
+    public record Level(String name, int sizeBytes, int associativity) {
+        @Override
+        public String toString() {
+            return name + " " + SortMetrics.formatBytes(sizeBytes) + " " + associativity + "-way";
+        }
+    }
+
+    /** A typical desktop core: 32 KB 8-way L1 data cache and 256 KB 8-way L2. */
+    public static List<Level> defaultLevels() {
+        return List.of(new Level("L1", 32 << 10, 8), new Level("L2", 256 << 10, 8));
+    }
+
+    private final int lineSize;
+    private final int lineShift;
+    private final Level[] levels;
+    // Per level: sets * ways line numbers, each set ordered most recently used first; -1 = empty
+    private final long[][] lines;
+    private final int[] setMasks;
+    private final long[] hits;
+    private final long[] misses;
+
+    public CacheSimulator() {
+        this(DEFAULT_LINE_SIZE, defaultLevels());
+    }
+
+    public CacheSimulator(int lineSize, List<Level> levels) {
+        if (lineSize <= 0 || Integer.bitCount(lineSize) != 1) {
+            throw new IllegalArgumentException("Line size must be a power of two: " + lineSize);
+        }
+        if (levels.isEmpty()) {
+            throw new IllegalArgumentException("At least one cache level is required");
+        }
+        this.lineSize = lineSize;
+        this.lineShift = Integer.numberOfTrailingZeros(lineSize);
+        this.levels = levels.toArray(new Level[0]);
+        this.lines = new long[this.levels.length][];
+        this.setMasks = new int[this.levels.length];
+        for (int l = 0; l < this.levels.length; l++) {
+            Level level = this.levels[l];
+            if (level.associativity() <= 0 || level.sizeBytes() < lineSize * level.associativity()) {
+                throw new IllegalArgumentException(level.name() + " must hold at least one set of "
+                        + level.associativity() + " lines of " + lineSize + " bytes");
+            }
+            int sets = level.sizeBytes() / (lineSize * level.associativity());
+            if (Integer.bitCount(sets) != 1 || (long) sets * lineSize * level.associativity() != level.sizeBytes()) {
+                throw new IllegalArgumentException(level.name() + " size / (line size * ways) must be a power of two: " + level);
+            }
+            lines[l] = new long[sets * level.associativity()];
+            Arrays.fill(lines[l], -1);
+            setMasks[l] = sets - 1;
+        }
+        this.hits = new long[this.levels.length];
+        this.misses = new long[this.levels.length];
+    }
+
+    /**
+     * Looks up the byte address and loads its line into every level that
+     * missed. Returns the index of the level that hit, or {@link #levelCount()}
+     * if the line came from memory.
+     */
+    public synchronized int access(long address) {
+        long line = address >>> lineShift;
+        for (int l = 0; l < levels.length; l++) {
+            if (touch(l, line)) {
+                hits[l]++;
+                return l;
+            }
+            misses[l]++;
+        }
+        return levels.length;
+    }
+
+    // Moves the line to the front of its set; true if it was already there
+    private boolean touch(int level, long line) {
+        long[] slots = lines[level];
+        int ways = levels[level].associativity();
+        int start = (int) (line & setMasks[level]) * ways;
+        int found = ways - 1;
+        boolean hit = false;
+        for (int w = 0; w < ways; w++) {
+            if (slots[start + w] == line) {
+                found = w;
+                hit = true;
+                break;
+            }
+        }
+        // On a miss the least recently used line (the last way) is dropped
+        System.arraycopy(slots, start, slots, start + 1, found);
+        slots[start] = line;
+        return hit;
+    }
+
+    public int getLineSize() {
+        return lineSize;
+    }
+
+    public int levelCount() {
+        return levels.length;
+    }
+
+    public Level level(int index) {
+        return levels[index];
+    }
+
+    public synchronized long getHits(int level) {
+        return hits[level];
+    }
+
+    public synchronized long getMisses(int level) {
+        return misses[level];
+    }
+
+    /** Share of the lookups reaching this level that hit in it, 0 if none reached it. */
+    public synchronized double hitRate(int level) {
+        long lookups = hits[level] + misses[level];
+        return lookups == 0 ? 0 : (double) hits[level] / lookups;
+    }
+
+    /** Accesses that missed every level and went to memory. */
+    public synchronized long getMemoryAccesses() {
+        return misses[levels.length - 1];
+    }
+}
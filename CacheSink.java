@@ -0,0 +1,119 @@
+package com.simulator;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sink that turns an algorithm's element accesses into byte addresses and
+ * feeds them to a {@link CacheSimulator}. A compare reads two elements, a swap
+ * reads and writes two, a set writes one and a highlight reads one, matching
+ * what {@link CountingSink} counts. The array is laid out from address 0 with
+ * four bytes per element; scratch buffers the algorithm keeps outside the
+ * trace are not modelled. Alongside the hit rates it keeps a heatmap of
+ * first-level misses per cache line of the array.
+ *
+ * <p>Workers forked by parallel sorts feed the same hierarchy and heatmap,
+ * as if every core shared the cache, so their interleaving (and the result)
+ * can vary slightly between runs.
+ */
+public final class CacheSink implements StepSink {
+
+    private final CacheSimulator cache;
+    private final AtomicLongArray lineMisses;
+    private final int elementsPerLine;
+
+    public CacheSink(CacheSimulator cache, int length) {
+        this.cache = cache;
+        this.elementsPerLine = Math.max(1, cache.getLineSize() / Integer.BYTES);
+        this.lineMisses = new AtomicLongArray(Math.max(1, (length + elementsPerLine - 1) / elementsPerLine));
+    }
+
+    private CacheSink(CacheSink parent) {
+        this.cache = parent.cache;
+        this.elementsPerLine = parent.elementsPerLine;
+        this.lineMisses = parent.lineMisses;
+    }
+
+    private void access(int index) {
+        if (cache.access((long) index * Integer.BYTES) > 0) {
+            int line = index / elementsPerLine;
+            if (line < lineMisses.length()) lineMisses.incrementAndGet(line);
+        }
+    }
+
+    @Override
+    public void compare(int index1, int index2) {
+        access(index1);
+        access(index2);
+    }
+
+    @Override
+    public void swap(int index1, int index2) {
+        // Both are read and then written; the writes hit the lines just loaded
+        access(index1);
+        access(index2);
+        access(index1);
+        access(index2);
+    }
+
+    @Override
+    public void set(int index, int value) {
+        access(index);
+    }
+
+    @Override
+    public void setRange(int from, int[] values, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            access(from + i);
+        }
+    }
+
+    @Override
+    public void highlight(int index) {
+        access(index);
+    }
+
+    @Override
+    public StepSink fork() {
+        return new CacheSink(this);
+    }
+
+    @Override
+    public void join(StepSink... workers) {
+        // Workers fed the shared simulator directly, so there is nothing to fold in
+    }
+
+    public CacheSimulator getCache() {
+        return cache;
+    }
+
+    /** Number of cache lines the array spans. */
+    public int lineCount() {
+        return lineMisses.length();
+    }
+
+    /**
+     * First-level misses per cache line, summed into {@code buckets} equal
+     * slices of the array (or one per line if there are fewer lines).
+     */
+    public long[] heatmap(int buckets) {
+        int lines = lineMisses.length();
+        int count = Math.max(1, Math.min(buckets, lines));
+        long[] heat = new long[count];
+        for (int line = 0; line < lines; line++) {
+            heat[(int) ((long) line * count / lines)] += lineMisses.get(line);
+        }
+        return heat;
+    }
+
+    /** Hit rate of every level and the memory traffic, one level per line. */
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        for (int l = 0; l < cache.levelCount(); l++) {
+            sb.append(String.format("%s: %.2f%% hits (%,d hits, %,d misses)\n", cache.level(l),
+                    100 * cache.hitRate(l), cache.getHits(l), cache.getMisses(l)));
+        }
+        sb.append(String.format("Memory: %,d line loads (%s)", cache.getMemoryAccesses(),
+                SortMetrics.formatBytes(cache.getMemoryAccesses() * cache.getLineSize())));
+        return sb.toString();
+    }
+}
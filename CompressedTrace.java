@@ -0,0 +1,376 @@
+package com.simulator;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.LongFunction;
+
+/**
+ * Byte-oriented trace encoding for long recordings. Each step becomes an
+ * opcode followed by zigzag varints:
+ * <pre>
+ *   COMPARE / SWAP   index delta, index2 - index1
+ *   SET              index delta, value delta
+ *   HIGHLIGHT        index delta
+ *   LANE             index delta, range length
+ *   SET_RUN          index delta, count, count value deltas
+ *   HIGHLIGHT_RUN    index delta, count
+ *   GROUP            step count (no index)
+ * </pre>
+ * Index deltas are taken against the previous step's index and value deltas
+ * against the previous SET value. SETs and HIGHLIGHTs on consecutive indices
+ * are folded into runs, which covers the count and copy-back passes of Radix
+ * and Counting Sort. Those passes cost a byte or two per step instead of eight.
+ * Cursors decode lazily and return the same packed steps as {@link SortingTrace}.
+ */
+public class CompressedTrace implements StepSink, RecordedTrace {
+
+    private static final int OP_COMPARE = 0;
+    private static final int OP_SWAP = 1;
+    private static final int OP_SET = 2;
+    private static final int OP_HIGHLIGHT = 3;
+    private static final int OP_LANE = 4;
+    private static final int OP_SET_RUN = 5;
+    private static final int OP_HIGHLIGHT_RUN = 6;
+    private static final int OP_GROUP = 7;
+    private static final int NO_RUN = -1;
+
+    // Longest run kept pending; longer runs continue in a fresh token
+    private static final int RUN_CHUNK = 4096;
+    private static final int MAX_VARINT_BYTES = 5;
+    /** Upper bound on one token's header (opcode plus two varints). */
+    static final int MAX_TOKEN_BYTES = 1 + 2 * MAX_VARINT_BYTES;
+
+    private byte[] data;
+    private int length;
+    private long steps;
+    private int prevIndex;
+    private int prevValue;
+
+    private int runOp = NO_RUN;
+    private int runStart;
+    private int runCount;
+    private final int[] runValues = new int[RUN_CHUNK];
+
+    public CompressedTrace() {
+        this(1 << 12);
+    }
+
+    public CompressedTrace(int initialCapacity) {
+        data = new byte[Math.max(64, initialCapacity)];
+    }
+
+    // ==================== RECORDING ====================
+
+    @Override
+    public void compare(int index1, int index2) {
+        writePair(OP_COMPARE, index1, index2);
+    }
+
+    @Override
+    public void swap(int index1, int index2) {
+        writePair(OP_SWAP, index1, index2);
+    }
+
+    @Override
+    public void set(int index, int value) {
+        if (runOp != OP_SET_RUN || index != runStart + runCount || runCount == RUN_CHUNK) {
+            flushRun();
+            runOp = OP_SET_RUN;
+            runStart = index;
+        }
+        runValues[runCount++] = value;
+        steps++;
+    }
+
+    @Override
+    public void setRange(int from, int[] values, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            set(from + i, values[offset + i]);
+        }
+    }
+
+    @Override
+    public void highlight(int index) {
+        if (runOp != OP_HIGHLIGHT_RUN || index != runStart + runCount || runCount == RUN_CHUNK) {
+            flushRun();
+            runOp = OP_HIGHLIGHT_RUN;
+            runStart = index;
+        }
+        runCount++;
+        steps++;
+    }
+
+    @Override
+    public void lane(int from, int to) {
+        flushRun();
+        ensureCapacity(MAX_TOKEN_BYTES);
+        data[length++] = OP_LANE;
+        writeIndex(from);
+        writeVarint(to - from);
+        steps++;
+    }
+
+    @Override
+    public void group(int count) {
+        flushRun();
+        ensureCapacity(MAX_TOKEN_BYTES);
+        data[length++] = OP_GROUP;
+        writeVarint(count);
+        steps++;
+    }
+
+    /** Appends one step packed as in {@link SortingTrace}. */
+    public void add(long step) {
+        int index1 = SortingTrace.index1(step);
+        switch (SortingTrace.type(step)) {
+            case COMPARE -> compare(index1, (int) step);
+            case SWAP -> swap(index1, (int) step);
+            case SET -> set(index1, (int) step);
+            case HIGHLIGHT -> highlight(index1);
+            case LANE -> lane(index1, (int) step);
+            case GROUP -> group((int) step);
+        }
+    }
+
+    /** Encodes any pending run; call once recording is done. Further steps may still follow. */
+    public void finish() {
+        flushRun();
+    }
+
+    /** Releases unused capacity once recording is finished. */
+    public void trimToSize() {
+        finish();
+        if (data.length > length) {
+            data = Arrays.copyOf(data, Math.max(64, length));
+        }
+    }
+
+    private void writePair(int op, int index1, int index2) {
+        flushRun();
+        ensureCapacity(MAX_TOKEN_BYTES);
+        data[length++] = (byte) op;
+        writeIndex(index1);
+        writeVarint(zigzag(index2 - index1));
+        steps++;
+    }
+
+    private void flushRun() {
+        if (runOp == NO_RUN) return;
+        if (runCount == 1) {
+            ensureCapacity(MAX_TOKEN_BYTES);
+            if (runOp == OP_SET_RUN) {
+                data[length++] = OP_SET;
+                writeIndex(runStart);
+                writeVarint(zigzag(runValues[0] - prevValue));
+                prevValue = runValues[0];
+            } else {
+                data[length++] = OP_HIGHLIGHT;
+                writeIndex(runStart);
+            }
+        } else {
+            int valueBytes = runOp == OP_SET_RUN ? runCount * MAX_VARINT_BYTES : 0;
+            ensureCapacity(MAX_TOKEN_BYTES + valueBytes);
+            data[length++] = (byte) runOp;
+            writeIndex(runStart);
+            writeVarint(runCount);
+            if (runOp == OP_SET_RUN) {
+                for (int i = 0; i < runCount; i++) {
+                    writeVarint(zigzag(runValues[i] - prevValue));
+                    prevValue = runValues[i];
+                }
+            }
+            prevIndex = runStart + runCount - 1;
+        }
+        runOp = NO_RUN;
+        runCount = 0;
+    }
+
+    private void writeIndex(int index) {
+        writeVarint(zigzag(index - prevIndex));
+        prevIndex = index;
+    }
+
+    private void writeVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > data.length) {
+            long newCapacity = Math.max((long) data.length + (data.length >> 1), (long) length + extra);
+            if (newCapacity > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Compressed trace exceeds maximum length");
+            }
+            data = Arrays.copyOf(data, (int) newCapacity);
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    // ==================== ACCESS ====================
+
+    @Override
+    public long stepCount() {
+        return steps;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return data.length;
+    }
+
+    /** Bytes encoded so far; {@link #finish()} first to include a pending run. */
+    public int encodedLength() {
+        return length;
+    }
+
+    /** The encoding buffer; only the first {@link #encodedLength()} bytes are valid. */
+    byte[] encodedBytes() {
+        return data;
+    }
+
+    /**
+     * Forgets the bytes encoded so far but keeps the delta state, so a writer
+     * can drain the buffer in chunks and the concatenated chunks still decode.
+     */
+    void discardEncoded() {
+        length = 0;
+    }
+
+    @Override
+    public Decoder openCursor() {
+        finish();
+        return new Decoder(ByteBuffer.wrap(data, 0, length).slice(), length, steps, null);
+    }
+
+    // ==================== DECODING ====================
+
+    /**
+     * Streaming decoder. Works on one buffer at a time; when a mapper is given,
+     * it is asked for the bytes at an absolute offset whenever the current
+     * window runs short, so the input can be a memory-mapped file of any size.
+     */
+    public static class Decoder implements StepCursor {
+        private final long totalBytes;
+        private final long totalSteps;
+        private final LongFunction<ByteBuffer> mapper;
+        private ByteBuffer window;
+        private long windowBase;
+
+        private long position;
+        private int prevIndex;
+        private int prevValue;
+        private int runOp = NO_RUN;
+        private int runIndex;
+        private int runRemaining;
+        private long lastStep;
+
+        Decoder(ByteBuffer window, long totalBytes, long totalSteps, LongFunction<ByteBuffer> mapper) {
+            this.window = window;
+            this.totalBytes = totalBytes;
+            this.totalSteps = totalSteps;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < totalSteps;
+        }
+
+        @Override
+        public long next() {
+            if (position >= totalSteps) {
+                throw new NoSuchElementException("No more steps in trace");
+            }
+            position++;
+            if (runRemaining == 0) {
+                readToken();
+                if (runRemaining == 0) {
+                    return lastStep;
+                }
+            }
+            return nextRunStep();
+        }
+
+        private void readToken() {
+            ensure(MAX_TOKEN_BYTES);
+            int op = window.get();
+            if (op == OP_GROUP) {
+                // Markers carry no index, so the index delta chain is untouched
+                lastStep = SortingTrace.encode(SortingTrace.StepType.GROUP, 0, readVarint());
+                return;
+            }
+            int index1 = prevIndex + unzigzag(readVarint());
+            prevIndex = index1;
+            switch (op) {
+                case OP_COMPARE -> lastStep = SortingTrace.encode(SortingTrace.StepType.COMPARE, index1, index1 + unzigzag(readVarint()));
+                case OP_SWAP -> lastStep = SortingTrace.encode(SortingTrace.StepType.SWAP, index1, index1 + unzigzag(readVarint()));
+                case OP_SET -> {
+                    prevValue += unzigzag(readVarint());
+                    lastStep = SortingTrace.encode(SortingTrace.StepType.SET, index1, prevValue);
+                }
+                case OP_HIGHLIGHT -> lastStep = SortingTrace.encode(SortingTrace.StepType.HIGHLIGHT, index1, -1);
+                case OP_LANE -> lastStep = SortingTrace.encode(SortingTrace.StepType.LANE, index1, index1 + readVarint());
+                case OP_SET_RUN, OP_HIGHLIGHT_RUN -> {
+                    runOp = op;
+                    runIndex = index1;
+                    runRemaining = readVarint();
+                }
+                default -> throw new IllegalStateException("Corrupt compressed trace: opcode " + op);
+            }
+        }
+
+        private long nextRunStep() {
+            runRemaining--;
+            int index = runIndex++;
+            prevIndex = index;
+            if (runOp == OP_SET_RUN) {
+                ensure(MAX_VARINT_BYTES);
+                prevValue += unzigzag(readVarint());
+                return SortingTrace.encode(SortingTrace.StepType.SET, index, prevValue);
+            }
+            return SortingTrace.encode(SortingTrace.StepType.HIGHLIGHT, index, -1);
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public long totalSteps() {
+            return totalSteps;
+        }
+
+        // Remaps so at least `bytes` bytes (or the rest of the input) are readable
+        private void ensure(int bytes) {
+            if (window.remaining() >= bytes || mapper == null) return;
+            long offset = windowBase + window.position();
+            if (offset >= totalBytes) return;
+            window = mapper.apply(offset);
+            windowBase = offset;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = window.get();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        private static int unzigzag(int value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
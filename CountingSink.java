@@ -0,0 +1,153 @@
+package com.simulator;
+
+/**
+ * Recording-free sink for headless runs: every operation just bumps a
+ * primitive counter, so an algorithm can sort 10^7-10^8 elements for
+ * measurement without building a trace. A sink belongs to one thread; parallel
+ * workers get their own through {@link #fork()} and are summed on
+ * {@link #join}, so concurrent runs never share counters.
+ */
+public final class CountingSink implements StepSink {
+
+    private long comparisons;
+    private long swaps;
+    private long reads;
+    private long writes;
+    private long auxiliaryBytes;
+    private long peakAuxiliaryBytes;
+    private int depth;
+    private int maxDepth;
+    private LoadBalance loadBalance;
+
+    public CountingSink() {
+    }
+
+    // Forked workers continue at the depth of the call that forked them
+    private CountingSink(int depth) {
+        this.depth = depth;
+        this.maxDepth = depth;
+    }
+
+    @Override
+    public void compare(int index1, int index2) {
+        comparisons++;
+        reads += 2;
+    }
+
+    @Override
+    public void swap(int index1, int index2) {
+        swaps++;
+        reads += 2;
+        writes += 2;
+    }
+
+    @Override
+    public void set(int index, int value) {
+        writes++;
+    }
+
+    @Override
+    public void setRange(int from, int[] values, int offset, int length) {
+        writes += length;
+    }
+
+    @Override
+    public void highlight(int index) {
+        // Algorithms highlight the element they are looking at, e.g. a pivot or key
+        reads++;
+    }
+
+    @Override
+    public void enterCall() {
+        if (++depth > maxDepth) maxDepth = depth;
+    }
+
+    @Override
+    public void exitCall() {
+        depth--;
+    }
+
+    @Override
+    public void allocate(long bytes) {
+        auxiliaryBytes += bytes;
+        if (auxiliaryBytes > peakAuxiliaryBytes) peakAuxiliaryBytes = auxiliaryBytes;
+    }
+
+    @Override
+    public void release(long bytes) {
+        auxiliaryBytes -= bytes;
+    }
+
+    /** Counts one step packed as in {@link SortingTrace}, e.g. while a trace plays back. */
+    public void add(long step) {
+        switch (SortingTrace.type(step)) {
+            case COMPARE -> compare(0, 0);
+            case SWAP -> swap(0, 0);
+            case SET -> set(0, 0);
+            case HIGHLIGHT -> highlight(0);
+            default -> { }
+        }
+    }
+
+    @Override
+    public StepSink fork() {
+        return new CountingSink(depth);
+    }
+
+    @Override
+    public void loadBalance(LoadBalance balance) {
+        loadBalance = balance;
+    }
+
+    /**
+     * Sums the workers' counters. Workers run side by side, so their peak
+     * scratch memory is added on top of what this sink holds now.
+     */
+    @Override
+    public void join(StepSink... workers) {
+        long workerPeak = 0;
+        for (StepSink worker : workers) {
+            if (!(worker instanceof CountingSink counter)) {
+                throw new IllegalArgumentException("Can only join counters forked from a counter");
+            }
+            comparisons += counter.comparisons;
+            swaps += counter.swaps;
+            reads += counter.reads;
+            writes += counter.writes;
+            workerPeak += counter.peakAuxiliaryBytes;
+            maxDepth = Math.max(maxDepth, counter.maxDepth);
+            if (counter.loadBalance != null) {
+                loadBalance = counter.loadBalance;
+            }
+        }
+        peakAuxiliaryBytes = Math.max(peakAuxiliaryBytes, auxiliaryBytes + workerPeak);
+    }
+
+    /** Puts the counters back to a recorded point, e.g. after seeking a trace. */
+    public void restore(SortMetrics metrics) {
+        comparisons = metrics.comparisons();
+        swaps = metrics.swaps();
+        reads = metrics.reads();
+        writes = metrics.writes();
+        auxiliaryBytes = 0;
+        peakAuxiliaryBytes = metrics.auxiliaryBytes();
+        depth = 0;
+        maxDepth = metrics.maxRecursionDepth();
+        loadBalance = metrics.loadBalance();
+    }
+
+    public void reset() {
+        restore(SortMetrics.EMPTY);
+    }
+
+    /** Immutable copy of the counters, stamped with the given wall time. */
+    public SortMetrics toMetrics(long elapsedNanos) {
+        return new SortMetrics(comparisons, swaps, reads, writes, peakAuxiliaryBytes, maxDepth, elapsedNanos,
+                loadBalance);
+    }
+
+    public long getComparisons() { return comparisons; }
+    public long getSwaps() { return swaps; }
+    public long getReads() { return reads; }
+    public long getWrites() { return writes; }
+}
@@ -0,0 +1,462 @@
+package com.simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sorts a binary file of 32-bit little-endian ints that may be far larger than
+ * the heap. Runs of at most {@code memoryBytes} are sorted in memory with an
+ * ordinary {@link SortingAlgorithm} and written to a scratch file, then merged
+ * {@code fanIn} at a time with a primitive min-heap until one run is left.
+ * Reads and writes go through buffered {@link FileChannel}s, and the scratch
+ * files ping-pong between passes, so disk use stays at about twice the input.
+ * <p>
+ * Progress can be followed as a coarse trace: a fixed number of sample
+ * positions spread over the file are reported to a {@link StepSink} as SET
+ * steps whenever a run or merge writes them, with a LANE per run, so the
+ * usual player can show the runs forming and the merge passes joining them.
+ */
+public class ExternalMergeSort {
+
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    /** Default heap allowance for one run plus the merge buffers. */
+    public static final long DEFAULT_MEMORY_BYTES = 64L << 20;
+    public static final int DEFAULT_FAN_IN = 16;
+
+    // Smallest per-run read buffer of a merge; more runs than this allows need another pass
+    private static final int MIN_BUFFER_BYTES = 4096;
+    private static final int MAX_BUFFER_BYTES = 1 << 30;
+    // Read and write buffer while forming runs, on top of the run itself
+    private static final int RUN_IO_BUFFER_BYTES = 1 << 20;
+    private static final int MAX_RUN_INTS = Integer.MAX_VALUE - 8;
+
+    private final SortingAlgorithm runSorter;
+    private final long memoryBytes;
+    private final int fanIn;
+
+    /** Receives coarse progress; thrown exceptions abort the sort. */
+    public interface Progress {
+        void update(String message, long done, long total);
+    }
+
+    /**
+     * Outcome of one sort. {@code sampleInput} holds the sample positions as
+     * they were before sorting, the starting array for the coarse trace.
+     */
+    public record Result(long elements, int runs, int mergePasses, long bytesRead, long bytesWritten,
+                         long comparisons, long elapsedNanos, int[] sampleInput) {
+
+        public String summary() {
+            return String.format("%d elements in %d runs, %d merge pass%s, %s read, %s written, %s",
+                    elements, runs, mergePasses, mergePasses == 1 ? "" : "es",
+                    SortMetrics.formatBytes(bytesRead), SortMetrics.formatBytes(bytesWritten),
+                    SortMetrics.formatNanos(elapsedNanos));
+        }
+    }
+
+    public ExternalMergeSort(SortingAlgorithm runSorter) {
+        this(runSorter, DEFAULT_MEMORY_BYTES, DEFAULT_FAN_IN);
+    }
+
+    public ExternalMergeSort(SortingAlgorithm runSorter, long memoryBytes, int fanIn) {
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Merge fan-in must be at least 2: " + fanIn);
+        }
+        if (memoryBytes < (long) (fanIn + 1) * MIN_BUFFER_BYTES) {
+            throw new IllegalArgumentException("Memory budget too small for a " + fanIn + "-way merge: " + memoryBytes);
+        }
+        this.runSorter = runSorter;
+        this.memoryBytes = memoryBytes;
+        this.fanIn = fanIn;
+    }
+
+    /** Number of ints in the file; fails unless the size is a whole number of ints. */
+    public static long countInts(Path file) throws IOException {
+        long size = Files.size(file);
+        if (size % Integer.BYTES != 0) {
+            throw new IOException(file + " is not a file of 32-bit ints (" + size + " bytes)");
+        }
+        return size / Integer.BYTES;
+    }
+
+    public Result sort(Path input, Path output) throws IOException {
+        return sort(input, output, null, 0, null);
+    }
+
+    /**
+     * Sorts {@code input} into {@code output}. Scratch files are created next to
+     * the output and removed afterwards.
+     *
+     * @param coarse  receives the coarse trace, or null
+     * @param samples number of sample positions in the coarse trace
+     */
+    public Result sort(Path input, Path output, StepSink coarse, int samples, Progress progress) throws IOException {
+        if (Files.exists(output) && Files.isSameFile(input, output)) {
+            throw new IllegalArgumentException("Output would overwrite the input: " + output);
+        }
+        long start = System.nanoTime();
+        long elements = countInts(input);
+        int runInts = (int) Math.min(MAX_RUN_INTS, Math.max(1, memoryBytes / Integer.BYTES));
+        int runs = (int) Math.max(1, (elements + runInts - 1) / runInts);
+        int passes = passesFor(runs);
+        Sampler sampler = new Sampler(elements, coarse, coarse != null ? samples : 0);
+        Counters counters = new Counters(elements * (passes + 1), progress);
+
+        Path directory = output.toAbsolutePath().getParent();
+        List<Path> scratch = new ArrayList<>();
+        try {
+            Path target = passes == 0 ? output : createScratch(directory, scratch);
+            List<long[]> runBounds = formRuns(input, target, runInts, sampler, counters);
+
+            // Direct buffers are only freed by the garbage collector, so every pass shares one set
+            ByteBuffer[] mergeBuffers = new ByteBuffer[passes == 0 ? 0 : Math.min(fanIn, runs) + 1];
+            int mergeBufferBytes = bufferBytes(mergeBuffers.length);
+            for (int b = 0; b < mergeBuffers.length; b++) {
+                mergeBuffers[b] = ByteBuffer.allocateDirect(mergeBufferBytes).order(BYTE_ORDER);
+            }
+            for (int pass = 1; pass <= passes; pass++) {
+                Path source = target;
+                target = pass == passes ? output : pass == 1 ? createScratch(directory, scratch)
+                        : scratch.get(scratch.get(0).equals(source) ? 1 : 0);
+                runBounds = mergePass(source, target, runBounds, pass, passes, mergeBuffers, sampler, counters);
+            }
+        } finally {
+            for (Path file : scratch) {
+                Files.deleteIfExists(file);
+            }
+        }
+        return new Result(elements, runs, passes, counters.bytesRead, counters.bytesWritten,
+                counters.comparisons, System.nanoTime() - start, sampler.input);
+    }
+
+    /** Merge passes needed to bring {@code runs} sorted runs down to one. */
+    public int passesFor(int runs) {
+        int passes = 0;
+        for (long remaining = runs; remaining > 1; remaining = (remaining + fanIn - 1) / fanIn) {
+            passes++;
+        }
+        return passes;
+    }
+
+    private static Path createScratch(Path directory, List<Path> scratch) throws IOException {
+        Path file = Files.createTempFile(directory, "external-sort-", ".run");
+        scratch.add(file);
+        return file;
+    }
+
+    // Phase 1: sort memory-sized chunks and write them back to back; returns {start, length} per run
+    private List<long[]> formRuns(Path input, Path target, int runInts, Sampler sampler, Counters counters)
+            throws IOException {
+        List<long[]> runBounds = new ArrayList<>();
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             IntWriter out = new IntWriter(target, RUN_IO_BUFFER_BYTES, counters)) {
+            long total = in.size() / Integer.BYTES;
+            int[] run = new int[(int) Math.min(runInts, total)];
+            ByteBuffer buffer = ByteBuffer.allocateDirect(RUN_IO_BUFFER_BYTES).order(BYTE_ORDER);
+            for (long runStart = 0; runStart < total; runStart += runInts) {
+                int length = (int) Math.min(runInts, total - runStart);
+                readFully(in, runStart, run, length, buffer, counters);
+                sampler.capture(runStart, run, length);
+
+                // The last run may be shorter; it is sorted where it is rather than copied out
+                CountingSink counter = new CountingSink();
+                runSorter.sort(run, 0, length, counter);
+                counters.comparisons += counter.getComparisons();
+
+                sampler.lane(runStart, runStart + length);
+                sampler.emit(runStart, run, length);
+                out.write(run, length);
+                runBounds.add(new long[]{runStart, length});
+                counters.advance("Sorting run " + runBounds.size(), length);
+            }
+        }
+        return runBounds;
+    }
+
+    /**
+     * Phase 2: one k-way merge pass over all runs; returns the bounds of the
+     * merged runs. The last buffer is the output's and the rest are handed to
+     * the run readers of each group in turn.
+     */
+    private List<long[]> mergePass(Path source, Path target, List<long[]> runBounds, int pass, int passes,
+                                   ByteBuffer[] buffers, Sampler sampler, Counters counters) throws IOException {
+        List<long[]> merged = new ArrayList<>();
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             IntWriter out = new IntWriter(target, buffers[buffers.length - 1], counters)) {
+            for (int group = 0; group < runBounds.size(); group += fanIn) {
+                List<long[]> runs = runBounds.subList(group, Math.min(runBounds.size(), group + fanIn));
+                long start = runs.get(0)[0];
+                long length = 0;
+                RunReader[] readers = new RunReader[runs.size()];
+                for (int r = 0; r < readers.length; r++) {
+                    readers[r] = new RunReader(in, runs.get(r)[0], runs.get(r)[1], buffers[r], counters);
+                    length += runs.get(r)[1];
+                }
+                sampler.lane(start, start + length);
+                mergeRuns(readers, out, start, sampler, counters);
+                merged.add(new long[]{start, length});
+                counters.advance("Merge pass " + pass + " of " + passes + ": " + merged.size() + " of "
+                        + (runBounds.size() + fanIn - 1) / fanIn + " runs", 0);
+            }
+        }
+        return merged;
+    }
+
+    // K-way merge through a binary min-heap of reader indices keyed by each reader's head
+    private static void mergeRuns(RunReader[] readers, IntWriter out, long position, Sampler sampler,
+                                  Counters counters) throws IOException {
+        int[] heap = new int[readers.length];
+        int size = 0;
+        for (int r = 0; r < readers.length; r++) {
+            if (readers[r].advance()) {
+                heap[size++] = r;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(heap, size, i, readers, counters);
+        }
+        long sinceUpdate = 0;
+        while (size > 0) {
+            RunReader smallest = readers[heap[0]];
+            out.write(smallest.head);
+            sampler.emit(position++, smallest.head);
+            if (!smallest.advance()) {
+                heap[0] = heap[--size];
+            }
+            siftDown(heap, size, 0, readers, counters);
+            if (++sinceUpdate == 1 << 20) {
+                counters.advance(null, sinceUpdate);
+                sinceUpdate = 0;
+            }
+        }
+        counters.advance(null, sinceUpdate);
+    }
+
+    private static void siftDown(int[] heap, int size, int i, RunReader[] readers, Counters counters) {
+        int item = heap[i];
+        int value = readers[item].head;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size) {
+                counters.comparisons++;
+                if (readers[heap[child + 1]].head < readers[heap[child]].head) child++;
+            }
+            counters.comparisons++;
+            if (readers[heap[child]].head >= value) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = item;
+    }
+
+    // Equal share of the memory budget for each of {@code buffers} buffers
+    private int bufferBytes(int buffers) {
+        long share = memoryBytes / Math.max(1, buffers);
+        return (int) Math.max(MIN_BUFFER_BYTES, Math.min(MAX_BUFFER_BYTES, share) & ~(Integer.BYTES - 1L));
+    }
+
+    private static void readFully(FileChannel in, long firstInt, int[] target, int length, ByteBuffer buffer,
+                                  Counters counters) throws IOException {
+        long position = firstInt * Integer.BYTES;
+        int filled = 0;
+        while (filled < length) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), (long) (length - filled) * Integer.BYTES));
+            while (buffer.hasRemaining()) {
+                int read = in.read(buffer, position);
+                if (read < 0) throw new IOException("Unexpected end of file at byte " + position);
+                position += read;
+            }
+            buffer.flip();
+            IntBuffer ints = buffer.asIntBuffer();
+            int count = ints.remaining();
+            ints.get(target, filled, count);
+            filled += count;
+            counters.bytesRead += (long) count * Integer.BYTES;
+        }
+    }
+
+    /** Writes ints to a file through one direct buffer. */
+    public static class IntWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final Counters counters;
+
+        public IntWriter(Path file, int bufferBytes) throws IOException {
+            this(file, bufferBytes, null);
+        }
+
+        IntWriter(Path file, int bufferBytes, Counters counters) throws IOException {
+            this(file, ByteBuffer.allocateDirect(Math.max(MIN_BUFFER_BYTES, bufferBytes)).order(BYTE_ORDER), counters);
+        }
+
+        // Writes through a buffer the caller owns and may reuse once this writer is closed
+        IntWriter(Path file, ByteBuffer buffer, Counters counters) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = buffer.clear();
+            this.counters = counters;
+        }
+
+        public void write(int value) throws IOException {
+            if (!buffer.hasRemaining()) flush();
+            buffer.putInt(value);
+        }
+
+        public void write(int[] values, int length) throws IOException {
+            int offset = 0;
+            while (offset < length) {
+                if (!buffer.hasRemaining()) flush();
+                int count = Math.min(length - offset, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, offset, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                offset += count;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            if (counters != null) counters.bytesWritten += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // Buffered positional reader over one run of the shared scratch channel, through a borrowed buffer
+    private static class RunReader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final Counters counters;
+        private long position;
+        private long remaining;
+        int head;
+
+        RunReader(FileChannel channel, long firstInt, long length, ByteBuffer buffer, Counters counters) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.buffer.clear().limit(0);
+            this.counters = counters;
+            this.position = firstInt * Integer.BYTES;
+            this.remaining = length;
+        }
+
+        // Loads the next value into head; false once the run is used up
+        boolean advance() throws IOException {
+            if (!buffer.hasRemaining()) {
+                if (remaining == 0) return false;
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), remaining * Integer.BYTES));
+                while (buffer.hasRemaining()) {
+                    int read = channel.read(buffer, position);
+                    if (read < 0) throw new IOException("Unexpected end of run at byte " + position);
+                    position += read;
+                }
+                buffer.flip();
+                counters.bytesRead += buffer.remaining();
+                remaining -= buffer.remaining() / Integer.BYTES;
+            }
+            head = buffer.getInt();
+            return true;
+        }
+    }
+
+    // I/O and comparison totals of one sort, plus progress reporting against the total element moves
+    static class Counters {
+        private final long total;
+        private final Progress progress;
+        private long done;
+        private String message = "";
+        long bytesRead;
+        long bytesWritten;
+        long comparisons;
+
+        Counters(long total, Progress progress) {
+            this.total = Math.max(1, total);
+            this.progress = progress;
+        }
+
+        void advance(String message, long elements) {
+            if (message != null) this.message = message;
+            done += elements;
+            if (progress != null) progress.update(this.message, Math.min(done, total), total);
+        }
+    }
+
+    // Maps file positions to the sample indices of the coarse trace
+    private static class Sampler {
+        private final long elements;
+        private final StepSink sink;
+        private final int count;
+        final int[] input;
+        private long nextPosition = Long.MAX_VALUE;
+        private int next;
+
+        Sampler(long elements, StepSink sink, int samples) {
+            this.elements = elements;
+            this.sink = sink;
+            this.count = (int) Math.min(Math.max(0, samples), elements);
+            this.input = new int[count];
+        }
+
+        private long positionOf(int sample) {
+            return (long) ((double) sample * elements / count);
+        }
+
+        // First sample at or after the given file position
+        private int sampleAt(long position) {
+            int sample = (int) Math.min(count, (long) Math.ceil((double) position * count / elements));
+            while (sample > 0 && positionOf(sample - 1) >= position) sample--;
+            while (sample < count && positionOf(sample) < position) sample++;
+            return sample;
+        }
+
+        void capture(long start, int[] values, int length) {
+            for (int s = sampleAt(start); s < count && positionOf(s) < start + length; s++) {
+                input[s] = values[(int) (positionOf(s) - start)];
+            }
+        }
+
+        void emit(long start, int[] values, int length) {
+            for (int s = sampleAt(start); s < count && positionOf(s) < start + length; s++) {
+                sink.set(s, values[(int) (positionOf(s) - start)]);
+            }
+        }
+
+        // Starts a run or merge over [from, to); merged values then arrive one by one through emit(position, value)
+        void lane(long from, long to) {
+            if (count == 0) return;
+            next = sampleAt(from);
+            nextPosition = next < count ? positionOf(next) : Long.MAX_VALUE;
+            int end = sampleAt(to);
+            if (next < end) sink.lane(next, end);
+        }
+
+        void emit(long position, int value) {
+            if (position != nextPosition) return;
+            sink.set(next, value);
+            next++;
+            nextPosition = next < count ? positionOf(next) : Long.MAX_VALUE;
+        }
+    }
+}
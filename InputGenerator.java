@@ -0,0 +1,197 @@
+package com.simulator;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Seeded generator for sorting inputs. The same distribution, size, range,
+ * parameter and seed always produce the same array, so any run can be
+ * reproduced from its seed. Large arrays are filled in parallel chunks; every
+ * chunk draws from its own split of the seeded generator, so the result does
+ * not depend on how many threads did the work.
+ */
+public class InputGenerator {
+
+    // Elements per parallel chunk; below two chunks the fill stays on the calling thread
+    private static final int CHUNK_SIZE = 1 << 16;
+    // Zipf ranks beyond this are so rare that the cumulative table is cut off here
+    private static final int MAX_ZIPF_RANKS = 1 << 16;
+
+    public enum Distribution {
+        UNIFORM("Uniform", "values drawn uniformly from the range"),
+        NEARLY_SORTED("Nearly Sorted", "ascending, then the given number of random swaps"),
+        REVERSED("Reversed", "descending"),
+        FEW_UNIQUE("Few Unique", "the given number of distinct values, shuffled"),
+        SAWTOOTH("Sawtooth", "the given number of ascending runs"),
+        ORGAN_PIPE("Organ Pipe", "ascending to the middle, then descending"),
+        ZIPF("Zipf", "small values far more frequent than large ones (s = 1)"),
+        QUICKSORT_KILLER("Quicksort Killer", "median-of-three killer sequence");
+
+        private final String displayName;
+        private final String description;
+
+        Distribution(String displayName, String description) {
+            this.displayName = displayName;
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        /** Swaps, distinct values or runs used when no parameter is given. */
+        public int defaultParameter(int size) {
+            return switch (this) {
+                case NEARLY_SORTED -> Math.max(1, size / 100);
+                case FEW_UNIQUE -> 8;
+                case SAWTOOTH -> 4;
+                default -> 0;
+            };
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    /** Fresh seed for a run that should later be reproducible. */
+    public static long newSeed() {
+        return new SplittableRandom().nextLong();
+    }
+
+    public int[] generate(Distribution distribution, int size, int min, int max, long seed) {
+        return generate(distribution, size, min, max, distribution.defaultParameter(size), seed);
+    }
+
+    /**
+     * Array of {@code size} values in {@code [min, max]}. The parameter is the
+     * swap count, distinct value count or run count, depending on the distribution.
+     */
+    public int[] generate(Distribution distribution, int size, int min, int max, int parameter, long seed) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must not be negative: " + size);
+        }
+        if (min > max) {
+            throw new IllegalArgumentException("Empty value range: " + min + ".." + max);
+        }
+        int[] array = new int[size];
+        long range = (long) max - min + 1;
+        switch (distribution) {
+            case UNIFORM -> fill(array, seed, (random, i) -> (int) (min + random.nextLong(range)));
+            case NEARLY_SORTED -> {
+                fill(array, seed, (random, i) -> spread(i, size, min, range));
+                swapRandomly(array, Math.max(0, parameter), new SplittableRandom(seed));
+            }
+            case REVERSED -> fill(array, seed, (random, i) -> spread(size - 1 - i, size, min, range));
+            case FEW_UNIQUE -> {
+                int distinct = (int) Math.max(1, Math.min(parameter, range));
+                fill(array, seed, (random, i) -> spread(random.nextInt(distinct), distinct, min, range));
+            }
+            case SAWTOOTH -> {
+                int run = (int) Math.max(1, ((long) size + Math.max(1, parameter) - 1) / Math.max(1, parameter));
+                fill(array, seed, (random, i) -> spread(i % run, run, min, range));
+            }
+            case ORGAN_PIPE -> {
+                int half = (size + 1) / 2;
+                fill(array, seed, (random, i) -> spread(i < half ? i : size - 1 - i, half, min, range));
+            }
+            case ZIPF -> {
+                double[] cumulative = zipfTable((int) Math.min(range, MAX_ZIPF_RANKS));
+                fill(array, seed, (random, i) -> min + zipfRank(cumulative, random.nextDouble()));
+            }
+            case QUICKSORT_KILLER -> fillMedianOfThreeKiller(array, min, range);
+        }
+        return array;
+    }
+
+    private interface ElementSource {
+        int next(SplittableRandom random, int index);
+    }
+
+    private static void fill(int[] array, long seed, ElementSource source) {
+        int chunks = (array.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        // Split sequentially so chunk c always gets the same generator
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[chunks];
+        for (int c = 0; c < chunks; c++) {
+            randoms[c] = root.split();
+        }
+        IntStream chunkIndices = IntStream.range(0, chunks);
+        if (chunks > 1) chunkIndices = chunkIndices.parallel();
+        chunkIndices.forEach(c -> {
+            SplittableRandom random = randoms[c];
+            int end = (int) Math.min(array.length, (long) (c + 1) * CHUNK_SIZE);
+            for (int i = c * CHUNK_SIZE; i < end; i++) {
+                array[i] = source.next(random, i);
+            }
+        });
+    }
+
+    // Position i of n steps mapped evenly onto the value range
+    private static int spread(long i, long n, int min, long range) {
+        if (n <= 1) return min;
+        return (int) (min + (i * (range - 1)) / (n - 1));
+    }
+
+    private static void swapRandomly(int[] array, int swaps, SplittableRandom random) {
+        if (array.length < 2) return;
+        for (int s = 0; s < swaps; s++) {
+            int i = random.nextInt(array.length);
+            int j = random.nextInt(array.length);
+            int temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+    }
+
+    private static double[] zipfTable(int ranks) {
+        double[] cumulative = new double[ranks];
+        double total = 0;
+        for (int k = 0; k < ranks; k++) {
+            total += 1.0 / (k + 1);
+            cumulative[k] = total;
+        }
+        for (int k = 0; k < ranks; k++) {
+            cumulative[k] /= total;
+        }
+        return cumulative;
+    }
+
+    // Zero-based rank of the first cumulative weight above u
+    private static int zipfRank(double[] cumulative, double u) {
+        int low = 0, high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] <= u) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /*
+     * Musser's median-of-three killer: every median-of-three pivot is the
+     * second smallest element left, so partitions peel off two elements at a
+     * time and quicksort degrades to quadratic work. The sequence needs a
+     * length divisible by four; any remainder is appended in ascending order.
+     * Values are ranks 1..n mapped onto the range. With k = n/2 rounded down
+     * to even, slot j holds rank j + 1 for even j < k, k + j for odd j < k,
+     * 2(j - k + 1) for k <= j < 2k, and j + 1 after that, so it fills in
+     * parallel chunks like the other distributions.
+     */
+    private static void fillMedianOfThreeKiller(int[] array, int min, long range) {
+        int n = array.length;
+        int k = (n & ~3) / 2;
+        fill(array, 0, (random, j) -> {
+            int rank;
+            if (j < k) {
+                rank = (j & 1) == 0 ? j + 1 : k + j;
+            } else if (j < 2 * k) {
+                rank = 2 * (j - k + 1);
+            } else {
+                rank = j + 1;
+            }
+            return spread(rank - 1, n, min, range);
+        });
+    }
+}
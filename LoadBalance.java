@@ -0,0 +1,43 @@
+package com.simulator;
+
+import java.util.Arrays;
+
+/**
+ * How evenly a parallel sample sort split its input: the size of every
+ * bucket it sorted, in key order, plus the keys that fell into equality
+ * buckets (keys equal to a splitter), which need no sorting. A perfect split
+ * has an imbalance of 1; the largest bucket bounds how well the bucket
+ * phase can scale.
+ */
+public record LoadBalance(int[] bucketSizes, long equalKeys) {
+
+    public int bucketCount() {
+        return bucketSizes.length;
+    }
+
+    public int largest() {
+        return Arrays.stream(bucketSizes).max().orElse(0);
+    }
+
+    public int smallest() {
+        return Arrays.stream(bucketSizes).min().orElse(0);
+    }
+
+    public double mean() {
+        return bucketSizes.length == 0 ? 0 : Arrays.stream(bucketSizes).asLongStream().sum() / (double) bucketSizes.length;
+    }
+
+    /** Largest bucket over the mean bucket; 1 if there are no keys to sort. */
+    public double imbalance() {
+        double mean = mean();
+        return mean == 0 ? 1 : largest() / mean;
+    }
+
+    /** One-line summary, e.g. "16 buckets, 62,500 keys on average, largest 1.03x, smallest 0.97x". */
+    public String describe() {
+        double mean = mean();
+        String summary = String.format("%d buckets, %,.0f keys on average, largest %.2fx, smallest %.2fx",
+                bucketSizes.length, mean, imbalance(), mean == 0 ? 1 : smallest() / mean);
+        return equalKeys == 0 ? summary : summary + String.format(", %,d keys equal to a splitter", equalKeys);
+    }
+}
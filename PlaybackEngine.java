@@ -0,0 +1,197 @@
+package com.simulator;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Single-timer playback driver for step-based visualizations.
+ * One AnimationTimer advances the target by elapsed time, so playback costs
+ * the same whether the trace has ten steps or ten million, and speed changes,
+ * pausing, single-stepping and seeking never rebuild anything.
+ * <p>
+ * In turbo mode many steps are applied per frame and only the final state of
+ * each frame is painted. The batch size adapts to a frame-time budget, so the
+ * UI stays responsive however high the requested rate is.
+ */
+public class PlaybackEngine {
+
+    /** The visualization being driven. All callbacks run on the JavaFX thread. */
+    public interface Target {
+        boolean hasNextStep();
+
+        /** Applies the next step to the visualization. */
+        void stepForward();
+
+        /** Moves the visualization to an absolute step position. */
+        void seekTo(long position);
+
+        /** Paints the current state; called once per frame in which steps were applied. */
+        default void render() {
+            // Targets that update their view inside stepForward need nothing here
+        }
+
+        default void onFinished() {
+            // Optional completion hook
+        }
+
+        /**
+         * Applies up to maxSteps steps without painting in between and returns how many
+         * were applied. Targets should override this with a lean path for turbo playback.
+         */
+        default long advance(long maxSteps) {
+            long applied = 0;
+            while (applied < maxSteps && hasNextStep()) {
+                stepForward();
+                applied++;
+            }
+            return applied;
+        }
+    }
+
+    // Share of a 60 fps frame that turbo playback may spend applying steps
+    private static final long FRAME_BUDGET_NANOS = 8_000_000L;
+    private static final long MAX_STEPS_PER_FRAME = 50_000_000L;
+
+    private final AnimationTimer timer;
+    private Target target;
+    private double stepsPerSecond = 1.0;
+    private boolean playing;
+    private long lastFrameNanos = -1;
+    private double pendingSteps;
+    private boolean turbo;
+    private double nanosPerStep = 100;
+
+    public PlaybackEngine() {
+        timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                onFrame(now);
+            }
+        };
+    }
+
+    public void setTarget(Target target) {
+        stop();
+        this.target = target;
+    }
+
+    public void setStepsPerSecond(double stepsPerSecond) {
+        this.stepsPerSecond = Math.max(0.01, stepsPerSecond);
+    }
+
+    public double getStepsPerSecond() {
+        return stepsPerSecond;
+    }
+
+    public void setTurbo(boolean turbo) {
+        this.turbo = turbo;
+        pendingSteps = 0;
+    }
+
+    public boolean isTurbo() {
+        return turbo;
+    }
+
+    /** Current turbo batch limit, derived from the measured cost per step. */
+    public long getStepsPerFrameBudget() {
+        return Math.max(1, Math.min(MAX_STEPS_PER_FRAME, (long) (FRAME_BUDGET_NANOS / nanosPerStep)));
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public void play() {
+        if (target == null || playing) return;
+        playing = true;
+        lastFrameNanos = -1;
+        timer.start();
+    }
+
+    public void pause() {
+        if (!playing) return;
+        playing = false;
+        timer.stop();
+    }
+
+    public void stop() {
+        pause();
+        pendingSteps = 0;
+    }
+
+    /** Applies exactly one step while paused. */
+    public void step() {
+        if (target == null || playing) return;
+        if (!target.hasNextStep()) {
+            finish();
+            return;
+        }
+        target.stepForward();
+        target.render();
+        if (!target.hasNextStep()) {
+            finish();
+        }
+    }
+
+    public void seek(long position) {
+        if (target == null) return;
+        target.seekTo(Math.max(0, position));
+        target.render();
+        pendingSteps = 0;
+    }
+
+    private void onFrame(long now) {
+        if (lastFrameNanos < 0) {
+            lastFrameNanos = now;
+            return;
+        }
+        double elapsedSeconds = (now - lastFrameNanos) / 1_000_000_000.0;
+        lastFrameNanos = now;
+
+        if (turbo) {
+            onTurboFrame(elapsedSeconds);
+            return;
+        }
+
+        // Never bank more than one step, so a stalled frame does not cause a burst afterwards
+        pendingSteps = Math.min(1.0, pendingSteps + elapsedSeconds * stepsPerSecond);
+        if (pendingSteps < 1.0) return;
+        pendingSteps -= 1.0;
+
+        if (!target.hasNextStep()) {
+            finish();
+            return;
+        }
+        target.stepForward();
+        target.render();
+        if (!target.hasNextStep()) {
+            finish();
+        }
+    }
+
+    private void onTurboFrame(double elapsedSeconds) {
+        long budget = getStepsPerFrameBudget();
+        // Anything beyond one frame's budget is dropped rather than carried as backlog
+        pendingSteps = Math.min(budget, pendingSteps + elapsedSeconds * stepsPerSecond);
+        long batch = (long) pendingSteps;
+        if (batch == 0) return;
+
+        long start = System.nanoTime();
+        long applied = target.advance(batch);
+        long spent = System.nanoTime() - start;
+        pendingSteps -= batch;
+
+        if (applied > 0) {
+            // Smoothed cost per step drives the next frame's budget
+            nanosPerStep = Math.max(1, 0.7 * nanosPerStep + 0.3 * ((double) spent / applied));
+        }
+        target.render();
+        if (!target.hasNextStep()) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        stop();
+        target.onFinished();
+    }
+}
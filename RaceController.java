@@ -0,0 +1,489 @@
+package com.simulator;
+
+import javafx.fxml.FXML;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+
+import java.util.*;
+
+/**
+ * Race mode: several algorithms sort the same input side by side. Their traces
+ * are generated in parallel on the service's trace executor, then one
+ * {@link PlaybackEngine} advances every lane by the same number of steps per
+ * tick, so the lane with the shortest trace crosses the line first. Lanes
+ * follow the same size limits as the sorting view: long traces are recorded
+ * compressed, and those too long to record are streamed while racing.
+ */
+public class RaceController extends BaseController {
+
+    @FXML private VBox algorithmChecks;
+    @FXML private VBox laneContainer;
+    @FXML private CheckBox turboCheckBox;
+    @FXML private Button playButton, pauseButton, resetButton, stepButton;
+    @FXML private Label inputLabel, progressLabel, resultLabel;
+
+    // Races need at least two lanes and stay readable up to this many
+    private static final int MAX_LANES = 6;
+    private static final String[] PLACE_LABELS = { "🥇 1st", "🥈 2nd", "🥉 3rd" };
+
+    private SortingService sortingService;
+    private int[] input = new int[0];
+    private final Map<String, CheckBox> algorithmBoxes = new LinkedHashMap<>();
+    private final List<Lane> lanes = new ArrayList<>();
+    // Trace generation still running, one task per lane
+    private final List<TraceGenerationTask> pendingTasks = new ArrayList<>();
+    private long clock;
+
+    /**
+     * One contestant: its trace cursor, the array it is sorting and its own
+     * renderer and counters.
+     */
+    private static final class Lane {
+        final String algorithm;
+        final int[] array;
+        final SortingBarRenderer renderer;
+        final CountingSink counter = new CountingSink();
+        final Label countersLabel = new Label();
+        final Label placeLabel = new Label();
+        final ProgressBar progress = new ProgressBar(0);
+        StepCursor cursor;
+        long finishedAt = -1;
+
+        Lane(String algorithm, int[] input, Pane barHost) {
+            this.algorithm = algorithm;
+            this.array = Arrays.copyOf(input, input.length);
+            this.renderer = new SortingBarRenderer(barHost, null);
+            renderer.setArray(array);
+        }
+
+        boolean isFinished() {
+            return finishedAt >= 0;
+        }
+
+        long operations() {
+            return counter.getComparisons() + counter.getSwaps() + counter.getWrites();
+        }
+    }
+
+    /** Called by the opener with the service to share and the array every lane starts from. */
+    public void setup(SortingService sortingService, int[] array, String preselected) {
+        this.sortingService = sortingService;
+        this.input = Arrays.copyOf(array, array.length);
+        algorithmBoxes.clear();
+        algorithmChecks.getChildren().clear();
+        for (String name : sortingService.getAlgorithmNames()) {
+            CheckBox box = new CheckBox(name);
+            box.setSelected(name.equals(preselected) || name.equals("Merge Sort")
+                    || name.equals("Quick Sort") || name.equals("Heap Sort"));
+            box.selectedProperty().addListener((obs, oldVal, newVal) -> onReset());
+            algorithmBoxes.put(name, box);
+            algorithmChecks.getChildren().add(box);
+        }
+        if (inputLabel != null) {
+            inputLabel.setText("Input: " + input.length + " elements, shared by every lane");
+        }
+        onReset();
+    }
+
+    @Override
+    protected void setupComponents() {
+        speedSlider.setMin(0.1);
+        speedSlider.setMax(3.0);
+        speedSlider.setValue(animationService.getAnimationSpeed());
+    }
+
+    @Override
+    protected void setupEventHandlers() {
+        speedSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
+            animationService.setAnimationSpeed(newVal.doubleValue());
+            playbackEngine.setStepsPerSecond(animationService.getPlaybackStepsPerSecond());
+        });
+        if (turboCheckBox != null) {
+            turboCheckBox.selectedProperty().addListener((obs, oldVal, newVal) -> {
+                animationService.setTurboMode(newVal);
+                playbackEngine.setTurbo(newVal);
+                playbackEngine.setStepsPerSecond(animationService.getPlaybackStepsPerSecond());
+            });
+        }
+    }
+
+    @Override
+    protected void configureAnimations() {
+        // The single engine is the shared clock for every lane
+        playbackEngine.setTarget(new RacePlayback());
+        if (turboCheckBox != null) {
+            turboCheckBox.setSelected(animationService.isTurboMode());
+        }
+        playbackEngine.setTurbo(animationService.isTurboMode());
+        playbackEngine.setStepsPerSecond(animationService.getPlaybackStepsPerSecond());
+    }
+
+    // ==================== RACE CONTROL ====================
+
+    @FXML
+    private void startRace() {
+        if (isAnimating) {
+            if (isPaused) pauseAnimation();
+            return;
+        }
+        prepareRace(this::startAnimation);
+    }
+
+    @FXML
+    private void pauseRace() {
+        if (isAnimating && !isPaused) {
+            pauseAnimation();
+        }
+    }
+
+    @FXML
+    private void stepRace() {
+        if ((isAnimating && !isPaused) || !pendingTasks.isEmpty()) return;
+        if (lanes.isEmpty() || lanes.get(0).cursor == null) {
+            prepareRace(playbackEngine::step);
+            return;
+        }
+        playbackEngine.step();
+    }
+
+    @FXML
+    private void resetRace() {
+        resetVisualization();
+    }
+
+    // Generates every lane's trace concurrently, then runs onReady once all are in
+    private void prepareRace(Runnable onReady) {
+        List<String> selected = selectedAlgorithms();
+        if (selected.size() < 2) {
+            showError("Race", "Select at least two algorithms to race.");
+            return;
+        }
+        if (selected.size() > MAX_LANES) {
+            showError("Race", "Select at most " + MAX_LANES + " algorithms.");
+            return;
+        }
+        onReset();
+        progressLabel.setText("Generating " + lanes.size() + " traces in parallel...");
+
+        TraceCache cache = sortingService.getTraceCache();
+        for (Lane lane : lanes) {
+            int cutoff = sortingService.cutoffFor(lane.algorithm);
+            TraceCache.Entry cached = cache.get(lane.algorithm, cutoff, input);
+            if (cached != null) {
+                lane.cursor = cached.trace().openCursor();
+                continue;
+            }
+            SortingAlgorithm algorithm = sortingService.getAlgorithm(lane.algorithm);
+            long estimate = algorithm.estimateSteps(input.length);
+            if (estimate > TraceGenerationTask.MAX_RECORDED_STEPS) {
+                // Too large to record: this lane pulls its steps while the race runs
+                lane.cursor = algorithm.streamSteps(input);
+                continue;
+            }
+            TraceGenerationTask task = new TraceGenerationTask(lane.algorithm, algorithm, input,
+                    estimate > TraceGenerationTask.MAX_PACKED_STEPS);
+            pendingTasks.add(task);
+            task.setOnSucceeded(e -> {
+                if (!pendingTasks.remove(task)) return;
+                cache.put(lane.algorithm, cutoff, input, task.getValue(), task.getCheckpoints());
+                lane.cursor = task.getValue().openCursor();
+                if (pendingTasks.isEmpty()) {
+                    progressLabel.setText("Racing " + lanes.size() + " algorithms");
+                    updateControlStates();
+                    onReady.run();
+                }
+            });
+            task.setOnFailed(e -> {
+                if (!pendingTasks.remove(task)) return;
+                onReset();
+                showError("Race", "Could not generate steps for " + lane.algorithm + ":\n" + task.getException());
+            });
+        }
+        updateControlStates();
+        if (pendingTasks.isEmpty()) {
+            // Every lane was cached
+            progressLabel.setText("Racing " + lanes.size() + " algorithms");
+            onReady.run();
+            return;
+        }
+        // Submitted only once every handler is wired, so none can miss its completion
+        for (TraceGenerationTask task : pendingTasks) {
+            sortingService.getTraceExecutor().submit(task);
+        }
+    }
+
+    private List<String> selectedAlgorithms() {
+        List<String> selected = new ArrayList<>();
+        algorithmBoxes.forEach((name, box) -> {
+            if (box.isSelected()) selected.add(name);
+        });
+        return selected;
+    }
+
+    private void buildLanes(List<String> algorithms) {
+        laneContainer.getChildren().clear();
+        lanes.clear();
+        for (String algorithm : algorithms) {
+            Pane barHost = new Pane();
+            barHost.setPrefHeight(130);
+            barHost.setMinHeight(90);
+            barHost.getStyleClass().addAll("sorting-chart", "sorting-canvas");
+            Lane lane = new Lane(algorithm, input, barHost);
+
+            Label title = new Label(algorithm);
+            title.getStyleClass().add("panel-title");
+            Region spacer = new Region();
+            HBox.setHgrow(spacer, Priority.ALWAYS);
+            lane.placeLabel.getStyleClass().add("stat-label");
+            HBox header = new HBox(10, title, spacer, lane.placeLabel);
+            header.setAlignment(Pos.CENTER_LEFT);
+
+            lane.countersLabel.getStyleClass().add("info-text");
+            lane.progress.setMaxWidth(Double.MAX_VALUE);
+            VBox box = new VBox(6, header, barHost, lane.progress, lane.countersLabel);
+            box.setPadding(new Insets(8));
+            box.getStyleClass().add("visualization-pane");
+            laneContainer.getChildren().add(box);
+            lanes.add(lane);
+        }
+        updateLaneLabels();
+    }
+
+    private void cancelGeneration() {
+        for (TraceGenerationTask task : pendingTasks) {
+            task.cancel();
+        }
+        pendingTasks.clear();
+    }
+
+    private void closeCursors() {
+        for (Lane lane : lanes) {
+            if (lane.cursor != null) {
+                lane.cursor.close();
+                lane.cursor = null;
+            }
+        }
+    }
+
+    // ==================== LANE UPDATES ====================
+
+    private void applyStep(Lane lane, long step) {
+        lane.counter.add(step);
+        int index1 = SortingTrace.index1(step);
+        switch (SortingTrace.type(step)) {
+            case SWAP -> {
+                int index2 = SortingTrace.index2(step);
+                int temp = lane.array[index1];
+                lane.array[index1] = lane.array[index2];
+                lane.array[index2] = temp;
+                lane.renderer.valueChanged(index1);
+                lane.renderer.valueChanged(index2);
+            }
+            case SET -> {
+                lane.array[index1] = SortingTrace.value(step);
+                lane.renderer.valueChanged(index1);
+            }
+            case LANE -> lane.renderer.lane(index1, SortingTrace.laneEnd(step));
+            default -> { }
+        }
+    }
+
+    private void showHighlight(Lane lane, long step) {
+        int index1 = SortingTrace.index1(step);
+        switch (SortingTrace.type(step)) {
+            case COMPARE -> lane.renderer.highlight(index1, SortingTrace.index2(step), SortingBarRenderer.COMPARE_COLOR);
+            case SWAP -> lane.renderer.highlight(index1, SortingTrace.index2(step), SortingBarRenderer.SWAP_COLOR);
+            case HIGHLIGHT -> lane.renderer.highlight(index1, -1, SortingBarRenderer.HIGHLIGHT_COLOR);
+            default -> { }
+        }
+    }
+
+    // A lane finishes at the clock tick equal to its trace length, so places follow step counts
+    private void checkFinished(Lane lane) {
+        if (lane.isFinished() || !lane.cursor.isReady() || lane.cursor.hasNext()) return;
+        lane.finishedAt = lane.cursor.position();
+        lane.renderer.playCompletionSweep();
+    }
+
+    private int placeOf(Lane lane) {
+        int ahead = 0;
+        for (Lane other : lanes) {
+            if (other.isFinished() && other.finishedAt < lane.finishedAt) ahead++;
+        }
+        return ahead + 1;
+    }
+
+    // Counters are shown relative to the lane with the fewest so far
+    private void updateLaneLabels() {
+        long fewestComparisons = Long.MAX_VALUE;
+        long fewestOperations = Long.MAX_VALUE;
+        for (Lane lane : lanes) {
+            fewestComparisons = Math.min(fewestComparisons, lane.counter.getComparisons());
+            fewestOperations = Math.min(fewestOperations, lane.operations());
+        }
+        for (Lane lane : lanes) {
+            lane.countersLabel.setText("Comparisons: " + lane.counter.getComparisons()
+                    + relative(lane.counter.getComparisons(), fewestComparisons)
+                    + "   Swaps: " + lane.counter.getSwaps()
+                    + "   Writes: " + lane.counter.getWrites()
+                    + "   Operations: " + lane.operations() + relative(lane.operations(), fewestOperations));
+            long total = lane.cursor != null ? lane.cursor.totalSteps() : 0;
+            lane.progress.setProgress(total > 0 ? (double) lane.cursor.position() / total : 0);
+            if (lane.isFinished()) {
+                int place = placeOf(lane);
+                lane.placeLabel.setText((place <= PLACE_LABELS.length ? PLACE_LABELS[place - 1] : "#" + place)
+                        + " in " + lane.finishedAt + " steps");
+            } else {
+                lane.placeLabel.setText(lane.cursor != null ? "step " + lane.cursor.position() : "");
+            }
+        }
+    }
+
+    private static String relative(long value, long fewest) {
+        if (fewest <= 0) return "";
+        return String.format(" (%.2f×)", (double) value / fewest);
+    }
+
+    private void showResults() {
+        List<Lane> ranking = new ArrayList<>(lanes);
+        ranking.sort(Comparator.comparingLong(lane -> lane.finishedAt));
+        Lane winner = ranking.get(0);
+        StringBuilder summary = new StringBuilder("🏁 " + winner.algorithm + " finished first in " + winner.finishedAt + " steps");
+        for (Lane lane : ranking.subList(1, ranking.size())) {
+            summary.append(String.format("%n#%d %s: %d steps (+%.0f%%)", placeOf(lane), lane.algorithm, lane.finishedAt,
+                    winner.finishedAt > 0 ? 100.0 * (lane.finishedAt - winner.finishedAt) / winner.finishedAt : 0));
+        }
+        resultLabel.setText(summary.toString());
+        progressLabel.setText("Race finished after " + clock + " steps");
+        System.out.println(summary);
+    }
+
+    /**
+     * Adapts all lanes to the playback engine. Each tick moves every unfinished
+     * lane by the same number of steps.
+     */
+    private class RacePlayback implements PlaybackEngine.Target {
+        @Override
+        public boolean hasNextStep() {
+            for (Lane lane : lanes) {
+                // A streamed lane that has not caught up yet still has steps coming
+                if (lane.cursor != null && (!lane.cursor.isReady() || lane.cursor.hasNext())) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void stepForward() {
+            advance(1);
+        }
+
+        @Override
+        public void seekTo(long position) {
+            // Races only run forward; Reset starts over
+        }
+
+        @Override
+        public long advance(long maxSteps) {
+            long moved = 0;
+            for (Lane lane : lanes) {
+                if (lane.cursor == null) continue;
+                long applied = 0;
+                long lastStep = 0;
+                while (applied < maxSteps && lane.cursor.isReady() && lane.cursor.hasNext()) {
+                    lastStep = lane.cursor.next();
+                    applyStep(lane, lastStep);
+                    applied++;
+                }
+                if (applied > 0) {
+                    showHighlight(lane, lastStep);
+                    checkFinished(lane);
+                }
+                moved = Math.max(moved, applied);
+            }
+            clock += moved;
+            return moved;
+        }
+
+        @Override
+        public void render() {
+            for (Lane lane : lanes) {
+                lane.renderer.render();
+            }
+            updateLaneLabels();
+            progressLabel.setText("Racing " + lanes.size() + " algorithms - clock at step " + clock);
+        }
+
+        @Override
+        public void onFinished() {
+            stopAnimation();
+            updateLaneLabels();
+            showResults();
+        }
+    }
+
+    // ==================== LIFECYCLE ====================
+
+    @Override
+    protected void onAnimationStart() {
+        // Lanes are ready by the time the engine starts
+    }
+
+    @Override
+    protected void onAnimationPause(boolean isPaused) {
+        progressLabel.setText(isPaused ? "Race paused at step " + clock : "Racing " + lanes.size() + " algorithms");
+    }
+
+    @Override
+    protected void onAnimationStop() {
+        // Nothing to tear down
+    }
+
+    @Override
+    protected void onReset() {
+        playbackEngine.stop();
+        isAnimating = false;
+        isPaused = false;
+        cancelGeneration();
+        closeCursors();
+        clock = 0;
+        buildLanes(selectedAlgorithms());
+        if (progressLabel != null) {
+            progressLabel.setText("Pick two or more algorithms and start the race");
+        }
+        if (resultLabel != null) {
+            resultLabel.setText("");
+        }
+        updateControlStates();
+    }
+
+    @Override
+    protected void updateControlStates() {
+        boolean isGenerating = !pendingTasks.isEmpty();
+        boolean isRunning = isAnimating && !isPaused;
+        if (playButton != null) playButton.setDisable(isRunning || isGenerating);
+        if (pauseButton != null) pauseButton.setDisable(!isRunning);
+        if (resetButton != null) resetButton.setDisable(false);
+        if (stepButton != null) stepButton.setDisable(isRunning || isGenerating);
+        for (CheckBox box : algorithmBoxes.values()) {
+            box.setDisable(isAnimating || isGenerating);
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        cancelGeneration();
+        closeCursors();
+        super.cleanup();
+    }
+
+    @Override
+    protected javafx.scene.Scene getScene() {
+        return laneContainer != null ? laneContainer.getScene() : null;
+    }
+}
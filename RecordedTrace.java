@@ -0,0 +1,15 @@
+package com.simulator;
+
+/**
+ * A finished recording of sorting steps that can be replayed any number of times.
+ */
+public interface RecordedTrace {
+
+    /** New cursor positioned at the first step. */
+    StepCursor openCursor();
+
+    long stepCount();
+
+    /** Approximate heap footprint of the recording. */
+    long sizeInBytes();
+}
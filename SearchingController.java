@@ -7,7 +7,6 @@ import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.HBox;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 
 import java.util.*;
 import javafx.scene.text.Font;
@@ -37,7 +36,7 @@ public class SearchingController {
 
     private int[] currentArray;
     private AnimationService animationService;
-    private Timeline searchAnimation;
+    private PlaybackEngine searchPlayback;
     private boolean isSearching = false;
     private int comparisons = 0;
     private long startTime = 0;
@@ -47,6 +46,7 @@ public class SearchingController {
         System.out.println("SearchingController initialized");
 
         animationService = AnimationService.getInstance();
+        searchPlayback = new PlaybackEngine();
         setupComponents();
         setupEventHandlers();
 
@@ -262,29 +262,38 @@ public class SearchingController {
     }
 
     private void animateSearch(List<SearchStep> steps) {
-        searchAnimation = new Timeline();
-        double delay = 800.0 / animationService.getAnimationSpeed();
-
-        for (int i = 0; i < steps.size(); i++) {
-            final int stepIndex = i;
-            SearchStep step = steps.get(i);
-
-            KeyFrame keyFrame = new KeyFrame(
-                    Duration.millis((i + 1) * delay),
-                    e -> {
-                        executeSearchStep(step);
-                        updateProgress((double) (stepIndex + 1) / steps.size());
-
-                        if (stepIndex == steps.size() - 1) {
-                            Platform.runLater(this::onSearchComplete);
-                        }
-                    }
-            );
-
-            searchAnimation.getKeyFrames().add(keyFrame);
-        }
+        // 800ms per step at normal speed
+        searchPlayback.setStepsPerSecond(1.25 * animationService.getAnimationSpeed());
+        searchPlayback.setTarget(new PlaybackEngine.Target() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNextStep() {
+                return position < steps.size();
+            }
+
+            @Override
+            public void stepForward() {
+                executeSearchStep(steps.get(position++));
+                updateProgress((double) position / steps.size());
+            }
 
-        searchAnimation.play();
+            @Override
+            public void seekTo(long target) {
+                // Search steps only highlight, so jumping just replays up to the target
+                clearHighlights();
+                position = 0;
+                while (position < target && hasNextStep()) {
+                    stepForward();
+                }
+            }
+
+            @Override
+            public void onFinished() {
+                onSearchComplete();
+            }
+        });
+        searchPlayback.play();
     }
 
     private void executeSearchStep(SearchStep step) {
@@ -423,9 +432,7 @@ public class SearchingController {
 
     @FXML
     private void resetSearch() {
-        if (searchAnimation != null) {
-            searchAnimation.stop();
-        }
+        searchPlayback.stop();
 
         isSearching = false;
         clearHighlights();
@@ -533,9 +540,7 @@ public class SearchingController {
     @FXML
     private void goBack() {
         try {
-            if (searchAnimation != null) {
-                searchAnimation.stop();
-            }
+            searchPlayback.stop();
 
             Stage currentStage = (Stage) arrayVisualization.getScene().getWindow();
             // ✅ Use hide() instead of close() for back navigation
@@ -0,0 +1,326 @@
+package com.simulator;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * Order statistics without a full sort: the k-th smallest element
+ * (quickselect), the k smallest in order (heap partial sort) and the k
+ * smallest of an unbounded stream. Every operation reports its element
+ * accesses to a {@link StepSink} like the sorting algorithms do, so a trace
+ * can be recorded and played; the overloads without a sink are the headless
+ * path and report to a sink that ignores everything.
+ */
+public final class SelectionEngine {
+
+    // Floyd-Rivest samples a sub-range only when the range is larger than this
+    private static final int SAMPLING_THRESHOLD = 600;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    // Fixed, so the same input always gives the same trace
+    private static final long SAMPLE_SEED = 0x5E1EC7L;
+
+    private static final StepSink NO_STEPS = new StepSink() {
+        @Override
+        public void compare(int index1, int index2) {
+        }
+
+        @Override
+        public void swap(int index1, int index2) {
+        }
+
+        @Override
+        public void set(int index, int value) {
+        }
+
+        @Override
+        public void highlight(int index) {
+        }
+    };
+
+    private SelectionEngine() {
+    }
+
+    // ==================== QUICKSELECT ====================
+
+    /** Headless {@link #select(int[], int, StepSink)}. */
+    public static int select(int[] array, int k) {
+        return select(array, k, NO_STEPS);
+    }
+
+    /**
+     * Rearranges the array so that {@code array[k]} holds the element a full
+     * sort would put there, everything before it is no larger and everything
+     * after it no smaller, and returns that element. Uses Floyd-Rivest
+     * selection: on large ranges the pivot is first selected from a small
+     * sample around the expected position, so each pass cuts the range to
+     * about n^(2/3) elements. The sample slots are first filled with elements
+     * drawn from the whole range, so sorted or patterned input cannot skew
+     * the pivot. After 2·log2(n) passes that fail to finish,
+     * the remaining range is heap sorted instead, so the worst case stays O(n log n).
+     */
+    public static int select(int[] array, int k, StepSink sink) {
+        if (k < 0 || k >= array.length) {
+            throw new IllegalArgumentException("Rank " + k + " out of range for " + array.length + " elements");
+        }
+        select(array, sink, new SplittableRandom(SAMPLE_SEED), 0, array.length - 1, k,
+                2 * (int) SortingAlgorithm.log2(array.length));
+        return array[k];
+    }
+
+    private static void select(int[] a, StepSink sink, SplittableRandom random,
+                               int left, int right, int k, int passesAllowed) {
+        sink.enterCall();
+        while (right > left) {
+            if (right - left < INSERTION_SORT_THRESHOLD) {
+                insertionSort(a, sink, left, right);
+                break;
+            }
+            if (passesAllowed-- == 0) {
+                heapSort(a, sink, left, right);
+                break;
+            }
+            if (right - left > SAMPLING_THRESHOLD) {
+                // Select k within a sample around its expected position; that puts a good pivot at k
+                double n = right - left + 1;
+                double i = k - left + 1;
+                double z = Math.log(n);
+                double s = 0.5 * Math.exp(2 * z / 3);
+                double sd = 0.5 * Math.sqrt(z * s * (n - s) / n) * Math.signum(i - n / 2);
+                int sampleLeft = (int) Math.max(left, k - i * s / n + sd);
+                int sampleRight = (int) Math.min(right, k + (n - i) * s / n + sd);
+                for (int slot = sampleLeft; slot <= sampleRight; slot++) {
+                    swap(a, sink, slot, random.nextInt(left, right + 1));
+                }
+                select(a, sink, random, sampleLeft, sampleRight, k, passesAllowed);
+            } else {
+                sort3(a, sink, left, k, right);
+            }
+
+            // Hoare partition around a[k], with the pivot parked at one end as a sentinel
+            int pivot = a[k];
+            swap(a, sink, left, k);
+            sink.compare(right, left);
+            int pivotIndex = left;
+            if (a[right] > pivot) {
+                swap(a, sink, right, left);
+                pivotIndex = right;
+            }
+            int i = left;
+            int j = right;
+            while (i < j) {
+                swap(a, sink, i, j);
+                // The first swap carries the pivot to the opposite end, where it stays
+                if (i == left) pivotIndex = pivotIndex == left ? right : left;
+                i++;
+                j--;
+                while (lessThanPivot(a, sink, i, pivotIndex, pivot)) i++;
+                while (greaterThanPivot(a, sink, j, pivotIndex, pivot)) j--;
+            }
+            if (pivotIndex == left) {
+                swap(a, sink, left, j);
+            } else {
+                j++;
+                swap(a, sink, j, right);
+            }
+
+            // The pivot is final at j; keep only the side holding k
+            if (j <= k) left = j + 1;
+            if (k <= j) right = j - 1;
+        }
+        sink.exitCall();
+    }
+
+    private static boolean lessThanPivot(int[] a, StepSink sink, int i, int pivotIndex, int pivot) {
+        sink.compare(i, pivotIndex);
+        return a[i] < pivot;
+    }
+
+    private static boolean greaterThanPivot(int[] a, StepSink sink, int j, int pivotIndex, int pivot) {
+        sink.compare(j, pivotIndex);
+        return a[j] > pivot;
+    }
+
+    // ==================== HEAP PARTIAL SORT ====================
+
+    /** Headless {@link #partialSort(int[], int, StepSink)}. */
+    public static void partialSort(int[] array, int k) {
+        partialSort(array, k, NO_STEPS);
+    }
+
+    /**
+     * Moves the k smallest elements, in ascending order, to the front of the
+     * array; the order of the rest is unspecified. The front k slots are kept
+     * as a max-heap while the remaining elements are scanned, each one
+     * replacing the root when it is smaller, and the heap is then sorted in
+     * place. O(n log k) time and no extra memory.
+     */
+    public static void partialSort(int[] array, int k, StepSink sink) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        k = Math.min(k, array.length);
+        if (k == 0) return;
+        for (int root = k / 2 - 1; root >= 0; root--) {
+            siftDown(array, sink, 0, root, k);
+        }
+        for (int i = k; i < array.length; i++) {
+            sink.compare(i, 0);
+            if (array[i] < array[0]) {
+                swap(array, sink, 0, i);
+                siftDown(array, sink, 0, 0, k);
+            }
+        }
+        for (int end = k - 1; end > 0; end--) {
+            swap(array, sink, 0, end);
+            siftDown(array, sink, 0, 0, end);
+        }
+    }
+
+    // ==================== STREAMING TOP-K ====================
+
+    /**
+     * The k smallest values of a stream of any length, in O(k) memory. Values
+     * are offered one at a time (it is an {@link IntConsumer}, so an
+     * {@code IntStream} can feed it with {@code forEach}) and kept in a
+     * max-heap of k slots, so each offer costs O(1) when the value is too
+     * large to keep and O(log k) otherwise. When built with a sink, the steps
+     * refer to heap slots: a replay into an array of k zeros shows the heap.
+     */
+    public static final class TopK implements IntConsumer {
+        private final int[] heap;
+        private final StepSink sink;
+        private int size;
+        private long seen;
+
+        public TopK(int k) {
+            this(k, NO_STEPS);
+        }
+
+        public TopK(int k, StepSink sink) {
+            if (k <= 0) {
+                throw new IllegalArgumentException("k must be positive: " + k);
+            }
+            this.heap = new int[k];
+            this.sink = sink;
+            sink.allocate((long) k * Integer.BYTES);
+        }
+
+        public void offer(int value) {
+            seen++;
+            if (size < heap.length) {
+                // Still filling: append and sift up
+                int child = size++;
+                heap[child] = value;
+                sink.set(child, value);
+                while (child > 0) {
+                    int parent = (child - 1) / 2;
+                    sink.compare(parent, child);
+                    if (heap[parent] >= heap[child]) break;
+                    swap(heap, sink, parent, child);
+                    child = parent;
+                }
+                return;
+            }
+            sink.highlight(0);
+            if (value < heap[0]) {
+                heap[0] = value;
+                sink.set(0, value);
+                siftDown(heap, sink, 0, 0, size);
+            }
+        }
+
+        @Override
+        public void accept(int value) {
+            offer(value);
+        }
+
+        public int capacity() {
+            return heap.length;
+        }
+
+        /** Values kept so far: min(k, values offered). */
+        public int size() {
+            return size;
+        }
+
+        /** Values offered so far. */
+        public long seen() {
+            return seen;
+        }
+
+        /** The largest value kept, i.e. the k-th smallest so far; offers above it are dropped. */
+        public int threshold() {
+            if (size == 0) {
+                throw new IllegalStateException("No values offered yet");
+            }
+            return heap[0];
+        }
+
+        /** The values kept, ascending. The heap itself is left untouched. */
+        public int[] toSortedArray() {
+            int[] result = Arrays.copyOf(heap, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    // Restores the max-heap below root; the heap occupies [base, base + size)
+    private static void siftDown(int[] a, StepSink sink, int base, int root, int size) {
+        while (true) {
+            int child = 2 * root + 1;
+            if (child >= size) return;
+            if (child + 1 < size) {
+                sink.compare(base + child, base + child + 1);
+                if (a[base + child + 1] > a[base + child]) child++;
+            }
+            sink.compare(base + root, base + child);
+            if (a[base + root] >= a[base + child]) return;
+            swap(a, sink, base + root, base + child);
+            root = child;
+        }
+    }
+
+    // Sorts [low, high] inclusive
+    private static void heapSort(int[] a, StepSink sink, int low, int high) {
+        int size = high - low + 1;
+        for (int root = size / 2 - 1; root >= 0; root--) {
+            siftDown(a, sink, low, root, size);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(a, sink, low, low + end);
+            siftDown(a, sink, low, 0, end);
+        }
+    }
+
+    // Sorts [low, high] inclusive
+    private static void insertionSort(int[] a, StepSink sink, int low, int high) {
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low; j--) {
+                sink.compare(j - 1, j);
+                if (a[j - 1] <= a[j]) break;
+                swap(a, sink, j - 1, j);
+            }
+        }
+    }
+
+    private static void sort3(int[] a, StepSink sink, int i, int j, int k) {
+        sort2(a, sink, i, j);
+        sort2(a, sink, j, k);
+        sort2(a, sink, i, j);
+    }
+
+    private static void sort2(int[] a, StepSink sink, int i, int j) {
+        sink.compare(j, i);
+        if (a[j] < a[i]) swap(a, sink, i, j);
+    }
+
+    private static void swap(int[] a, StepSink sink, int i, int j) {
+        int temp = a[i];
+        a[i] = a[j];
+        a[j] = temp;
+        sink.swap(i, j);
+    }
+}
@@ -0,0 +1,48 @@
+package com.simulator;
+
+/**
+ * Immutable counters and wall time of one sorting run. Reads and writes count
+ * element accesses on the sorted array: a compare reads two elements, a swap
+ * reads and writes two, a highlight reads one and a set writes one. Auxiliary
+ * bytes is the peak scratch memory the algorithm reported holding at once.
+ * Load balance is how evenly a parallel sort split this run, or null if the
+ * algorithm does not report one.
+ */
+public record SortMetrics(long comparisons, long swaps, long reads, long writes,
+                          long auxiliaryBytes, int maxRecursionDepth, long elapsedNanos,
+                          LoadBalance loadBalance) {
+
+    public static final SortMetrics EMPTY = new SortMetrics(0, 0, 0, 0, 0, 0, 0, null);
+
+    public SortMetrics withElapsedNanos(long elapsedNanos) {
+        return new SortMetrics(comparisons, swaps, reads, writes, auxiliaryBytes, maxRecursionDepth, elapsedNanos,
+                loadBalance);
+    }
+
+    public double elapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+
+    /** Wall time with sub-millisecond precision for fast runs, e.g. "0.042ms" or "1534ms". */
+    public String formatElapsed() {
+        return formatNanos(elapsedNanos);
+    }
+
+    public static String formatNanos(long nanos) {
+        double millis = nanos / 1_000_000.0;
+        if (millis < 10) return String.format("%.3fms", millis);
+        if (millis < 1000) return String.format("%.1fms", millis);
+        return Math.round(millis) + "ms";
+    }
+
+    /** Memory in B, KB or MB for display. */
+    public String formatAuxiliaryMemory() {
+        return formatBytes(auxiliaryBytes);
+    }
+
+    public static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -1,7 +1,53 @@
 package com.simulator;
 
-import java.util.List;
+import java.util.Arrays;
 
 public interface SortingAlgorithm {
-    List<SortingController.SortingStep> generateSteps(int[] array);
+
+    /**
+     * Sorts the array in place, reporting every operation to the sink.
+     */
+    void sort(int[] array, StepSink sink);
+
+    /**
+     * Sorts {@code array[from, to)} in place. The default sorts a copy of the
+     * range and writes it back, so its steps index the copy; algorithms that
+     * can sort a range where it is override this.
+     */
+    default void sort(int[] array, int from, int to, StepSink sink) {
+        if (from == 0 && to == array.length) {
+            sort(array, sink);
+            return;
+        }
+        int[] range = Arrays.copyOfRange(array, from, to);
+        sort(range, sink);
+        System.arraycopy(range, 0, array, from, range.length);
+    }
+
+    /**
+     * Rough number of steps {@link #sort} records for n elements; used for
+     * progress reporting and to decide whether a full trace fits in memory.
+     */
+    default long estimateSteps(int n) {
+        return 2L * n * log2(n);
+    }
+
+    static long log2(int n) {
+        return n <= 1 ? 1 : 32 - Integer.numberOfLeadingZeros(n - 1);
+    }
+
+    default SortingTrace generateSteps(int[] array) {
+        SortingTrace trace = new SortingTrace();
+        sort(array, trace);
+        trace.trimToSize();
+        return trace;
+    }
+
+    /**
+     * Streaming variant of {@link #generateSteps(int[])}: steps are produced on
+     * demand as the returned cursor is read. Close the stream when done.
+     */
+    default StepStream streamSteps(int[] array) {
+        return new StepStream(this, array);
+    }
 }
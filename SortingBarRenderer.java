@@ -0,0 +1,399 @@
+package com.simulator;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.KeyValue;
+import javafx.animation.Timeline;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.geometry.Orientation;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+import javafx.util.Duration;
+
+import java.util.Arrays;
+
+/**
+ * Canvas renderer for the sorting view.
+ * Bars are grouped into pixel columns (one column per element while they fit,
+ * otherwise several elements share a column and the tallest is drawn), and only
+ * columns touched since the last frame are repainted. Parallel sorts tint the
+ * background of each worker's range (its lane). The value strip below the
+ * bars only draws the cells that are scrolled into view.
+ */
+public class SortingBarRenderer {
+
+    public static final Color BAR_COLOR = Color.web("#3b82f6");
+    public static final Color COMPARE_COLOR = Color.web("#f59e0b");
+    public static final Color SWAP_COLOR = Color.web("#ef4444");
+    public static final Color HIGHLIGHT_COLOR = Color.web("#10b981");
+    // Background tints that tell parallel workers' ranges apart
+    private static final Color[] LANE_COLORS = {
+            Color.rgb(139, 92, 246, 0.14), Color.rgb(20, 184, 166, 0.14),
+            Color.rgb(245, 158, 11, 0.14), Color.rgb(236, 72, 153, 0.14)
+    };
+
+    private static final Color CELL_FILL = Color.rgb(148, 163, 184, 0.15);
+    private static final Color CELL_BORDER = Color.rgb(148, 163, 184, 0.6);
+    private static final Color CELL_TEXT = Color.web("#64748b");
+    private static final double CELL_WIDTH = 48;
+    private static final double STRIP_HEIGHT = 40;
+    private static final double TOP_PADDING = 8;
+
+    private final Canvas barCanvas = new Canvas();
+    private final Canvas stripCanvas = new Canvas();
+    private final ScrollBar stripScrollBar = new ScrollBar();
+    private final IntegerProperty sortedPrefix = new SimpleIntegerProperty(0);
+    private Timeline completionSweep;
+
+    private int[] array = new int[0];
+    private int lowValue;
+    private int highValue = 1;
+    private int columns;
+
+    // Lane id per element (0 = none), allocated when the first lane arrives
+    private int[] laneOf;
+    private int laneCount;
+
+    private final int[] highlighted = { -1, -1 };
+    private Color highlightColor = COMPARE_COLOR;
+
+    // Bars lit by the last parallel group: 0 = none, 1 = compared, 2 = swapped
+    private byte[] groupMarks;
+    private int[] groupIndices = new int[16];
+    private int groupSize;
+
+    private boolean[] dirtyColumns = new boolean[0];
+    private int[] dirtyList = new int[0];
+    private int dirtyCount;
+    private boolean fullRedraw = true;
+
+    public SortingBarRenderer(Pane barHost, VBox valueStripHost) {
+        barHost.getChildren().add(barCanvas);
+        barCanvas.widthProperty().bind(barHost.widthProperty());
+        barCanvas.heightProperty().bind(barHost.heightProperty());
+        barCanvas.widthProperty().addListener((obs, oldVal, newVal) -> layoutChanged());
+        barCanvas.heightProperty().addListener((obs, oldVal, newVal) -> layoutChanged());
+
+        if (valueStripHost != null) {
+            Pane stripPane = new Pane(stripCanvas);
+            stripPane.setPrefHeight(STRIP_HEIGHT);
+            stripPane.setMinHeight(STRIP_HEIGHT);
+            stripCanvas.setHeight(STRIP_HEIGHT);
+            stripCanvas.widthProperty().bind(stripPane.widthProperty());
+            stripCanvas.widthProperty().addListener((obs, oldVal, newVal) -> {
+                updateStripRange();
+                drawValueStrip();
+            });
+            stripScrollBar.setOrientation(Orientation.HORIZONTAL);
+            stripScrollBar.valueProperty().addListener((obs, oldVal, newVal) -> drawValueStrip());
+            valueStripHost.getChildren().addAll(stripPane, stripScrollBar);
+        }
+
+        sortedPrefix.addListener((obs, oldVal, newVal) -> {
+            int from = Math.min(oldVal.intValue(), newVal.intValue());
+            int to = Math.max(oldVal.intValue(), newVal.intValue());
+            markRangeDirty(from, to);
+            render();
+        });
+    }
+
+    // ==================== MODEL UPDATES ====================
+
+    /** Shows a new array; the renderer reads it directly, so later in-place edits only need valueChanged. */
+    public void setArray(int[] array) {
+        stopCompletionSweep();
+        if (laneOf != null && laneOf.length != array.length) {
+            laneOf = null;
+        }
+        groupMarks = null;
+        groupSize = 0;
+        this.array = array;
+        columns = 0;
+        highlighted[0] = -1;
+        highlighted[1] = -1;
+        sortedPrefix.set(0);
+        recomputeScale();
+        updateStripRange();
+        layoutChanged();
+    }
+
+    public void valueChanged(int index) {
+        if (index >= 0 && index < array.length) {
+            markDirty(index);
+        }
+    }
+
+    /** Tints [from, to) as owned by a new parallel worker; lanes stay until {@link #clearLanes}. */
+    public void lane(int from, int to) {
+        to = Math.min(to, array.length);
+        if (from < 0 || from >= to) return;
+        if (laneOf == null) {
+            laneOf = new int[array.length];
+        }
+        Arrays.fill(laneOf, from, to, ++laneCount);
+        markRangeDirty(from, to);
+    }
+
+    public void clearLanes() {
+        if (laneOf != null) {
+            laneOf = null;
+            laneCount = 0;
+            fullRedraw = true;
+        }
+    }
+
+    public void highlight(int index1, int index2, Color color) {
+        clearHighlights();
+        highlighted[0] = index1;
+        highlighted[1] = index2;
+        highlightColor = color;
+        valueChanged(index1);
+        valueChanged(index2);
+        followIndex(index1);
+    }
+
+    public void clearHighlights() {
+        valueChanged(highlighted[0]);
+        valueChanged(highlighted[1]);
+        highlighted[0] = -1;
+        highlighted[1] = -1;
+        for (int i = 0; i < groupSize; i++) {
+            groupMarks[groupIndices[i]] = 0;
+            valueChanged(groupIndices[i]);
+        }
+        groupSize = 0;
+    }
+
+    /**
+     * Lights one more bar of a parallel group, in the swap colour if it moved.
+     * Group highlights add up until the next {@link #highlight} or {@link #clearHighlights}.
+     */
+    public void highlightInGroup(int index, boolean swapped) {
+        if (index < 0 || index >= array.length) return;
+        if (groupMarks == null) {
+            groupMarks = new byte[array.length];
+        }
+        if (groupMarks[index] == 0) {
+            if (groupSize == groupIndices.length) {
+                groupIndices = Arrays.copyOf(groupIndices, groupSize * 2);
+            }
+            groupIndices[groupSize++] = index;
+        }
+        groupMarks[index] = (byte) Math.max(groupMarks[index], swapped ? 2 : 1);
+        valueChanged(index);
+    }
+
+    /** Sweeps the "sorted" colour across all bars. */
+    public void playCompletionSweep() {
+        stopCompletionSweep();
+        clearHighlights();
+        double millis = Math.min(array.length * 50.0, 1500.0);
+        completionSweep = new Timeline(
+                new KeyFrame(Duration.ZERO, new KeyValue(sortedPrefix, 0)),
+                new KeyFrame(Duration.millis(Math.max(1, millis)), new KeyValue(sortedPrefix, array.length)));
+        completionSweep.play();
+    }
+
+    private void stopCompletionSweep() {
+        if (completionSweep != null) {
+            completionSweep.stop();
+            completionSweep = null;
+        }
+    }
+
+    // ==================== PAINTING ====================
+
+    /** Repaints whatever changed since the previous call. */
+    public void render() {
+        GraphicsContext gc = barCanvas.getGraphicsContext2D();
+        double width = barCanvas.getWidth();
+        double height = barCanvas.getHeight();
+        if (columns == 0 || width <= 0 || height <= 0) {
+            gc.clearRect(0, 0, width, height);
+            dirtyCount = 0;
+            return;
+        }
+
+        if (fullRedraw) {
+            gc.clearRect(0, 0, width, height);
+            for (int column = 0; column < columns; column++) {
+                drawColumn(gc, column, width, height);
+                dirtyColumns[column] = false;
+            }
+            fullRedraw = false;
+        } else {
+            for (int i = 0; i < dirtyCount; i++) {
+                int column = dirtyList[i];
+                dirtyColumns[column] = false;
+                double x = columnX(column, width);
+                gc.clearRect(x, 0, columnX(column + 1, width) - x, height);
+                drawColumn(gc, column, width, height);
+            }
+        }
+        dirtyCount = 0;
+        drawValueStrip();
+    }
+
+    private void drawColumn(GraphicsContext gc, int column, double width, double height) {
+        int start = columnStart(column);
+        int end = columnStart(column + 1);
+        if (start >= end) return;
+
+        int value = array[start];
+        for (int i = start + 1; i < end; i++) {
+            value = Math.max(value, array[i]);
+        }
+
+        double x = columnX(column, width);
+        double columnWidth = columnX(column + 1, width) - x;
+        if (laneOf != null && laneOf[start] != 0) {
+            gc.setFill(LANE_COLORS[laneOf[start] % LANE_COLORS.length]);
+            gc.fillRect(x, 0, columnWidth, height);
+        }
+
+        gc.setFill(columnColor(start, end));
+        double gap = columnWidth >= 4 ? columnWidth * 0.15 : 0;
+        double baseline = valueToY(Math.max(0, lowValue), height);
+        double top = valueToY(value, height);
+        gc.fillRect(x + gap / 2, Math.min(top, baseline), Math.max(1, columnWidth - gap), Math.max(1, Math.abs(baseline - top)));
+    }
+
+    private Color columnColor(int start, int end) {
+        for (int index : highlighted) {
+            if (index >= start && index < end) {
+                return highlightColor;
+            }
+        }
+        if (groupSize > 0) {
+            int mark = 0;
+            for (int i = start; i < end; i++) {
+                mark = Math.max(mark, groupMarks[i]);
+            }
+            if (mark != 0) return groupColor(mark);
+        }
+        return end <= sortedPrefix.get() ? HIGHLIGHT_COLOR : BAR_COLOR;
+    }
+
+    private static Color groupColor(int mark) {
+        return mark == 2 ? SWAP_COLOR : COMPARE_COLOR;
+    }
+
+    private void drawValueStrip() {
+        GraphicsContext gc = stripCanvas.getGraphicsContext2D();
+        double width = stripCanvas.getWidth();
+        gc.clearRect(0, 0, width, STRIP_HEIGHT);
+        if (array.length == 0 || width <= 0) return;
+
+        gc.setFont(Font.font(null, FontWeight.SEMI_BOLD, 12));
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+
+        int first = (int) stripScrollBar.getValue();
+        int visible = (int) Math.ceil(width / CELL_WIDTH);
+        for (int cell = 0; cell < visible && first + cell < array.length; cell++) {
+            int index = first + cell;
+            double x = cell * CELL_WIDTH + 2;
+            Color accent = index == highlighted[0] || index == highlighted[1] ? highlightColor
+                    : groupSize > 0 && groupMarks[index] != 0 ? groupColor(groupMarks[index])
+                    : index < sortedPrefix.get() ? HIGHLIGHT_COLOR : null;
+            gc.setFill(accent != null ? accent.deriveColor(0, 1, 1, 0.35) : CELL_FILL);
+            gc.fillRoundRect(x, 4, CELL_WIDTH - 4, STRIP_HEIGHT - 8, 6, 6);
+            gc.setStroke(accent != null ? accent : CELL_BORDER);
+            gc.strokeRoundRect(x, 4, CELL_WIDTH - 4, STRIP_HEIGHT - 8, 6, 6);
+            gc.setFill(CELL_TEXT);
+            gc.fillText(String.valueOf(array[index]), x + (CELL_WIDTH - 4) / 2, STRIP_HEIGHT / 2);
+        }
+    }
+
+    // ==================== LAYOUT ====================
+
+    private void layoutChanged() {
+        int newColumns = Math.min(array.length, Math.max(1, (int) barCanvas.getWidth()));
+        if (newColumns != dirtyColumns.length) {
+            dirtyColumns = new boolean[newColumns];
+            dirtyList = new int[newColumns];
+        }
+        columns = newColumns;
+        dirtyCount = 0;
+        fullRedraw = true;
+        render();
+    }
+
+    private void recomputeScale() {
+        int low = 0;
+        int high = 1;
+        for (int value : array) {
+            low = Math.min(low, value);
+            high = Math.max(high, value);
+        }
+        lowValue = low;
+        highValue = high;
+    }
+
+    private void updateStripRange() {
+        int visible = (int) Math.floor(stripCanvas.getWidth() / CELL_WIDTH);
+        int max = Math.max(0, array.length - visible);
+        stripScrollBar.setMin(0);
+        stripScrollBar.setMax(max);
+        stripScrollBar.setVisibleAmount(Math.max(1, visible));
+        stripScrollBar.setBlockIncrement(Math.max(1, visible));
+        stripScrollBar.setValue(Math.min(stripScrollBar.getValue(), max));
+        stripScrollBar.setVisible(max > 0);
+    }
+
+    // Keeps the active element in view on the value strip
+    private void followIndex(int index) {
+        if (index < 0 || stripScrollBar.getMax() <= 0) return;
+        int first = (int) stripScrollBar.getValue();
+        int visible = (int) Math.floor(stripCanvas.getWidth() / CELL_WIDTH);
+        if (index < first || index >= first + visible) {
+            stripScrollBar.setValue(Math.max(0, Math.min(stripScrollBar.getMax(), index - visible / 2)));
+        }
+    }
+
+    private void markDirty(int index) {
+        if (columns == 0) return;
+        int column = columnOf(index);
+        if (!dirtyColumns[column]) {
+            dirtyColumns[column] = true;
+            dirtyList[dirtyCount++] = column;
+        }
+    }
+
+    private void markRangeDirty(int from, int to) {
+        if (columns == 0 || from >= to) return;
+        int last = columnOf(Math.min(to, array.length) - 1);
+        for (int column = columnOf(from); column <= last; column++) {
+            if (!dirtyColumns[column]) {
+                dirtyColumns[column] = true;
+                dirtyList[dirtyCount++] = column;
+            }
+        }
+    }
+
+    private int columnOf(int index) {
+        return (int) ((long) index * columns / array.length);
+    }
+
+    // First element index that maps to the given column
+    private int columnStart(int column) {
+        return (int) (((long) column * array.length + columns - 1) / columns);
+    }
+
+    private double columnX(int column, double width) {
+        return column * width / columns;
+    }
+
+    private double valueToY(int value, double height) {
+        double usable = height - TOP_PADDING;
+        return TOP_PADDING + usable * (highValue - (double) value) / (highValue - (double) lowValue);
+    }
+}
@@ -1,87 +1,118 @@
 package com.simulator;
 
-import javafx.animation.*;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
-import javafx.fxml.Initializable;
-import javafx.scene.chart.BarChart;
-import javafx.scene.chart.CategoryAxis;
-import javafx.scene.chart.NumberAxis;
-import javafx.scene.chart.XYChart;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
-import javafx.util.Duration;
-import java.net.URL;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
-public class SortingController implements Initializable {
+public class SortingController extends BaseController {
 
     @FXML private ComboBox<String> algorithmComboBox;
     @FXML private Slider arraySizeSlider;
+    @FXML private Spinner<Integer> arraySizeSpinner;
     @FXML private Label arraySizeLabel;
-    @FXML private BarChart<String, Number> arrayChart;
-    @FXML private CategoryAxis xAxis;
-    @FXML private NumberAxis yAxis;
-    @FXML private HBox arrayValuesContainer;
+    @FXML private Pane barCanvasHost;
+    @FXML private VBox valueStripHost;
     @FXML private ProgressBar sortingProgress;
     @FXML private Label progressLabel;
     @FXML private Label comparisonsLabel, swapsLabel, timeLabel;
     @FXML private TextArea algorithmInfo;
     @FXML private TextArea algorithmCodeViewer;
-    @FXML private Button playButton, pauseButton, resetButton, stepButton;
+    @FXML private Button playButton, pauseButton, resetButton, stepButton, stepBackButton, measureButton;
+    @FXML private Button openTraceButton, exportTraceButton, raceButton, externalSortButton;
+    @FXML private Slider timelineSlider;
     @FXML private Button generateRandomButton, generateCustomButton;
-    @FXML private Slider speedSlider;
+    @FXML private CheckBox turboCheckBox;
+    @FXML private Spinner<Integer> cutoffSpinner;
+    @FXML private ComboBox<InputGenerator.Distribution> distributionComboBox;
+    @FXML private TextField seedField;
+    @FXML private Label seedLabel;
 
     private SortingService sortingService;
+    private final InputGenerator inputGenerator = new InputGenerator();
     private int[] originalArray;
+    // Seed the current array was generated from; null for custom input and trace files
+    private Long arraySeed;
     private int[] currentArray;
-    private XYChart.Series<String, Number> dataSeries;
-    private Timeline sortingAnimation;
-    private int currentStep = 0;
-    private List<SortingStep> sortingSteps;
-    private boolean isAnimating = false;
-    private AnimationService animationService;
+    private SortingBarRenderer barRenderer;
+    private SortingAlgorithm activeAlgorithm;
+    private RecordedTrace recordedTrace;
+    // Snapshots for random-access seeking; null while streaming
+    private TraceCheckpoints checkpoints;
+    private boolean updatingTimeline;
+    // Set while the size controls are moved to match an array, so they do not regenerate it
+    private boolean syncingArraySize;
+    private StepCursor traceCursor;
+    // Counters of the trace being played; only touched on the FX thread
+    private final CountingSink playbackCounter = new CountingSink();
+    private long playbackStartNanos;
+
+    private TraceGenerationTask traceTask;
+    private Task<SortMetrics> measureTask;
+    private Task<Long> exportTask;
+    private Task<ExternalMergeSort.Result> externalTask;
+    // Trace file opened for replay; playback reads it instead of running the algorithm
+    private TraceFile openedTraceFile;
+
+    // Headless measurements estimated above this many operations would run for minutes
+    private static final long MAX_HEADLESS_STEPS = 20_000_000_000L;
+    private static final int MAX_HEADLESS_ELEMENTS = 200_000_000;
+    // Evenly spaced file positions shown while an external sort is replayed
+    private static final int EXTERNAL_SAMPLES = 100;
+    // The slider covers small arrays; larger ones up to this size are typed into the size spinner
+    private static final int MAX_VIEW_ELEMENTS = 100_000;
+    // Arrays start at a few dozen bars, so the parallel sorts need a tiny cutoff to fork at all;
+    // at thousands of bars a larger cutoff keeps the lanes readable
+    private static final int VIEW_SEQUENTIAL_CUTOFF = 8;
 
     @Override
-    public void initialize(URL location, ResourceBundle resources) {
-        System.out.println("SortingController initialized");
+    protected void initializeServices() {
         sortingService = new SortingService();
-        animationService = AnimationService.getInstance();
-        dataSeries = new XYChart.Series<>();
-        arrayChart.getData().add(dataSeries);
-
-        setupComponents();
-        setupEventHandlers();
-
-        // Initialize with default values
-        algorithmComboBox.setValue("Bubble Sort");
-        updateAlgorithmInfo();
-        updateAlgorithmCode();
-        generateRandomArray();
-
-        System.out.println("Sorting module ready");
     }
 
-    private void setupComponents() {
-        // Configure algorithm combo box - UPDATED with 9 algorithms
-        algorithmComboBox.setItems(FXCollections.observableArrayList(
-                "Bubble Sort", "Selection Sort", "Insertion Sort", "Merge Sort", "Quick Sort",
-                "Heap Sort", "Shell Sort", "Radix Sort", "Counting Sort"
-        ));
+    @Override
+    protected void setupComponents() {
+        barRenderer = new SortingBarRenderer(barCanvasHost, valueStripHost);
+
+        // Every registered sort, then the selections, in the service's order
+        algorithmComboBox.setItems(FXCollections.observableArrayList(sortingService.getAlgorithmNames()));
+        algorithmComboBox.getItems().addAll(sortingService.getSelectionNames());
+
+        // Parallel sorts fork until a range is at most this long
+        if (cutoffSpinner != null) {
+            cutoffSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(
+                    2, SortingTrace.MAX_INDEX, VIEW_SEQUENTIAL_CUTOFF));
+            cutoffSpinner.setEditable(true);
+        }
+        sortingService.setSequentialCutoff(VIEW_SEQUENTIAL_CUTOFF);
 
-        // Configure chart appearance
-        arrayChart.setLegendVisible(false);
-        arrayChart.setAnimated(false);
-        arrayChart.getStyleClass().add("sorting-chart");
-        xAxis.setLabel("Array Index");
-        yAxis.setLabel("Value");
+        if (distributionComboBox != null) {
+            distributionComboBox.setItems(FXCollections.observableArrayList(InputGenerator.Distribution.values()));
+            distributionComboBox.setValue(InputGenerator.Distribution.UNIFORM);
+        }
 
         // Configure sliders
         arraySizeSlider.setMin(5);
         arraySizeSlider.setMax(50);
         arraySizeSlider.setValue(20);
+        if (arraySizeSpinner != null) {
+            arraySizeSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(
+                    5, MAX_VIEW_ELEMENTS, 20));
+            arraySizeSpinner.setEditable(true);
+        }
         speedSlider.setMin(0.1);
         speedSlider.setMax(3.0);
         speedSlider.setValue(1.0);
@@ -94,51 +125,173 @@ public class SortingController implements Initializable {
         updateControlStates();
     }
 
-    private void setupEventHandlers() {
+    @Override
+    protected void setupEventHandlers() {
         // Array size slider listener
         arraySizeSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (syncingArraySize) return;
             int size = newVal.intValue();
+            if (arraySizeSpinner != null) {
+                // The spinner's listener generates the array
+                arraySizeSpinner.getValueFactory().setValue(size);
+                return;
+            }
             arraySizeLabel.setText("Array Size: " + size);
             if (!isAnimating) {
                 generateRandomArray();
             }
         });
 
+        if (arraySizeSpinner != null) {
+            arraySizeSpinner.valueProperty().addListener((obs, oldVal, newVal) -> {
+                if (newVal == null || syncingArraySize) return;
+                showArraySize(newVal);
+                if (!isAnimating) {
+                    generateRandomArray();
+                }
+            });
+        }
+
+        if (distributionComboBox != null) {
+            distributionComboBox.setOnAction(e -> {
+                if (!isAnimating) {
+                    generateRandomArray();
+                }
+            });
+        }
+
         // Speed slider listener
         speedSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
             animationService.setAnimationSpeed(newVal.doubleValue());
+            playbackEngine.setStepsPerSecond(animationService.getPlaybackStepsPerSecond());
         });
 
+        // Turbo: many steps per frame, only the end state of each frame is painted
+        if (turboCheckBox != null) {
+            turboCheckBox.selectedProperty().addListener((obs, oldVal, newVal) -> {
+                animationService.setTurboMode(newVal);
+                playbackEngine.setTurbo(newVal);
+                playbackEngine.setStepsPerSecond(animationService.getPlaybackStepsPerSecond());
+            });
+        }
+
+        // Timeline scrubbing; programmatic updates from updateProgress are ignored
+        if (timelineSlider != null) {
+            timelineSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
+                if (updatingTimeline || checkpoints == null || traceCursor == null) return;
+                if (isAnimating && !isPaused) {
+                    pauseAnimation();
+                }
+                playbackEngine.seek(newVal.longValue());
+            });
+        }
+
+        if (cutoffSpinner != null) {
+            cutoffSpinner.valueProperty().addListener((obs, oldVal, newVal) -> {
+                if (newVal == null) return;
+                sortingService.setSequentialCutoff(newVal);
+                // A recorded trace was built with the old cutoff
+                if (!isAnimating) {
+                    resetArray();
+                }
+            });
+        }
+
         // Algorithm selection listener
         algorithmComboBox.setOnAction(e -> {
             updateAlgorithmInfo();
             updateAlgorithmCode();
+            closeTraceFile();
             resetArray();
         });
     }
 
+    @Override
+    protected void configureAnimations() {
+        // One engine drives every run; only the cursor behind it changes
+        playbackEngine.setTarget(new TracePlayback());
+        if (turboCheckBox != null) {
+            turboCheckBox.setSelected(animationService.isTurboMode());
+        }
+        playbackEngine.setTurbo(animationService.isTurboMode());
+        playbackEngine.setStepsPerSecond(animationService.getPlaybackStepsPerSecond());
+    }
+
+    @Override
+    protected void loadInitialState() {
+        // Initialize with default values
+        algorithmComboBox.setValue("Bubble Sort");
+        updateAlgorithmInfo();
+        updateAlgorithmCode();
+        generateRandomArray();
+
+        System.out.println("Sorting module ready");
+    }
+
     @FXML
     private void generateRandomArray() {
         if (isAnimating) return;
-        int size = (int) arraySizeSlider.getValue();
-        originalArray = new int[size];
-        Random random = new Random();
-
-        // Generate unique random values for better visualization
-        Set<Integer> usedValues = new HashSet<>();
-        for (int i = 0; i < size; i++) {
-            int value;
-            do {
-                value = random.nextInt(90) + 10; // Values between 10-99
-            } while (usedValues.contains(value) && usedValues.size() < 90);
-            usedValues.add(value);
-            originalArray[i] = value;
+        cancelTraceGeneration();
+        closeTraceFile();
+        Long seed = readSeed();
+        if (seed == null) return;
+        int size = arraySizeSpinner != null ? arraySizeSpinner.getValue() : (int) arraySizeSlider.getValue();
+        InputGenerator.Distribution distribution = selectedDistribution();
+        // Values between 10-99 keep the bar labels readable
+        originalArray = inputGenerator.generate(distribution, size, 10, 99, seed);
+        arraySeed = seed;
+        if (seedLabel != null) {
+            seedLabel.setText(distribution + " (" + distribution.getDescription() + "), seed " + seed);
         }
 
         currentArray = Arrays.copyOf(originalArray, originalArray.length);
+        recordedTrace = null;
+        checkpoints = null;
+        barRenderer.clearLanes();
         updateVisualization();
         resetStatistics();
-        System.out.println("Generated random array: " + Arrays.toString(originalArray));
+        // Arrays can reach 100,000 values, so only what reproduces them is logged
+        System.out.println("Generated " + distribution + " array of " + size + " elements with seed " + seed);
+    }
+
+    // Moves the size controls to match an array without regenerating it
+    private void showArraySize(int size) {
+        syncingArraySize = true;
+        try {
+            arraySizeSlider.setValue(Math.min(size, arraySizeSlider.getMax()));
+            if (arraySizeSpinner != null) {
+                arraySizeSpinner.getValueFactory().setValue(size);
+            }
+            arraySizeLabel.setText("Array Size: " + size);
+        } finally {
+            syncingArraySize = false;
+        }
+    }
+
+    private InputGenerator.Distribution selectedDistribution() {
+        return distributionComboBox != null && distributionComboBox.getValue() != null
+                ? distributionComboBox.getValue() : InputGenerator.Distribution.UNIFORM;
+    }
+
+    // Seed typed by the user, or a fresh one when the field is blank; null after an invalid entry
+    private Long readSeed() {
+        String text = seedField != null ? seedField.getText().trim() : "";
+        if (text.isEmpty()) {
+            return InputGenerator.newSeed();
+        }
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            showAlert("Invalid Seed", "The seed must be a whole number, or empty for a new random seed.");
+            return null;
+        }
+    }
+
+    private void clearSeed(String source) {
+        arraySeed = null;
+        if (seedLabel != null) {
+            seedLabel.setText(source);
+        }
     }
 
     @FXML
@@ -162,9 +315,15 @@ public class SortingController implements Initializable {
                     customArray[i] = value;
                 }
 
+                cancelTraceGeneration();
+                closeTraceFile();
                 originalArray = customArray;
+                clearSeed("Custom input");
                 currentArray = Arrays.copyOf(originalArray, originalArray.length);
-                arraySizeSlider.setValue(customArray.length);
+                recordedTrace = null;
+                checkpoints = null;
+                showArraySize(customArray.length);
+                barRenderer.clearLanes();
                 updateVisualization();
                 resetStatistics();
                 System.out.println("Generated custom array: " + Arrays.toString(originalArray));
@@ -178,51 +337,76 @@ public class SortingController implements Initializable {
 
     @FXML
     private void startSorting() {
-        if (isAnimating) return;
-        String algorithm = algorithmComboBox.getValue();
+        if (isAnimating) {
+            // Resume a paused run instead of restarting it
+            if (isPaused) pauseAnimation();
+            return;
+        }
+        String algorithm = openedTraceFile != null ? openedTraceFile.getAlgorithmName() : algorithmComboBox.getValue();
         SortingAlgorithm sortingAlg = sortingService.getAlgorithm(algorithm);
-        if (sortingAlg == null) {
+        if (sortingAlg == null && openedTraceFile == null) {
             showAlert("Error", "Algorithm not found: " + algorithm);
             return;
         }
 
         // Reset to original state
         currentArray = Arrays.copyOf(originalArray, originalArray.length);
+        barRenderer.clearLanes();
         updateVisualization();
-        // Generate sorting steps
-        sortingSteps = sortingAlg.generateSteps(Arrays.copyOf(currentArray, currentArray.length));
-        currentStep = 0;
-        // Start animation
-        createSortingAnimation();
-        if (sortingAnimation != null) {
-            sortingAnimation.play();
-        }
-
-        isAnimating = true;
-        updateControlStates();
-        sortingService.startTiming();
-        System.out.println("Started sorting with " + algorithm + ", " + sortingSteps.size() + " steps");
+        // Generate sorting steps in the background, then start the animation
+        prepareTrace(algorithm, sortingAlg, () -> {
+            startAnimation();
+            playbackStartNanos = System.nanoTime();
+            System.out.println("Started sorting with " + algorithm + (recordedTrace != null
+                    ? ", " + recordedTrace.stepCount() + " steps" : openedTraceFile != null ? ", from trace file" : ", streaming steps")
+                    + (arraySeed != null ? ", input seed " + arraySeed : ""));
+        });
     }
 
     @FXML
     private void pauseSorting() {
-        if (sortingAnimation != null && isAnimating) {
-            sortingAnimation.pause();
-            isAnimating = false;
-            updateControlStates();
-            System.out.println("Sorting paused");
+        if (isAnimating && !isPaused) {
+            pauseAnimation();
         }
     }
 
     @FXML
     private void resetArray() {
-        if (sortingAnimation != null) {
-            sortingAnimation.stop();
+        resetVisualization();
+    }
+
+    @Override
+    protected void toggleAnimation() {
+        if (isAnimating) {
+            pauseAnimation();
+        } else {
+            startSorting();
         }
+    }
+
+    @Override
+    protected void onAnimationStart() {
+        // Playback itself is started by the engine once the trace is ready
+    }
 
+    @Override
+    protected void onAnimationPause(boolean isPaused) {
+        System.out.println(isPaused ? "Sorting paused" : "Sorting resumed");
+    }
+
+    @Override
+    protected void onAnimationStop() {
+        // Nothing to tear down; the engine keeps its target between runs
+    }
+
+    @Override
+    protected void onReset() {
+        cancelTraceGeneration();
         currentArray = Arrays.copyOf(originalArray, originalArray.length);
-        currentStep = 0;
-        isAnimating = false;
+        closeTraceCursor();
+        recordedTrace = null;
+        checkpoints = null;
+        barRenderer.clearLanes();
         updateVisualization();
         resetStatistics();
         updateControlStates();
@@ -231,233 +415,679 @@ public class SortingController implements Initializable {
 
     @FXML
     private void stepForward() {
-        if (!isAnimating) {
-            // Initialize if not started
-            if (sortingSteps == null) {
-                String algorithm = algorithmComboBox.getValue();
-                SortingAlgorithm sortingAlg = sortingService.getAlgorithm(algorithm);
-                if (sortingAlg != null) {
-                    sortingSteps = sortingAlg.generateSteps(Arrays.copyOf(currentArray, currentArray.length));
-                    currentStep = 0;
-                    sortingService.startTiming();
-                }
+        if ((isAnimating && !isPaused) || traceTask != null) return;
+        // Initialize if not started
+        if (traceCursor == null) {
+            String algorithm = algorithmComboBox.getValue();
+            SortingAlgorithm sortingAlg = sortingService.getAlgorithm(algorithm);
+            if (sortingAlg != null || openedTraceFile != null) {
+                prepareTrace(algorithm, sortingAlg, () -> {
+                    playbackStartNanos = System.nanoTime();
+                    playbackEngine.step();
+                });
             }
-            performSingleStep();
+            return;
         }
+        playbackEngine.step();
     }
 
-    private void performSingleStep() {
-        if (sortingSteps == null || currentStep >= sortingSteps.size()) {
+    @FXML
+    private void stepBackward() {
+        if ((isAnimating && !isPaused) || checkpoints == null || traceCursor == null) return;
+        long position = traceCursor.position();
+        if (position > 0) {
+            // Back over a whole parallel group, the same unit Step moves forward by
+            playbackEngine.seek(checkpoints.unitStart(position - 1));
+        }
+    }
+
+    private void prepareTrace(String algorithm, SortingAlgorithm sortingAlg, Runnable onReady) {
+        cancelTraceGeneration();
+        closeTraceCursor();
+        if (openedTraceFile != null) {
+            // Replay the opened file instead of running the algorithm
+            recordedTrace = null;
+            checkpoints = null;
+            traceCursor = openedTraceFile.cursor();
+            onReady.run();
+            return;
+        }
+        activeAlgorithm = sortingAlg;
+        if (sortingAlg.estimateSteps(currentArray.length) > TraceGenerationTask.MAX_RECORDED_STEPS) {
+            // Too large to record in full: pull steps lazily while the animation plays
+            recordedTrace = null;
+            checkpoints = null;
+            traceCursor = sortingAlg.streamSteps(currentArray);
+            onReady.run();
             return;
         }
 
-        SortingStep step = sortingSteps.get(currentStep);
-        executeStep(step);
-        currentStep++;
-        updateProgress();
-        if (currentStep >= sortingSteps.size()) {
-            onSortingComplete();
+        TraceCache cache = sortingService.getTraceCache();
+        int cutoff = sortingService.cutoffFor(algorithm);
+        TraceCache.Entry cached = cache.get(algorithm, cutoff, currentArray);
+        if (cached != null) {
+            // Same algorithm on the same input: replay the earlier recording
+            recordedTrace = cached.trace();
+            checkpoints = cached.checkpoints();
+            traceCursor = recordedTrace.openCursor();
+            System.out.println("Trace cache hit for " + algorithm + " (" + cache.describe() + ")");
+            updateControlStates();
+            onReady.run();
+            return;
         }
+
+        boolean compressed = sortingAlg.estimateSteps(currentArray.length) > TraceGenerationTask.MAX_PACKED_STEPS;
+        int[] input = Arrays.copyOf(currentArray, currentArray.length);
+        TraceGenerationTask task = new TraceGenerationTask(algorithm, sortingAlg, currentArray, compressed);
+        traceTask = task;
+        bindProgress(task);
+        task.setOnSucceeded(e -> {
+            if (traceTask != task) return;
+            traceTask = null;
+            unbindProgress();
+            recordedTrace = task.getValue();
+            checkpoints = task.getCheckpoints();
+            cache.put(algorithm, cutoff, input, recordedTrace, checkpoints);
+            traceCursor = recordedTrace.openCursor();
+            updateControlStates();
+            onReady.run();
+        });
+        task.setOnFailed(e -> {
+            if (traceTask != task) return;
+            traceTask = null;
+            unbindProgress();
+            resetStatistics();
+            updateControlStates();
+            Throwable error = task.getException();
+            System.err.println("Trace generation failed: " + error);
+            showAlert("Error", "Could not generate sorting steps for " + algorithm + ":\n" + error);
+        });
+        updateControlStates();
+        sortingService.getTraceExecutor().submit(task);
     }
 
-    private void createSortingAnimation() {
-        if (sortingSteps == null || sortingSteps.isEmpty()) {
+    /**
+     * Runs the selected algorithm without recording steps on a large random
+     * array and reports comparisons, swaps and wall time.
+     */
+    @FXML
+    private void measureHeadless() {
+        if (isAnimating || traceTask != null || measureTask != null) return;
+        String algorithm = algorithmComboBox.getValue();
+        SortingAlgorithm sortingAlg = sortingService.getAlgorithm(algorithm);
+        if (sortingAlg == null) {
+            showAlert("Error", "Algorithm not found: " + algorithm);
             return;
         }
 
-        sortingAnimation = new Timeline();
-        double delay = 1000.0 / animationService.getAnimationSpeed();
-        for (int i = 0; i < sortingSteps.size(); i++) {
-            final int stepIndex = i;
-            SortingStep step = sortingSteps.get(i);
-            KeyFrame keyFrame = new KeyFrame(
-                    Duration.millis((i + 1) * delay),
-                    e -> {
-                        executeStep(step);
-                        currentStep = stepIndex + 1;
-                        updateProgress();
-                        if (currentStep >= sortingSteps.size()) {
-                            Platform.runLater(this::onSortingComplete);
-                        }
-                    }
-            );
-            sortingAnimation.getKeyFrames().add(keyFrame);
-        }
+        TextInputDialog dialog = new TextInputDialog("1000000");
+        dialog.setTitle("Headless Measurement");
+        dialog.setHeaderText("Measure " + algorithm + " without animation");
+        dialog.setContentText("Number of " + selectedDistribution() + " elements:");
+        Optional<String> result = dialog.showAndWait();
+        if (result.isEmpty()) return;
 
-        sortingAnimation.setOnFinished(e -> onSortingComplete());
+        int size;
+        try {
+            size = Integer.parseInt(result.get().trim().replace(",", "").replace("_", ""));
+            if (size < 1 || size > MAX_HEADLESS_ELEMENTS) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException e) {
+            showAlert("Invalid Input", "Please enter a whole number between 1 and " + MAX_HEADLESS_ELEMENTS + ".");
+            return;
+        }
+        if (sortingAlg.estimateSteps(size) > MAX_HEADLESS_STEPS) {
+            showAlert("Input Too Large", algorithm + " would need roughly " + sortingAlg.estimateSteps(size)
+                    + " operations on " + size + " elements. Try a smaller size or an O(n log n) algorithm.");
+            return;
+        }
+        Long seed = readSeed();
+        if (seed == null) return;
+        InputGenerator.Distribution distribution = selectedDistribution();
+
+        Task<SortMetrics> task = new Task<>() {
+            @Override
+            protected SortMetrics call() {
+                updateMessage("Generating " + size + " " + distribution + " elements (seed " + seed + ")...");
+                int[] data = inputGenerator.generate(distribution, size, 0, Math.max(size, 100) - 1, seed);
+                updateMessage("Measuring " + algorithm + " on " + size + " elements...");
+                return sortingService.runHeadless(algorithm, data);
+            }
+        };
+        measureTask = task;
+        resetStatistics();
+        if (progressLabel != null) {
+            progressLabel.textProperty().bind(task.messageProperty());
+        }
+        if (sortingProgress != null) {
+            sortingProgress.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        }
+        task.setOnSucceeded(e -> {
+            measureTask = null;
+            unbindProgress();
+            SortMetrics metrics = task.getValue();
+            showStatistics(metrics);
+            if (timeLabel != null) {
+                timeLabel.setText("Time: " + metrics.formatElapsed());
+            }
+            if (sortingProgress != null) {
+                sortingProgress.setProgress(1.0);
+            }
+            String summary = "Measured " + algorithm + " on " + size + " " + distribution + " elements (seed " + seed
+                    + "): " + metrics.reads() + " reads, "
+                    + metrics.writes() + " writes, " + metrics.formatAuxiliaryMemory() + " extra memory, recursion depth "
+                    + metrics.maxRecursionDepth();
+            if (metrics.loadBalance() != null) {
+                summary += "; " + metrics.loadBalance().describe();
+            }
+            if (progressLabel != null) {
+                progressLabel.setText(summary);
+            }
+            updateControlStates();
+            System.out.println(summary + " in " + metrics.formatElapsed());
+        });
+        task.setOnFailed(e -> {
+            measureTask = null;
+            unbindProgress();
+            resetStatistics();
+            updateControlStates();
+            showAlert("Error", "Measurement failed: " + task.getException());
+        });
+        updateControlStates();
+        sortingService.getTraceExecutor().submit(task);
     }
 
-    private void executeStep(SortingStep step) {
-        if (step == null) return;
-        switch (step.getType()) {
-            case COMPARE:
-                highlightComparison(step.getIndex1(), step.getIndex2());
-                sortingService.incrementComparisons();
-                break;
-            case SWAP:
-                performSwap(step.getIndex1(), step.getIndex2());
-                highlightSwap(step.getIndex1(), step.getIndex2());
-                sortingService.incrementSwaps();
-                break;
-            case SET:
-                if (step.getIndex1() < currentArray.length) {
-                    currentArray[step.getIndex1()] = step.getValue();
-                    updateVisualization();
-                }
-                break;
-            case HIGHLIGHT:
-                highlightElement(step.getIndex1());
-                break;
+    /**
+     * Loads a trace file written by {@link #exportTrace}. Its input becomes the
+     * current array, and Start/Step replay the file instead of sorting.
+     */
+    @FXML
+    private void openTraceFile() {
+        if (isAnimating || traceTask != null || measureTask != null || exportTask != null) return;
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Open Sorting Trace");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Sorting Traces", TraceFile.EXTENSION));
+        File file = fileChooser.showOpenDialog(barCanvasHost.getScene().getWindow());
+        if (file == null) return;
+
+        TraceFile traceFile;
+        try {
+            traceFile = TraceFile.open(file.toPath());
+        } catch (IOException e) {
+            showAlert("Open Error", "Could not open trace file: " + e.getMessage());
+            return;
         }
-        updateStatistics();
-    }
 
-    private void performSwap(int index1, int index2) {
-        if (index1 < currentArray.length && index2 < currentArray.length) {
-            int temp = currentArray[index1];
-            currentArray[index1] = currentArray[index2];
-            currentArray[index2] = temp;
-            updateVisualization();
+        cancelTraceGeneration();
+        closeTraceCursor();
+        closeTraceFile();
+        openedTraceFile = traceFile;
+        originalArray = traceFile.getInput();
+        clearSeed("Input from " + traceFile.getAlgorithmName() + " trace file");
+        currentArray = Arrays.copyOf(originalArray, originalArray.length);
+        recordedTrace = null;
+        checkpoints = null;
+        barRenderer.clearLanes();
+        updateVisualization();
+        resetStatistics();
+        if (progressLabel != null) {
+            progressLabel.setText("Loaded " + traceFile.getStepCount() + " steps of "
+                    + traceFile.getAlgorithmName() + " from " + file.getName());
         }
+        System.out.println("Opened trace file " + file + " (" + traceFile.getStepCount() + " steps)");
     }
 
-    private void highlightComparison(int index1, int index2) {
-        Platform.runLater(() -> {
-            if (dataSeries != null && dataSeries.getData() != null) {
-                for (int i = 0; i < dataSeries.getData().size(); i++) {
-                    XYChart.Data<String, Number> data = dataSeries.getData().get(i);
-                    if (data.getNode() != null) {
-                        if (i == index1 || i == index2) {
-                            data.getNode().setStyle("-fx-bar-fill: #f59e0b; -fx-effect: dropshadow(gaussian, rgba(245,158,11,0.6), 8, 0, 0, 0);");
-                        } else {
-                            data.getNode().setStyle("-fx-bar-fill: #3b82f6;");
-                        }
-                    }
+    /**
+     * Runs the selected algorithm on the current input and streams every step
+     * straight to a trace file, so runs of any length can be exported.
+     */
+    @FXML
+    private void exportTrace() {
+        if (isAnimating || traceTask != null || measureTask != null || exportTask != null) return;
+        String algorithm = algorithmComboBox.getValue();
+        SortingAlgorithm sortingAlg = sortingService.getAlgorithm(algorithm);
+        if (sortingAlg == null) {
+            showAlert("Error", "Algorithm not found: " + algorithm);
+            return;
+        }
+
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Export Sorting Trace");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Sorting Traces", TraceFile.EXTENSION));
+        fileChooser.setInitialFileName(algorithm.toLowerCase().replace(' ', '-') + ".strace");
+        File file = fileChooser.showSaveDialog(barCanvasHost.getScene().getWindow());
+        if (file == null) return;
+
+        int[] input = Arrays.copyOf(originalArray, originalArray.length);
+        long estimate = Math.max(1, sortingAlg.estimateSteps(input.length));
+        Task<Long> task = new Task<>() {
+            @Override
+            protected Long call() throws IOException {
+                updateMessage("Exporting " + algorithm + " steps...");
+                try (StepCursor steps = sortingAlg.streamSteps(input)) {
+                    return TraceFile.write(file.toPath(), algorithm, input, steps, true, written -> {
+                        updateProgress(Math.min(written, estimate * 99 / 100), estimate);
+                        updateMessage("Exporting " + algorithm + " steps... (" + written + " written)");
+                    });
                 }
             }
+        };
+        exportTask = task;
+        bindProgress(task);
+        task.setOnSucceeded(e -> {
+            exportTask = null;
+            unbindProgress();
+            if (sortingProgress != null) {
+                sortingProgress.setProgress(1.0);
+            }
+            if (progressLabel != null) {
+                progressLabel.setText("Exported " + task.getValue() + " steps to " + file.getName());
+            }
+            updateControlStates();
         });
+        task.setOnFailed(e -> {
+            exportTask = null;
+            unbindProgress();
+            updateControlStates();
+            showAlert("Export Error", "Could not export trace: " + task.getException());
+        });
+        updateControlStates();
+        sortingService.getTraceExecutor().submit(task);
     }
 
-    private void highlightSwap(int index1, int index2) {
-        Platform.runLater(() -> {
-            if (dataSeries != null && dataSeries.getData() != null) {
-                for (int i = 0; i < dataSeries.getData().size(); i++) {
-                    XYChart.Data<String, Number> data = dataSeries.getData().get(i);
-                    if (data.getNode() != null) {
-                        if (i == index1 || i == index2) {
-                            data.getNode().setStyle("-fx-bar-fill: #ef4444; -fx-effect: dropshadow(gaussian, rgba(239,68,68,0.6), 8, 0, 0, 0);");
-                        } else {
-                            data.getNode().setStyle("-fx-bar-fill: #3b82f6;");
-                        }
+    /**
+     * Sorts a binary file of little-endian ints that need not fit in memory,
+     * then replays its runs and merge passes as a coarse trace over evenly
+     * spaced samples of the file. The result is written next to the input.
+     */
+    @FXML
+    private void sortExternalFile() {
+        if (isAnimating || traceTask != null || measureTask != null || exportTask != null || externalTask != null) return;
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Sort Integer File");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("32-bit little-endian ints", "*.bin", "*.dat"),
+                new FileChooser.ExtensionFilter("All Files", "*.*"));
+        File file = fileChooser.showOpenDialog(barCanvasHost.getScene().getWindow());
+        if (file == null) return;
+
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        File output = new File(file.getParentFile(), dot > 0
+                ? name.substring(0, dot) + "-sorted" + name.substring(dot) : name + "-sorted");
+        // Runs are sorted in memory with Intro Sort, which needs no extra buffer
+        ExternalMergeSort sorter = new ExternalMergeSort(sortingService.getAlgorithm("Intro Sort"));
+        SortingTrace coarse = new SortingTrace();
+        Task<ExternalMergeSort.Result> task = new Task<>() {
+            @Override
+            protected ExternalMergeSort.Result call() throws IOException {
+                updateMessage("Sorting " + name + "...");
+                return sorter.sort(file.toPath(), output.toPath(), coarse, EXTERNAL_SAMPLES, (message, done, total) -> {
+                    if (isCancelled()) {
+                        throw new CancellationException("External sort cancelled");
                     }
-                }
+                    updateProgress(done, total);
+                    updateMessage(message);
+                });
             }
+        };
+        externalTask = task;
+        bindProgress(task);
+        task.setOnSucceeded(e -> {
+            externalTask = null;
+            unbindProgress();
+            ExternalMergeSort.Result result = task.getValue();
+            closeTraceCursor();
+            closeTraceFile();
+            originalArray = result.sampleInput();
+            currentArray = Arrays.copyOf(originalArray, originalArray.length);
+            clearSeed(originalArray.length + " samples of " + name + ": " + result.summary());
+            coarse.trimToSize();
+            recordedTrace = coarse;
+            checkpoints = new TraceCheckpoints(coarse, originalArray);
+            traceCursor = recordedTrace.openCursor();
+            barRenderer.clearLanes();
+            updateVisualization();
+            resetStatistics();
+            System.out.println("Sorted " + file + " into " + output.getName() + ": " + result.summary()
+                    + ", " + result.comparisons() + " comparisons");
+            // Play the runs and merges right away; Start afterwards sorts the samples themselves
+            startAnimation();
+            playbackStartNanos = System.nanoTime();
         });
+        task.setOnFailed(e -> {
+            externalTask = null;
+            unbindProgress();
+            updateControlStates();
+            showAlert("External Sort Error", "Could not sort " + name + ": " + task.getException());
+        });
+        updateControlStates();
+        sortingService.getTraceExecutor().submit(task);
     }
 
-    private void highlightElement(int index) {
-        Platform.runLater(() -> {
-            if (dataSeries != null && dataSeries.getData() != null && index < dataSeries.getData().size()) {
-                XYChart.Data<String, Number> data = dataSeries.getData().get(index);
-                if (data.getNode() != null) {
-                    data.getNode().setStyle("-fx-bar-fill: #10b981; -fx-effect: dropshadow(gaussian, rgba(16,185,129,0.6), 8, 0, 0, 0);");
-                }
+    /**
+     * Opens race mode on the current array, with the selected algorithm
+     * pre-ticked. The race window shares this view's service and cutoff.
+     */
+    @FXML
+    private void openRace() {
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/RaceView.fxml"));
+            Parent root = loader.load();
+            RaceController controller = loader.getController();
+
+            Stage raceStage = new Stage();
+            raceStage.initOwner(barCanvasHost.getScene().getWindow());
+            raceStage.setTitle("Sorting Race - Side-by-Side Comparison");
+            Scene scene = new Scene(root, 1300, 850);
+            scene.getStylesheets().addAll(barCanvasHost.getScene().getStylesheets());
+            root.getStyleClass().add(ThemeManager.getInstance().isDarkMode() ? "dark-theme" : "light-theme");
+            raceStage.setScene(scene);
+            raceStage.setMinWidth(1000);
+            raceStage.setMinHeight(700);
+
+            controller.setup(sortingService, originalArray, algorithmComboBox.getValue());
+            raceStage.setOnHidden(e -> controller.cleanup());
+            raceStage.show();
+        } catch (IOException e) {
+            showAlert("Error", "Could not open race mode: " + e.getMessage());
+        }
+    }
+
+    private void closeTraceFile() {
+        if (openedTraceFile != null) {
+            try {
+                openedTraceFile.close();
+            } catch (IOException e) {
+                System.err.println("Could not close trace file: " + e.getMessage());
             }
-        });
+            openedTraceFile = null;
+        }
     }
 
-    private void updateVisualization() {
-        Platform.runLater(() -> {
-            if (dataSeries != null && currentArray != null) {
-                dataSeries.getData().clear();
-                if (arrayValuesContainer != null) {
-                    arrayValuesContainer.getChildren().clear();
-                }
+    private void cancelTraceGeneration() {
+        if (traceTask != null) {
+            TraceGenerationTask task = traceTask;
+            traceTask = null;
+            unbindProgress();
+            task.cancel();
+            updateControlStates();
+            System.out.println("Cancelled step generation for " + task.getAlgorithmName());
+        }
+    }
 
-                for (int i = 0; i < currentArray.length; i++) {
-                    // Add to chart
-                    dataSeries.getData().add(new XYChart.Data<>(String.valueOf(i), currentArray[i]));
-                    // Add to values display
-                    if (arrayValuesContainer != null) {
-                        Label valueLabel = new Label(String.valueOf(currentArray[i]));
-                        valueLabel.getStyleClass().add("array-value");
-                        valueLabel.setMinWidth(40);
-                        valueLabel.setAlignment(javafx.geometry.Pos.CENTER);
-                        arrayValuesContainer.getChildren().add(valueLabel);
-                    }
+    private void bindProgress(Task<?> task) {
+        if (sortingProgress != null) {
+            sortingProgress.progressProperty().bind(task.progressProperty());
+        }
+        if (progressLabel != null) {
+            progressLabel.textProperty().bind(task.messageProperty());
+        }
+    }
+
+    private void unbindProgress() {
+        if (sortingProgress != null) {
+            sortingProgress.progressProperty().unbind();
+        }
+        if (progressLabel != null) {
+            progressLabel.textProperty().unbind();
+        }
+    }
+
+    /**
+     * Adapts the current step cursor to the playback engine.
+     */
+    private class TracePlayback implements PlaybackEngine.Target {
+        @Override
+        public boolean hasNextStep() {
+            // A stream that has not caught up yet still has steps coming
+            return traceCursor != null && (!traceCursor.isReady() || traceCursor.hasNext());
+        }
+
+        @Override
+        public void stepForward() {
+            if (!traceCursor.isReady()) return;
+            long step = traceCursor.next();
+            if (SortingTrace.type(step) == SortingTrace.StepType.GROUP) {
+                executeGroup(step);
+            } else {
+                executeStep(step);
+            }
+            updateProgress();
+        }
+
+        @Override
+        public void seekTo(long position) {
+            if (traceCursor == null) return;
+            if (checkpoints != null && traceCursor instanceof SortingTrace.Cursor cursor) {
+                // Jump to the nearest snapshot when going back or far ahead
+                int checkpoint = checkpoints.checkpointFor(position);
+                if (position < cursor.position() || checkpoints.positionOf(checkpoint) > cursor.position()) {
+                    restoreCheckpoint(checkpoint, cursor);
                 }
+            } else if (position < traceCursor.position()) {
+                // Cursors only move forward, so replay from the original array
+                closeTraceCursor();
+                traceCursor = recordedTrace != null ? recordedTrace.openCursor()
+                        : openedTraceFile != null ? openedTraceFile.cursor()
+                        : activeAlgorithm.streamSteps(originalArray);
+                currentArray = Arrays.copyOf(originalArray, originalArray.length);
+                playbackCounter.reset();
+                barRenderer.clearLanes();
+            }
+            long lastStep = 0;
+            boolean moved = false;
+            while (traceCursor.position() < position && traceCursor.hasNext()) {
+                lastStep = traceCursor.next();
+                applyStep(lastStep);
+                moved = true;
+            }
+            updateVisualization();
+            if (recordedTrace instanceof SortingTrace packed && traceCursor.position() > 0) {
+                showStepHighlight(packed.get((int) traceCursor.position() - 1));
+            } else if (moved) {
+                showStepHighlight(lastStep);
+            }
+            updateStatistics();
+            updateProgress();
+        }
 
-                // Style bars with gradient effect
-                for (int i = 0; i < dataSeries.getData().size(); i++) {
-                    XYChart.Data<String, Number> data = dataSeries.getData().get(i);
-                    if (data.getNode() != null) {
-                        data.getNode().setStyle("-fx-bar-fill: #3b82f6;");
-                    }
+        @Override
+        public long advance(long maxSteps) {
+            // Turbo path: apply the whole batch, then show only the last step's highlight
+            long applied = 0;
+            long lastStep = 0;
+            while (applied < maxSteps && traceCursor.isReady() && traceCursor.hasNext()) {
+                lastStep = traceCursor.next();
+                applyStep(lastStep);
+                applied++;
+            }
+            if (applied > 0) {
+                showStepHighlight(lastStep);
+                updateStatistics();
+                updateProgress();
+            }
+            return applied;
+        }
+
+        @Override
+        public void render() {
+            barRenderer.render();
+        }
+
+        @Override
+        public void onFinished() {
+            onSortingComplete();
+        }
+    }
+
+    private void restoreCheckpoint(int checkpoint, SortingTrace.Cursor cursor) {
+        int start = checkpoints.positionOf(checkpoint);
+        checkpoints.restore(checkpoint, currentArray);
+        playbackCounter.restore(checkpoints.metricsAt(checkpoint));
+        barRenderer.clearLanes();
+        for (int i = 0, lanes = checkpoints.lanesBefore(start); i < lanes; i++) {
+            long lane = checkpoints.laneStep(i);
+            barRenderer.lane(SortingTrace.index1(lane), SortingTrace.laneEnd(lane));
+        }
+        cursor.seek(start);
+    }
+
+    private void closeTraceCursor() {
+        if (traceCursor != null) {
+            traceCursor.close();
+            traceCursor = null;
+        }
+    }
+
+    private void executeStep(long step) {
+        applyStep(step);
+        showStepHighlight(step);
+        updateStatistics();
+    }
+
+    // A parallel group plays as one step, with every comparator of it lit at once
+    private void executeGroup(long marker) {
+        applyStep(marker);
+        barRenderer.clearHighlights();
+        for (int i = SortingTrace.groupSize(marker); i > 0 && traceCursor.hasNext(); i--) {
+            long step = traceCursor.next();
+            applyStep(step);
+            int index1 = SortingTrace.index1(step);
+            switch (SortingTrace.type(step)) {
+                case COMPARE, SWAP -> {
+                    boolean swapped = SortingTrace.type(step) == SortingTrace.StepType.SWAP;
+                    barRenderer.highlightInGroup(index1, swapped);
+                    barRenderer.highlightInGroup(SortingTrace.index2(step), swapped);
                 }
+                case SET -> barRenderer.highlightInGroup(index1, true);
+                case HIGHLIGHT -> barRenderer.highlightInGroup(index1, false);
+                default -> { }
             }
-        });
+        }
+        updateStatistics();
+    }
+
+    // Data movement and counters only; the renderer just records which bars changed
+    private void applyStep(long step) {
+        int index1 = SortingTrace.index1(step);
+        playbackCounter.add(step);
+        switch (SortingTrace.type(step)) {
+            case COMPARE:
+                break;
+            case SWAP:
+                performSwap(index1, SortingTrace.index2(step));
+                break;
+            case SET:
+                if (index1 < currentArray.length) {
+                    currentArray[index1] = SortingTrace.value(step);
+                    barRenderer.valueChanged(index1);
+                }
+                break;
+            case HIGHLIGHT:
+                break;
+            case LANE:
+                barRenderer.lane(index1, SortingTrace.laneEnd(step));
+                break;
+            case GROUP:
+                break;
+        }
+    }
+
+    private void showStepHighlight(long step) {
+        int index1 = SortingTrace.index1(step);
+        switch (SortingTrace.type(step)) {
+            case COMPARE -> barRenderer.highlight(index1, SortingTrace.index2(step), SortingBarRenderer.COMPARE_COLOR);
+            case SWAP -> barRenderer.highlight(index1, SortingTrace.index2(step), SortingBarRenderer.SWAP_COLOR);
+            case HIGHLIGHT -> barRenderer.highlight(index1, -1, SortingBarRenderer.HIGHLIGHT_COLOR);
+            default -> { }
+        }
+    }
+
+    private void performSwap(int index1, int index2) {
+        if (index1 < currentArray.length && index2 < currentArray.length) {
+            int temp = currentArray[index1];
+            currentArray[index1] = currentArray[index2];
+            currentArray[index2] = temp;
+            barRenderer.valueChanged(index1);
+            barRenderer.valueChanged(index2);
+        }
+    }
+
+    // Full repaint, used when the whole array is replaced (generate, reset, seek)
+    private void updateVisualization() {
+        if (barRenderer != null && currentArray != null) {
+            barRenderer.setArray(currentArray);
+        }
     }
 
     private void onSortingComplete() {
-        isAnimating = false;
-        updateControlStates();
+        stopAnimation();
         // Final highlighting - all bars green with animation
-        Platform.runLater(() -> {
-            if (dataSeries != null && dataSeries.getData() != null) {
-                Timeline completion = new Timeline();
-                for (int i = 0; i < dataSeries.getData().size(); i++) {
-                    final int index = i;
-                    XYChart.Data<String, Number> data = dataSeries.getData().get(i);
-                    if (data.getNode() != null) {
-                        KeyFrame keyFrame = new KeyFrame(
-                                Duration.millis(i * 50),
-                                e -> data.getNode().setStyle("-fx-bar-fill: #10b981; -fx-effect: dropshadow(gaussian, rgba(16,185,129,0.6), 8, 0, 0, 0);")
-                        );
-                        completion.getKeyFrames().add(keyFrame);
-                    }
-                }
-                completion.play();
-            }
-        });
+        barRenderer.playCompletionSweep();
 
-        long elapsedTime = sortingService.stopTiming();
+        String elapsedTime = SortMetrics.formatNanos(System.nanoTime() - playbackStartNanos);
         if (timeLabel != null) {
-            timeLabel.setText("Time: " + elapsedTime + "ms");
+            timeLabel.setText("Time: " + elapsedTime);
         }
 
         if (progressLabel != null) {
-            progressLabel.setText("Sorting completed! Array is now sorted.");
+            String algorithm = algorithmComboBox.getValue();
+            progressLabel.setText(sortingService.isSelection(algorithm)
+                    ? "Selection completed! " + (algorithm.startsWith("Quickselect")
+                            ? "The middle bar holds the median." : "The smallest quarter is sorted at the front.")
+                    : "Sorting completed! Array is now sorted.");
         }
 
         if (sortingProgress != null) {
             sortingProgress.setProgress(1.0);
         }
 
-        System.out.println("Sorting completed in " + elapsedTime + "ms");
+        System.out.println("Sorting completed in " + elapsedTime);
     }
 
     private void updateProgress() {
-        if (sortingSteps != null && sortingProgress != null && progressLabel != null) {
-            double progress = (double) currentStep / sortingSteps.size();
+        if (traceCursor != null && sortingProgress != null && progressLabel != null) {
+            long currentStep = traceCursor.position();
+            long totalSteps = traceCursor.totalSteps();
+            if (totalSteps == StepCursor.UNKNOWN_LENGTH) {
+                sortingProgress.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+                progressLabel.setText("Progress: " + currentStep + " steps (streaming)");
+                return;
+            }
+            double progress = (double) currentStep / totalSteps;
             sortingProgress.setProgress(progress);
-            progressLabel.setText("Progress: " + String.format("%.1f", progress * 100) + "% (" + currentStep + "/" + sortingSteps.size() + " steps)");
+            updateTimeline(currentStep, totalSteps);
+            progressLabel.setText("Progress: " + String.format("%.1f", progress * 100) + "% (" + currentStep + "/" + totalSteps + " steps)");
         }
     }
 
+    private void updateTimeline(long currentStep, long totalSteps) {
+        if (timelineSlider == null || timelineSlider.isValueChanging()) return;
+        updatingTimeline = true;
+        timelineSlider.setMax(Math.max(1, totalSteps));
+        timelineSlider.setValue(currentStep);
+        updatingTimeline = false;
+    }
+
     private void updateStatistics() {
-        Platform.runLater(() -> {
-            if (comparisonsLabel != null) {
-                comparisonsLabel.setText("Comparisons: " + sortingService.getComparisons());
-            }
+        SortMetrics metrics = playbackCounter.toMetrics(0);
+        Platform.runLater(() -> showStatistics(metrics));
+    }
 
-            if (swapsLabel != null) {
-                swapsLabel.setText("Swaps: " + sortingService.getSwaps());
-            }
-        });
+    private void showStatistics(SortMetrics metrics) {
+        if (comparisonsLabel != null) {
+            comparisonsLabel.setText("Comparisons: " + metrics.comparisons());
+        }
+
+        if (swapsLabel != null) {
+            swapsLabel.setText("Swaps: " + metrics.swaps());
+        }
     }
 
     private void resetStatistics() {
-        sortingService.resetCounters();
+        playbackCounter.reset();
         if (comparisonsLabel != null) {
             comparisonsLabel.setText("Comparisons: 0");
         }
@@ -477,6 +1107,8 @@ public class SortingController implements Initializable {
         if (sortingProgress != null) {
             sortingProgress.setProgress(0);
         }
+        updateTimeline(0, 1);
+        updateControlStates();
     }
 
     private void updateAlgorithmInfo() {
@@ -831,64 +1463,404 @@ public class SortingController implements Initializable {
                             "}";
 
             case "Counting Sort" ->
-                    "// COUNTING SORT PSEUDOCODE\n\n" +
+                    "// RANGE-AWARE COUNTING SORT PSEUDOCODE\n\n" +
                             "function countingSort(arr):\n" +
-                            "    n = length(arr)\n" +
-                            "    max = findMax(arr)\n" +
-                            "    min = findMin(arr)\n" +
+                            "    min, max = findMinMax(arr)\n" +
                             "    range = max - min + 1\n" +
                             "    \n" +
-                            "    count[range], output[n]\n" +
-                            "    \n" +
-                            "    // Count occurrences of each value\n" +
-                            "    for i = 0 to n-1:\n" +
-                            "        count[arr[i] - min]++\n" +
-                            "    \n" +
-                            "    // Calculate cumulative count\n" +
-                            "    for i = 1 to range-1:\n" +
-                            "        count[i] += count[i-1]\n" +
-                            "    \n" +
-                            "    // Build output array\n" +
-                            "    for i = n-1 down to 0:\n" +
-                            "        value = arr[i]\n" +
-                            "        pos = count[value - min] - 1\n" +
-                            "        output[pos] = value\n" +
-                            "        count[value - min]--\n" +
-                            "    \n" +
-                            "    // Copy back to original\n" +
-                            "    for i = 0 to n-1:\n" +
-                            "        arr[i] = output[i]\n\n" +
-                            "// JAVA IMPLEMENTATION\n" +
+                            "    if range is small (<= 4n or <= 65536, capped at 4M):\n" +
+                            "        // Dense: one counter per value, per thread on big inputs\n" +
+                            "        count[range]\n" +
+                            "        for each x in arr: count[x - min]++\n" +
+                            "        write each value back count times\n" +
+                            "    else if a sample shows repeated keys:\n" +
+                            "        // Sparse: count only the keys that occur\n" +
+                            "        table = hash map key -> count\n" +
+                            "        for each x in arr: table[x]++\n" +
+                            "        for (key, c) in table sorted by key:\n" +
+                            "            write key back c times\n" +
+                            "    else:\n" +
+                            "        // Mostly distinct keys: bucket byte by byte\n" +
+                            "        americanFlagSort(arr)\n\n" +
+                            "// JAVA IMPLEMENTATION (dense path)\n" +
                             "public void countingSort(int[] arr) {\n" +
-                            "    if (arr.length == 0) return;\n" +
-                            "    \n" +
-                            "    int max = Arrays.stream(arr).max().orElse(0);\n" +
-                            "    int min = Arrays.stream(arr).min().orElse(0);\n" +
-                            "    int range = max - min + 1;\n" +
+                            "    if (arr.length < 2) return;\n" +
                             "    \n" +
-                            "    int[] count = new int[range];\n" +
-                            "    int[] output = new int[arr.length];\n" +
+                            "    int min = arr[0], max = arr[0];\n" +
+                            "    for (int x : arr) {\n" +
+                            "        min = Math.min(min, x);\n" +
+                            "        max = Math.max(max, x);\n" +
+                            "    }\n" +
+                            "    long range = (long) max - min + 1;   // no overflow\n" +
+                            "    if (range > 4L * arr.length && range > 65536) {\n" +
+                            "        sparseSort(arr);                 // bounded memory\n" +
+                            "        return;\n" +
+                            "    }\n" +
                             "    \n" +
                             "    // Count occurrences\n" +
-                            "    for (int i = 0; i < arr.length; i++) {\n" +
-                            "        count[arr[i] - min]++;\n" +
+                            "    int[] count = new int[(int) range];\n" +
+                            "    for (int x : arr) {\n" +
+                            "        count[x - min]++;\n" +
                             "    }\n" +
                             "    \n" +
-                            "    // Calculate cumulative count\n" +
-                            "    for (int i = 1; i < range; i++) {\n" +
-                            "        count[i] += count[i - 1];\n" +
+                            "    // Write the values back in order\n" +
+                            "    int pos = 0;\n" +
+                            "    for (int v = 0; v < range; v++) {\n" +
+                            "        for (int c = count[v]; c > 0; c--) {\n" +
+                            "            arr[pos++] = min + v;\n" +
+                            "        }\n" +
                             "    }\n" +
-                            "    \n" +
-                            "    // Build output array\n" +
-                            "    for (int i = arr.length - 1; i >= 0; i--) {\n" +
-                            "        int value = arr[i];\n" +
-                            "        int pos = count[value - min] - 1;\n" +
-                            "        output[pos] = value;\n" +
-                            "        count[value - min]--;\n" +
+                            "}";
+
+            case "Intro Sort" ->
+                    "// INTRO SORT PSEUDOCODE\n\n" +
+                            "function introSort(arr):\n" +
+                            "    sort(arr, 0, n - 1, depthLimit = 2 * log2(n))\n" +
+                            "\n" +
+                            "function sort(arr, low, high, depthLimit):\n" +
+                            "    while high - low + 1 > 16:\n" +
+                            "        if depthLimit == 0:\n" +
+                            "            heapSort(arr, low, high)   // quicksort is going badly\n" +
+                            "            return\n" +
+                            "        depthLimit--\n" +
+                            "        move median of (low, mid, high) to high\n" +
+                            "        p = partition(arr, low, high)\n" +
+                            "        recurse into the smaller side, loop on the larger\n" +
+                            "    insertionSort(arr, low, high)\n\n" +
+                            "// JAVA IMPLEMENTATION\n" +
+                            "void sort(int[] arr, int low, int high, int depthLimit) {\n" +
+                            "    while (high - low + 1 > 16) {\n" +
+                            "        if (depthLimit-- == 0) {\n" +
+                            "            heapSort(arr, low, high);\n" +
+                            "            return;\n" +
+                            "        }\n" +
+                            "        medianOfThreeToHigh(arr, low, high);\n" +
+                            "        int p = partition(arr, low, high);\n" +
+                            "        if (p - low < high - p) {\n" +
+                            "            sort(arr, low, p - 1, depthLimit);\n" +
+                            "            low = p + 1;\n" +
+                            "        } else {\n" +
+                            "            sort(arr, p + 1, high, depthLimit);\n" +
+                            "            high = p - 1;\n" +
+                            "        }\n" +
+                            "    }\n" +
+                            "    insertionSort(arr, low, high);\n" +
+                            "}";
+
+            case "Dual-Pivot Quick Sort" ->
+                    "// DUAL-PIVOT QUICK SORT PSEUDOCODE\n\n" +
+                            "function sort(arr, low, high):\n" +
+                            "    if high - low + 1 <= 16: insertionSort(arr, low, high); return\n" +
+                            "    take pivots from the tertiles, p = arr[low] <= q = arr[high]\n" +
+                            "    less = low + 1, great = high - 1, k = less\n" +
+                            "    while k <= great:\n" +
+                            "        if arr[k] < p: swap(arr[k], arr[less++])\n" +
+                            "        else if arr[k] > q:\n" +
+                            "            while arr[great] > q and k < great: great--\n" +
+                            "            swap(arr[k], arr[great--])\n" +
+                            "            if arr[k] < p: swap(arr[k], arr[less++])\n" +
+                            "        k++\n" +
+                            "    put p at less - 1 and q at great + 1\n" +
+                            "    sort(low .. less-2), sort(less .. great), sort(great+2 .. high)\n\n" +
+                            "// JAVA IMPLEMENTATION (core loop)\n" +
+                            "int less = low + 1, great = high - 1;\n" +
+                            "for (int k = less; k <= great; k++) {\n" +
+                            "    if (arr[k] < p) {\n" +
+                            "        swap(arr, k, less++);\n" +
+                            "    } else if (arr[k] > q) {\n" +
+                            "        while (arr[great] > q && k < great) great--;\n" +
+                            "        swap(arr, k, great--);\n" +
+                            "        if (arr[k] < p) swap(arr, k, less++);\n" +
+                            "    }\n" +
+                            "}\n" +
+                            "swap(arr, low, --less);\n" +
+                            "swap(arr, high, ++great);";
+
+            case "Tim Sort" ->
+                    "// TIM SORT PSEUDOCODE\n\n" +
+                            "function timSort(arr):\n" +
+                            "    minRun = 32..64, chosen so n / minRun is close to a power of 2\n" +
+                            "    for each natural run in arr:\n" +
+                            "        if run is descending: reverse it\n" +
+                            "        if run shorter than minRun:\n" +
+                            "            extend it with binary insertion sort\n" +
+                            "        push run on the stack\n" +
+                            "        while stack breaks |A| > |B| + |C| or |B| > |C|:\n" +
+                            "            merge the smaller neighbours\n" +
+                            "    merge everything left on the stack\n" +
+                            "\n" +
+                            "function merge(run1, run2):\n" +
+                            "    skip the prefix of run1 already below run2[0]   (gallop)\n" +
+                            "    skip the suffix of run2 already above run1[last] (gallop)\n" +
+                            "    merge one element at a time; once one run wins\n" +
+                            "    minGallop times in a row, switch to galloping:\n" +
+                            "    exponential search finds how many to copy at once\n\n" +
+                            "// JAVA IMPLEMENTATION (galloping search)\n" +
+                            "int gallopRight(int key, int[] run, int base, int len) {\n" +
+                            "    int lastOfs = 0, ofs = 1;\n" +
+                            "    while (ofs < len && key >= run[base + ofs]) {\n" +
+                            "        lastOfs = ofs;\n" +
+                            "        ofs = (ofs << 1) + 1;\n" +
+                            "    }\n" +
+                            "    ofs = Math.min(ofs, len);\n" +
+                            "    // binary search in (lastOfs, ofs]\n" +
+                            "    ...\n" +
+                            "}";
+
+            case "Pattern-Defeating Quick Sort" ->
+                    "// PATTERN-DEFEATING QUICK SORT PSEUDOCODE\n\n" +
+                            "function pdqSort(arr, begin, end, badAllowed = log2(n), leftmost):\n" +
+                            "    loop:\n" +
+                            "        if end - begin < 24: insertionSort; return\n" +
+                            "        move median of 3 (ninther above 128) to begin\n" +
+                            "        if not leftmost and arr[begin - 1] >= arr[begin]:\n" +
+                            "            put keys equal to the pivot left; begin = past them\n" +
+                            "            continue\n" +
+                            "        pivotPos, noSwaps = blockPartition(arr, begin, end)\n" +
+                            "        if one side < size / 8:\n" +
+                            "            if --badAllowed == 0: heapSort; return\n" +
+                            "            swap a few elements at the quarter points of both sides\n" +
+                            "        else if noSwaps and both sides need <= 8 insertion moves:\n" +
+                            "            return\n" +
+                            "        pdqSort(arr, begin, pivotPos, badAllowed, leftmost)\n" +
+                            "        begin = pivotPos + 1; leftmost = false\n\n" +
+                            "// JAVA IMPLEMENTATION (one block of the partition)\n" +
+                            "// No branch depends on the data: the flag is added to the count\n" +
+                            "for (int i = 0; i < BLOCK; i++) {\n" +
+                            "    offsetsL[numL] = i;\n" +
+                            "    numL += arr[first + i] >= pivot ? 1 : 0;\n" +
+                            "}\n" +
+                            "for (int i = 1; i <= BLOCK; i++) {\n" +
+                            "    offsetsR[numR] = i;\n" +
+                            "    numR += arr[last - i] < pivot ? 1 : 0;\n" +
+                            "}\n" +
+                            "int num = Math.min(numL, numR);\n" +
+                            "for (int k = 0; k < num; k++) {\n" +
+                            "    swap(arr, first + offsetsL[startL + k], last - offsetsR[startR + k]);\n" +
+                            "}";
+
+            case "Parallel Merge Sort" ->
+                    "// PARALLEL MERGE SORT PSEUDOCODE\n\n" +
+                            "function parallelMergeSort(arr, left, right):\n" +
+                            "    if right - left + 1 <= cutoff:\n" +
+                            "        mergeSort(arr, left, right)      // sequential\n" +
+                            "        return\n" +
+                            "    mid = left + (right - left) / 2\n" +
+                            "    fork parallelMergeSort(arr, left, mid)\n" +
+                            "    fork parallelMergeSort(arr, mid + 1, right)\n" +
+                            "    join both\n" +
+                            "    merge(arr, left, mid, right)\n\n" +
+                            "// JAVA IMPLEMENTATION (fork/join)\n" +
+                            "class MergeTask extends RecursiveAction {\n" +
+                            "    protected void compute() {\n" +
+                            "        if (right - left + 1 <= cutoff) {\n" +
+                            "            mergeSort(arr, left, right);\n" +
+                            "            return;\n" +
+                            "        }\n" +
+                            "        int mid = left + (right - left) / 2;\n" +
+                            "        invokeAll(new MergeTask(arr, left, mid),\n" +
+                            "                  new MergeTask(arr, mid + 1, right));\n" +
+                            "        merge(arr, left, mid, right);\n" +
+                            "    }\n" +
+                            "}\n\n" +
+                            "ForkJoinPool.commonPool().invoke(new MergeTask(arr, 0, arr.length - 1));";
+
+            case "Parallel Quick Sort" ->
+                    "// PARALLEL QUICK SORT PSEUDOCODE\n\n" +
+                            "function parallelQuickSort(arr, low, high):\n" +
+                            "    if low >= high: return\n" +
+                            "    if high - low + 1 <= cutoff:\n" +
+                            "        quickSort(arr, low, high)        // sequential\n" +
+                            "        return\n" +
+                            "    while high - low + 1 > cutoff:\n" +
+                            "        // median-of-three pivot; keys equal to it end up in [lt, gt]\n" +
+                            "        (lt, gt) = partition(arr, low, high)\n" +
+                            "        fork the smaller of [low, lt - 1] and [gt + 1, high]\n" +
+                            "        continue with the larger one\n" +
+                            "    quickSort(arr, low, high)            // sequential\n" +
+                            "    join forked tasks\n\n" +
+                            "// JAVA IMPLEMENTATION (fork/join)\n" +
+                            "class QuickTask extends RecursiveAction {\n" +
+                            "    protected void compute() {\n" +
+                            "        List<QuickTask> forked = new ArrayList<>();\n" +
+                            "        int lo = low, hi = high;\n" +
+                            "        while (hi - lo + 1 > cutoff) {\n" +
+                            "            int[] eq = partition(arr, lo, hi);\n" +
+                            "            QuickTask smaller;\n" +
+                            "            if (eq[0] - lo < hi - eq[1]) {\n" +
+                            "                smaller = new QuickTask(arr, lo, eq[0] - 1);\n" +
+                            "                lo = eq[1] + 1;\n" +
+                            "            } else {\n" +
+                            "                smaller = new QuickTask(arr, eq[1] + 1, hi);\n" +
+                            "                hi = eq[0] - 1;\n" +
+                            "            }\n" +
+                            "            smaller.fork();\n" +
+                            "            forked.add(smaller);\n" +
+                            "        }\n" +
+                            "        quickSort(arr, lo, hi);\n" +
+                            "        forked.forEach(QuickTask::join);\n" +
+                            "    }\n" +
+                            "}";
+
+            case "Parallel Sample Sort" ->
+                    "// PARALLEL SAMPLE SORT PSEUDOCODE\n\n" +
+                            "function sampleSort(arr, p buckets):\n" +
+                            "    sample = 64 * p random keys, sorted\n" +
+                            "    splitters = every 64th sample key, duplicates dropped\n" +
+                            "    parallel for each chunk c:                 // classify\n" +
+                            "        for each key: bucket = search(splitters, key)\n" +
+                            "            hist[c][bucket]++\n" +
+                            "    offset[c][b] = keys in buckets < b + keys of b in chunks < c\n" +
+                            "    parallel for each chunk c:                 // scatter\n" +
+                            "        for each key: arr[offset[c][bucket]++] = key\n" +
+                            "    parallel for each bucket:                  // sort\n" +
+                            "        pdqSort(bucket)\n\n" +
+                            "// JAVA IMPLEMENTATION (branchless bucket search)\n" +
+                            "// tree[1] is the median splitter, children of j at 2j and 2j + 1\n" +
+                            "int j = 1;\n" +
+                            "for (int level = 0; level < log2(leaves); level++) {\n" +
+                            "    j = 2 * j + (key >= tree[j] ? 1 : 0);\n" +
+                            "}\n" +
+                            "j -= leaves;   // number of splitters <= key\n" +
+                            "int bucket = j > 0 && key == splitter[j - 1] ? 2 * j - 1 : 2 * j;";
+
+            case "American Flag Sort" ->
+                    "// AMERICAN FLAG SORT (IN-PLACE MSD RADIX, BASE 256) PSEUDOCODE\n\n" +
+                            "function flagSort(arr, from, to, shift):\n" +
+                            "    if to - from <= 16: insertionSort(arr, from, to); return\n" +
+                            "    digit(x) = ((x XOR signBit) >>> shift) & 255   // negatives first\n" +
+                            "    count keys per digit\n" +
+                            "    start[d] = from + sum of counts below d\n" +
+                            "    for each bucket b:                    // cycle elements home\n" +
+                            "        while next[b] < start[b + 1]:\n" +
+                            "            d = digit(arr[next[b]])\n" +
+                            "            if d == b: next[b]++\n" +
+                            "            else: swap(arr[next[b]], arr[next[d]++])\n" +
+                            "    if shift > 0:\n" +
+                            "        for each bucket (in parallel while large):\n" +
+                            "            flagSort(arr, bucketStart, bucketEnd, shift - 8)\n\n" +
+                            "// JAVA IMPLEMENTATION (sequential core)\n" +
+                            "void flagSort(int[] arr, int from, int to, int shift) {\n" +
+                            "    if (to - from <= 16) { insertionSort(arr, from, to); return; }\n" +
+                            "    int[] count = new int[257];\n" +
+                            "    for (int i = from; i < to; i++)\n" +
+                            "        count[digit(arr[i], shift) + 1]++;\n" +
+                            "    count[0] = from;\n" +
+                            "    for (int d = 0; d < 256; d++) count[d + 1] += count[d];\n" +
+                            "    int[] next = Arrays.copyOf(count, 256);\n" +
+                            "    for (int b = 0; b < 256; b++) {\n" +
+                            "        while (next[b] < count[b + 1]) {\n" +
+                            "            int d = digit(arr[next[b]], shift);\n" +
+                            "            if (d == b) next[b]++;\n" +
+                            "            else swap(arr, next[b], next[d]++);\n" +
+                            "        }\n" +
+                            "    }\n" +
+                            "    if (shift == 0) return;\n" +
+                            "    for (int b = 0; b < 256; b++)\n" +
+                            "        flagSort(arr, count[b], count[b + 1], shift - 8);\n" +
+                            "}\n\n" +
+                            "int digit(int x, int shift) {\n" +
+                            "    return ((x ^ Integer.MIN_VALUE) >>> shift) & 0xFF;\n" +
+                            "}";
+
+            case "Bitonic Sort" ->
+                    "// BITONIC SORT PSEUDOCODE\n\n" +
+                            "function bitonicSort(arr):\n" +
+                            "    size = next power of two >= n\n" +
+                            "    for block = 2, 4, ..., size:\n" +
+                            "        for distance = block/2, block/4, ..., 1:\n" +
+                            "            parallel for i in 0..n-1:      // one layer\n" +
+                            "                if distance == block/2:\n" +
+                            "                    partner = i XOR (block - 1)\n" +
+                            "                else:\n" +
+                            "                    partner = i XOR distance\n" +
+                            "                if i < partner < n:\n" +
+                            "                    compareExchange(arr, i, partner)\n\n" +
+                            "// JAVA IMPLEMENTATION\n" +
+                            "void bitonicSort(int[] arr) {\n" +
+                            "    int n = arr.length;\n" +
+                            "    int size = Integer.highestOneBit(n - 1) << 1;\n" +
+                            "    for (int block = 2; block <= size; block <<= 1) {\n" +
+                            "        for (int d = block >> 1; d > 0; d >>= 1) {\n" +
+                            "            for (int i = 0; i < n; i++) {\n" +
+                            "                int p = d == block >> 1 ? i ^ (block - 1) : i ^ d;\n" +
+                            "                if (p > i && p < n && arr[i] > arr[p]) {\n" +
+                            "                    int temp = arr[i];\n" +
+                            "                    arr[i] = arr[p];\n" +
+                            "                    arr[p] = temp;\n" +
+                            "                }\n" +
+                            "            }\n" +
+                            "        }\n" +
+                            "    }\n" +
+                            "}";
+
+            case "Odd-Even Merge Sort" ->
+                    "// BATCHER ODD-EVEN MERGE SORT PSEUDOCODE\n\n" +
+                            "function oddEvenMergeSort(arr):\n" +
+                            "    for p = 1, 2, 4, ... while p < n:\n" +
+                            "        for k = p, p/2, ..., 1:\n" +
+                            "            parallel for j = k mod p; j + k < n; j += 2k:   // one layer\n" +
+                            "                for i = 0; i < k and i + j + k < n; i++:\n" +
+                            "                    if (i + j) / 2p == (i + j + k) / 2p:\n" +
+                            "                        compareExchange(arr, i + j, i + j + k)\n\n" +
+                            "// JAVA IMPLEMENTATION\n" +
+                            "void oddEvenMergeSort(int[] arr) {\n" +
+                            "    int n = arr.length;\n" +
+                            "    for (int p = 1; p < n; p <<= 1) {\n" +
+                            "        for (int k = p; k >= 1; k >>= 1) {\n" +
+                            "            for (int j = k % p; j + k < n; j += 2 * k) {\n" +
+                            "                for (int i = 0; i < k && i + j + k < n; i++) {\n" +
+                            "                    int a = i + j, b = i + j + k;\n" +
+                            "                    if (a / (2 * p) == b / (2 * p) && arr[a] > arr[b]) {\n" +
+                            "                        int temp = arr[a];\n" +
+                            "                        arr[a] = arr[b];\n" +
+                            "                        arr[b] = temp;\n" +
+                            "                    }\n" +
+                            "                }\n" +
+                            "            }\n" +
+                            "        }\n" +
+                            "    }\n" +
+                            "}";
+
+            case "Quickselect (Median)" ->
+                    "// FLOYD-RIVEST QUICKSELECT PSEUDOCODE\n\n" +
+                            "function select(arr, left, right, k):\n" +
+                            "    while right > left:\n" +
+                            "        if right - left > 600:\n" +
+                            "            fill a window of about n^(2/3) slots around k\n" +
+                            "                with elements drawn from the whole range\n" +
+                            "            select(arr, windowLeft, windowRight, k)   // good pivot at k\n" +
+                            "        pivot = arr[k]\n" +
+                            "        Hoare-partition [left, right] around pivot; j = its final slot\n" +
+                            "        if j <= k: left = j + 1\n" +
+                            "        if k <= j: right = j - 1\n" +
+                            "    // after 2 log2(n) passes: heap sort what is left\n\n" +
+                            "// JAVA IMPLEMENTATION (window size)\n" +
+                            "double n = right - left + 1, i = k - left + 1;\n" +
+                            "double z = Math.log(n);\n" +
+                            "double s = 0.5 * Math.exp(2 * z / 3);\n" +
+                            "double sd = 0.5 * Math.sqrt(z * s * (n - s) / n) * Math.signum(i - n / 2);\n" +
+                            "int newLeft = (int) Math.max(left, k - i * s / n + sd);\n" +
+                            "int newRight = (int) Math.min(right, k + (n - i) * s / n + sd);";
+
+            case "Heap Partial Sort (k = n/4)" ->
+                    "// HEAP PARTIAL SORT PSEUDOCODE\n\n" +
+                            "function partialSort(arr, k):\n" +
+                            "    build a max-heap in arr[0..k)\n" +
+                            "    for i = k to n - 1:\n" +
+                            "        if arr[i] < arr[0]:          // smaller than the largest kept\n" +
+                            "            swap(arr[0], arr[i])\n" +
+                            "            siftDown(arr, 0, k)\n" +
+                            "    heap sort arr[0..k) in place\n\n" +
+                            "// JAVA IMPLEMENTATION (streaming top-k, O(k) memory)\n" +
+                            "void offer(int value) {\n" +
+                            "    if (size < k) {\n" +
+                            "        heap[size] = value;\n" +
+                            "        siftUp(size++);\n" +
+                            "    } else if (value < heap[0]) {\n" +
+                            "        heap[0] = value;\n" +
+                            "        siftDown(0, size);\n" +
                             "    }\n" +
-                            "    \n" +
-                            "    // Copy back\n" +
-                            "    System.arraycopy(output, 0, arr, 0, arr.length);\n" +
                             "}";
 
             default -> "// Select an algorithm to view its pseudocode and implementation\n\n" +
@@ -901,7 +1873,19 @@ public class SortingController implements Initializable {
                     "• Heap Sort\n" +
                     "• Shell Sort\n" +
                     "• Radix Sort\n" +
-                    "• Counting Sort\n\n" +
+                    "• Counting Sort\n" +
+                    "• Intro Sort\n" +
+                    "• Dual-Pivot Quick Sort\n" +
+                    "• Tim Sort\n" +
+                    "• Pattern-Defeating Quick Sort\n" +
+                    "• Parallel Merge Sort\n" +
+                    "• Parallel Quick Sort\n" +
+                    "• Parallel Sample Sort\n" +
+                    "• American Flag Sort\n" +
+                    "• Bitonic Sort\n" +
+                    "• Odd-Even Merge Sort\n" +
+                    "• Quickselect (Median)\n" +
+                    "• Heap Partial Sort (k = n/4)\n\n" +
                     "Each algorithm shows both pseudocode and Java implementation.";
         };
     }
@@ -1061,9 +2045,9 @@ public class SortingController implements Initializable {
                             "• Best: O(n + k) - linear time!\n" +
                             "• Average: O(n + k)\n" +
                             "• Worst: O(n + k) where k is range of input\n\n" +
-                            "Space Complexity: O(k) - counting array\n\n" +
+                            "Space Complexity: O(min(k, d)) - counters for the range or only the d distinct keys\n\n" +
                             "Algorithm:\n" +
-                            "Counting Sort counts the number of occurrences of each distinct element, then uses this information to place elements directly in their sorted positions.\n\n" +
+                            "Counting Sort counts the number of occurrences of each distinct element, then writes every value back as often as it was counted. It checks the key range first: small ranges get one counter per value (counted in parallel chunks on large inputs), sparse ranges such as a single huge outlier count only the keys that occur in a hash table, and mostly distinct keys are bucketed byte by byte instead, so memory stays bounded.\n\n" +
                             "Advantages:\n" +
                             "• Linear time complexity O(n)\n" +
                             "• Stable sorting\n" +
@@ -1071,32 +2055,262 @@ public class SortingController implements Initializable {
                             "• Perfect for small integer ranges\n\n" +
                             "Disadvantages:\n" +
                             "• Limited to integers with known range\n" +
-                            "• Requires extra space O(k)\n" +
-                            "• Not practical for large ranges";
+                            "• Dense counters need O(k) extra space\n" +
+                            "• Sparse ranges fall back to slower hashing or bucketing";
+
+            case "Intro Sort" ->
+                    "🧭 INTRO SORT\n\n" +
+                            "Time Complexity:\n" +
+                            "• Best: O(n log n)\n" +
+                            "• Average: O(n log n)\n" +
+                            "• Worst: O(n log n) - heap sort takes over on bad pivots\n\n" +
+                            "Space Complexity: O(log n) - recursion stack\n\n" +
+                            "Algorithm:\n" +
+                            "Intro Sort is Quick Sort with a median-of-three pivot and a recursion budget of 2·log2(n). When a range exhausts the budget it is finished with Heap Sort, and ranges of 16 or fewer elements use Insertion Sort. C++ std::sort works this way.\n\n" +
+                            "Advantages:\n" +
+                            "• Quick Sort speed without its O(n²) worst case\n" +
+                            "• In-place, no deep recursion\n\n" +
+                            "Disadvantages:\n" +
+                            "• Unstable sorting\n" +
+                            "• Many duplicates push it into the heap sort fallback";
+
+            case "Dual-Pivot Quick Sort" ->
+                    "✌️ DUAL-PIVOT QUICK SORT\n\n" +
+                            "Time Complexity:\n" +
+                            "• Best: O(n log n)\n" +
+                            "• Average: O(n log n) - fewer swaps than classic Quick Sort\n" +
+                            "• Worst: O(n²) - rare with tertile pivots\n\n" +
+                            "Space Complexity: O(log n) - recursion stack\n\n" +
+                            "Algorithm:\n" +
+                            "Two pivots p <= q split each range into three parts: below p, between p and q, and above q. The three parts are sorted recursively. This is the scheme behind Java's Arrays.sort for primitives.\n\n" +
+                            "Advantages:\n" +
+                            "• Shallower recursion than single-pivot Quick Sort\n" +
+                            "• Good cache behaviour\n" +
+                            "• In-place\n\n" +
+                            "Disadvantages:\n" +
+                            "• Unstable sorting\n" +
+                            "• More complex partitioning";
+
+            case "Tim Sort" ->
+                    "🌊 TIM SORT\n\n" +
+                            "Time Complexity:\n" +
+                            "• Best: O(n) - already sorted or reversed input\n" +
+                            "• Average: O(n log n)\n" +
+                            "• Worst: O(n log n)\n\n" +
+                            "Space Complexity: O(n) - merge buffer\n\n" +
+                            "Algorithm:\n" +
+                            "Tim Sort finds the runs already present in the data, reverses descending ones, and extends short runs with binary insertion sort. Runs are merged off a stack that keeps their sizes balanced. When one run keeps winning, the merge gallops, copying whole stretches found by exponential search. Python and Java's object sort use it.\n\n" +
+                            "Advantages:\n" +
+                            "• Stable sorting\n" +
+                            "• Very fast on partially sorted real-world data\n" +
+                            "• Guaranteed O(n log n)\n\n" +
+                            "Disadvantages:\n" +
+                            "• Needs extra memory for merges\n" +
+                            "• Complex implementation";
+
+            case "Pattern-Defeating Quick Sort" ->
+                    "🧱 PATTERN-DEFEATING QUICK SORT\n\n" +
+                            "Time Complexity:\n" +
+                            "• Best: O(n) - sorted, reversed or all-equal input\n" +
+                            "• Average: O(n log n)\n" +
+                            "• Worst: O(n log n) - heap sort takes over after log2(n) bad splits\n\n" +
+                            "Space Complexity: O(log n) - recursion stack plus two 64-entry offset blocks\n\n" +
+                            "Algorithm:\n" +
+                            "pdqsort partitions with BlockQuicksort: it scans 64 elements from each end, storing the offsets of those on the wrong side of the pivot without branching on the comparison, then swaps the stored pairs. Random data therefore costs almost no branch mispredictions, which is where plain Quick Sort loses about half its time. A partition that moved nothing is checked with a short insertion sort, so sorted runs finish in linear time; a pivot equal to its predecessor splits off all equal keys at once; unbalanced splits shuffle a few elements, and heap sort is the last resort. Rust's sort_unstable and Go's sort use it.\n\n" +
+                            "Advantages:\n" +
+                            "• Faster than Quick Sort on random data\n" +
+                            "• Linear on sorted input and many duplicates\n" +
+                            "• Guaranteed O(n log n), in-place\n\n" +
+                            "Disadvantages:\n" +
+                            "• Unstable sorting\n" +
+                            "• Complex implementation";
+
+            case "Parallel Merge Sort" ->
+                    "🧵 PARALLEL MERGE SORT\n\n" +
+                            "Time Complexity:\n" +
+                            "• Work: O(n log n)\n" +
+                            "• Span: O(n) - the final merge is sequential\n" +
+                            "• With p cores: about O(n log n / p + n)\n\n" +
+                            "Space Complexity: O(n) - merge buffers\n\n" +
+                            "Algorithm:\n" +
+                            "Merge Sort on a fork/join pool. Each half is sorted as a separate task until a range is no longer than the sequential cutoff, then the halves are merged as usual. The shaded bands show which worker owns which range.\n\n" +
+                            "Advantages:\n" +
+                            "• Uses every core on large inputs\n" +
+                            "• Stable, predictable O(n log n) work\n" +
+                            "• Halves never touch each other's data\n\n" +
+                            "Disadvantages:\n" +
+                            "• Top-level merges limit the speedup\n" +
+                            "• Task overhead dominates below the cutoff";
+
+            case "Parallel Quick Sort" ->
+                    "🧵 PARALLEL QUICK SORT\n\n" +
+                            "Time Complexity:\n" +
+                            "• Work: O(n log n) - heap sort takes over past 2·log2(n) partitions\n" +
+                            "• Span: O(n) - each partition is sequential\n" +
+                            "• With p cores: about O(n log n / p + n)\n\n" +
+                            "Space Complexity: O(log n) - recursion stack\n\n" +
+                            "Algorithm:\n" +
+                            "Quick Sort on a fork/join pool. The pivot is a median of three and keys equal to it are gathered beside it, so sorted, reversed and all-equal input still split evenly. After each partition the smaller side is forked as a separate task and the larger one stays with the current worker, until a range is no longer than the sequential cutoff. The shaded bands show which worker owns which range.\n\n" +
+                            "Advantages:\n" +
+                            "• In-place, no merge step\n" +
+                            "• Uses every core on large inputs\n\n" +
+                            "Disadvantages:\n" +
+                            "• Unbalanced pivots leave cores idle\n" +
+                            "• Unstable sorting";
+
+            case "Parallel Sample Sort" ->
+                    "🧵 PARALLEL SAMPLE SORT\n\n" +
+                            "Time Complexity:\n" +
+                            "• Work: O(n log n)\n" +
+                            "• Span: O(n/p log n) - every phase is split across workers\n" +
+                            "• With p cores: about O(n log n / p)\n\n" +
+                            "Space Complexity: O(n) - scatter buffer and bucket labels\n\n" +
+                            "Algorithm:\n" +
+                            "Instead of splitting in two again and again, sample sort splits once into about four buckets per core. Splitters come from a sorted random sample, 64 keys per bucket. Workers then label the keys of their own chunk with a bucket and count them. Prefix sums over the counts give each worker its own slots in every bucket, so all workers scatter at once without locks. Finally each bucket is sorted independently with pattern-defeating quicksort. Keys equal to a splitter get a bucket of their own, which needs no sorting. Headless measurements report the bucket sizes.\n\n" +
+                            "Advantages:\n" +
+                            "• No sequential merge or partition, so it keeps scaling on many cores\n" +
+                            "• Branchless bucket search\n" +
+                            "• Duplicates cannot swamp one bucket\n\n" +
+                            "Disadvantages:\n" +
+                            "• O(n) extra memory\n" +
+                            "• Unstable sorting";
+
+            case "American Flag Sort" ->
+                    "🚩 AMERICAN FLAG SORT\n\n" +
+                            "Time Complexity:\n" +
+                            "• O(n·k) for k-byte keys - at most 4 passes for ints, 8 for longs\n" +
+                            "• Shared leading bytes are skipped, so small ranges need fewer passes\n" +
+                            "• With p cores: buckets sort in parallel after the first pass\n\n" +
+                            "Space Complexity: O(k · 256) - bucket counters only\n\n" +
+                            "Algorithm:\n" +
+                            "An in-place most-significant-digit radix sort on bytes. Each pass counts the keys per byte value, then swaps every element straight into its bucket, so no output array is needed. Buckets are sorted on the next byte down, by separate fork/join workers while they are larger than the sequential cutoff. Flipping the sign bit while reading a byte puts negative numbers first.\n\n" +
+                            "Advantages:\n" +
+                            "• No comparisons and no O(n) buffer\n" +
+                            "• Handles negative and full-range keys\n" +
+                            "• Independent buckets parallelise naturally\n\n" +
+                            "Disadvantages:\n" +
+                            "• Unstable sorting\n" +
+                            "• Only for fixed-width integer keys";
+
+            case "Bitonic Sort" ->
+                    "🕸️ BITONIC SORT\n\n" +
+                            "Time Complexity:\n" +
+                            "• Work: O(n log² n) - the same comparators for every input\n" +
+                            "• Span: O(log² n) layers\n" +
+                            "• With p cores: about O(n log² n / p)\n\n" +
+                            "Space Complexity: O(1) - in place\n\n" +
+                            "Algorithm:\n" +
+                            "A sorting network: sorted blocks are doubled in size by bitonic merges, each a fixed series of compare-exchange layers. All comparators of a layer touch different elements, so a layer plays as one step with every comparison lit at once, and large layers are split across the fork/join pool.\n\n" +
+                            "Advantages:\n" +
+                            "• Data-independent, branch-free schedule\n" +
+                            "• Maps directly onto GPUs and SIMD lanes\n" +
+                            "• Every layer is fully parallel\n\n" +
+                            "Disadvantages:\n" +
+                            "• O(n log² n) work, more than Merge Sort\n" +
+                            "• Unstable sorting";
+
+            case "Odd-Even Merge Sort" ->
+                    "🕸️ BATCHER ODD-EVEN MERGE SORT\n\n" +
+                            "Time Complexity:\n" +
+                            "• Work: O(n log² n) - fewer comparators than Bitonic Sort\n" +
+                            "• Span: O(log² n) layers\n" +
+                            "• With p cores: about O(n log² n / p)\n\n" +
+                            "Space Complexity: O(1) - in place\n\n" +
+                            "Algorithm:\n" +
+                            "Batcher's sorting network. Sorted blocks are merged by comparing their odd and even positions recursively, which unrolls into a fixed list of compare-exchange layers. Each layer plays as one step with every comparison lit at once, and large layers are split across the fork/join pool.\n\n" +
+                            "Advantages:\n" +
+                            "• Data-independent schedule\n" +
+                            "• Fewest comparators of the simple networks\n" +
+                            "• Every layer is fully parallel\n\n" +
+                            "Disadvantages:\n" +
+                            "• O(n log² n) work\n" +
+                            "• Less regular wiring than Bitonic Sort\n" +
+                            "• Unstable sorting";
+
+            case "Quickselect (Median)" ->
+                    "🎯 QUICKSELECT (FLOYD-RIVEST)\n\n" +
+                            "Time Complexity:\n" +
+                            "• Best: O(n)\n" +
+                            "• Average: O(n) - about 1.5 n comparisons for the median\n" +
+                            "• Worst: O(n log n) - heap sort takes over after 2·log2(n) passes\n\n" +
+                            "Space Complexity: O(log n) - recursion on the sample\n\n" +
+                            "Algorithm:\n" +
+                            "Finds the k-th smallest element (here the median) without sorting. Like Quick Sort it partitions around a pivot, but only keeps the side that holds position k. Floyd and Rivest pick the pivot by first selecting k within a sample of about n^(2/3) elements, so each pass discards nearly the whole range. Afterwards the median is in the middle, smaller keys to its left and larger to its right, each side unsorted.\n\n" +
+                            "Advantages:\n" +
+                            "• Linear time for medians and percentiles\n" +
+                            "• In-place\n\n" +
+                            "Disadvantages:\n" +
+                            "• Reorders the array\n" +
+                            "• Only one rank per run";
+
+            case "Heap Partial Sort (k = n/4)" ->
+                    "🪣 HEAP PARTIAL SORT\n\n" +
+                            "Time Complexity:\n" +
+                            "• Best: O(n + k log k)\n" +
+                            "• Average: O(n log k)\n" +
+                            "• Worst: O(n log k)\n\n" +
+                            "Space Complexity: O(1) - the heap is the front of the array\n\n" +
+                            "Algorithm:\n" +
+                            "Puts the k smallest elements, sorted, at the front (here k = n/4). The first k slots form a max-heap; every later element is compared with the root, the largest kept so far, and replaces it if smaller. The heap is then sorted in place. The same heap, held outside the array, gives the k smallest of an unbounded stream in O(k) memory (SelectionEngine.TopK).\n\n" +
+                            "Advantages:\n" +
+                            "• Much cheaper than a full sort when k is small\n" +
+                            "• Works on streams with O(k) memory\n\n" +
+                            "Disadvantages:\n" +
+                            "• Unstable\n" +
+                            "• Slower than quickselect when the order within the k does not matter";
 
             default -> "Select an algorithm to view detailed information about its complexity, implementation, and use cases.";
         };
     }
 
-    private void updateControlStates() {
-        if (playButton != null) playButton.setDisable(isAnimating);
-        if (pauseButton != null) pauseButton.setDisable(!isAnimating);
+    @Override
+    public void cleanup() {
+        cancelTraceGeneration();
+        closeTraceCursor();
+        closeTraceFile();
+        super.cleanup();
+    }
+
+    @Override
+    protected javafx.scene.Scene getScene() {
+        return barCanvasHost != null ? barCanvasHost.getScene() : null;
+    }
+
+    @Override
+    protected void updateControlStates() {
+        boolean isGenerating = traceTask != null || measureTask != null || exportTask != null || externalTask != null;
+        boolean isRunning = isAnimating && !isPaused;
+        if (playButton != null) playButton.setDisable(isRunning || isGenerating);
+        if (pauseButton != null) pauseButton.setDisable(!isRunning);
         if (resetButton != null) resetButton.setDisable(false);
-        if (stepButton != null) stepButton.setDisable(isAnimating);
+        if (stepButton != null) stepButton.setDisable(isRunning || isGenerating);
+        if (stepBackButton != null) stepBackButton.setDisable(isRunning || isGenerating || checkpoints == null);
+        if (timelineSlider != null) timelineSlider.setDisable(isGenerating || checkpoints == null);
+        if (measureButton != null) measureButton.setDisable(isAnimating || isGenerating);
+        if (openTraceButton != null) openTraceButton.setDisable(isAnimating || isGenerating);
+        if (exportTraceButton != null) exportTraceButton.setDisable(isAnimating || isGenerating);
+        if (raceButton != null) raceButton.setDisable(isAnimating || isGenerating);
+        if (externalSortButton != null) externalSortButton.setDisable(isAnimating || isGenerating);
         if (generateRandomButton != null) generateRandomButton.setDisable(isAnimating);
         if (generateCustomButton != null) generateCustomButton.setDisable(isAnimating);
         if (algorithmComboBox != null) algorithmComboBox.setDisable(isAnimating);
         if (arraySizeSlider != null) arraySizeSlider.setDisable(isAnimating);
+        if (arraySizeSpinner != null) arraySizeSpinner.setDisable(isAnimating);
+        if (distributionComboBox != null) distributionComboBox.setDisable(isAnimating);
+        if (cutoffSpinner != null) {
+            String algorithm = algorithmComboBox != null ? algorithmComboBox.getValue() : null;
+            cutoffSpinner.setDisable(isAnimating || algorithm == null || !sortingService.isParallel(algorithm));
+        }
     }
 
     @FXML
     private void goBack() {
         try {
-            if (sortingAnimation != null) {
-                sortingAnimation.stop();
-            }
+            playbackEngine.stop();
+            cancelTraceGeneration();
+            closeTraceCursor();
 
-            Stage currentStage = (Stage) arrayChart.getScene().getWindow();
+            Stage currentStage = (Stage) barCanvasHost.getScene().getWindow();
             // ✅ Use hide() instead of close() for back navigation
             currentStage.hide();
             System.out.println("Sorting module hidden (can be reopened)");
@@ -1114,39 +2328,4 @@ public class SortingController implements Initializable {
         alert.setContentText(message);
         alert.showAndWait();
     }
-
-    // Inner class for sorting steps
-    public static class SortingStep {
-        public enum StepType { COMPARE, SWAP, SET, HIGHLIGHT }
-        private final StepType type;
-        private final int index1;
-        private final int index2;
-        private final int value;
-
-        public SortingStep(StepType type, int index1, int index2) {
-            this.type = type;
-            this.index1 = index1;
-            this.index2 = index2;
-            this.value = -1;
-        }
-
-        public SortingStep(StepType type, int index1) {
-            this.type = type;
-            this.index1 = index1;
-            this.index2 = -1;
-            this.value = -1;
-        }
-
-        public SortingStep(StepType type, int index1, int index2, int value) {
-            this.type = type;
-            this.index1 = index1;
-            this.index2 = index2;
-            this.value = value;
-        }
-
-        public StepType getType() { return type; }
-        public int getIndex1() { return index1; }
-        public int getIndex2() { return index2; }
-        public int getValue() { return value; }
-    }
-}
+}
\ No newline at end of file
@@ -1,19 +1,35 @@
 package com.simulator;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
- * Service class that manages sorting algorithms and performance metrics
+ * Service class that manages sorting algorithms and performance metrics.
+ * Metrics are per run ({@link SortMetrics}), so the service holds no counters
+ * and concurrent runs can be measured side by side.
  */
 public class SortingService {
 
-    private int comparisons = 0;
-    private int swaps = 0;
-    private long startTime = 0;
+    private int sequentialCutoff = DEFAULT_SEQUENTIAL_CUTOFF;
     private final Map<String, SortingAlgorithm> algorithms;
+    // Same interface, but they order only part of the array, so races and sort lists leave them out
+    private final Map<String, SortingAlgorithm> selections;
+
+    /** Range size below which the parallel sorts stop forking and sort sequentially. */
+    public static final int DEFAULT_SEQUENTIAL_CUTOFF = 8192;
+
+    // Trace generation runs off the JavaFX thread; one cheap virtual thread per run
+    private static final ExecutorService TRACE_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    // Shared by every view, so traces survive navigating away and back
+    private static final TraceCache TRACE_CACHE = new TraceCache();
 
     public SortingService() {
-        algorithms = new HashMap<>();
+        algorithms = new LinkedHashMap<>();
         algorithms.put("Bubble Sort", new BubbleSortAlgorithm());
         algorithms.put("Selection Sort", new SelectionSortAlgorithm());
         algorithms.put("Insertion Sort", new InsertionSortAlgorithm());
@@ -24,46 +40,127 @@ public class SortingService {
         algorithms.put("Shell Sort", new ShellSortAlgorithm());
         algorithms.put("Radix Sort", new RadixSortAlgorithm());
         algorithms.put("Counting Sort", new CountingSortAlgorithm());
+        // Hybrid algorithms used by production libraries
+        algorithms.put("Intro Sort", new IntroSortAlgorithm());
+        algorithms.put("Dual-Pivot Quick Sort", new DualPivotQuickSortAlgorithm());
+        algorithms.put("Tim Sort", new TimSortAlgorithm());
+        algorithms.put("Pattern-Defeating Quick Sort", new PdqSortAlgorithm());
+        // Fork/join variants
+        algorithms.put("Parallel Merge Sort", new ParallelMergeSortAlgorithm());
+        algorithms.put("Parallel Quick Sort", new ParallelQuickSortAlgorithm());
+        algorithms.put("Parallel Sample Sort", new ParallelSampleSortAlgorithm());
+        algorithms.put("American Flag Sort", new AmericanFlagSortAlgorithm());
+        // Sorting networks, one parallel group per comparator layer
+        algorithms.put("Bitonic Sort", new BitonicSortAlgorithm());
+        algorithms.put("Odd-Even Merge Sort", new OddEvenMergeSortAlgorithm());
+
+        selections = new LinkedHashMap<>();
+        selections.put("Quickselect (Median)", new QuickselectAlgorithm());
+        selections.put("Heap Partial Sort (k = n/4)", new PartialHeapSortAlgorithm());
     }
 
+    /** A sorting algorithm or a selection; null if neither is registered under the name. */
     public SortingAlgorithm getAlgorithm(String name) {
-        return algorithms.get(name);
+        SortingAlgorithm algorithm = algorithms.get(name);
+        return algorithm != null ? algorithm : selections.get(name);
+    }
+
+    /** Registered sorting algorithm names in registration order. */
+    public List<String> getAlgorithmNames() {
+        return List.copyOf(algorithms.keySet());
+    }
+
+    /** Registered selection names; see {@link SelectionEngine}. */
+    public List<String> getSelectionNames() {
+        return List.copyOf(selections.keySet());
+    }
+
+    /** True if the name is a selection, which leaves the array only partly sorted. */
+    public boolean isSelection(String name) {
+        return selections.containsKey(name);
+    }
+
+    public ExecutorService getTraceExecutor() {
+        return TRACE_EXECUTOR;
+    }
+
+    public TraceCache getTraceCache() {
+        return TRACE_CACHE;
+    }
+
+    /** Cutoff a trace of the named algorithm depends on; 0 for the sequential sorts. */
+    public int cutoffFor(String name) {
+        return isParallel(name) ? sequentialCutoff : 0;
     }
 
-    public void incrementComparisons() { comparisons++; }
-    public void incrementSwaps() { swaps++; }
-    public int getComparisons() { return comparisons; }
-    public int getSwaps() { return swaps; }
+    public boolean isParallel(String name) {
+        return algorithms.get(name) instanceof ParallelSortingAlgorithm;
+    }
 
-    public void resetCounters() {
-        comparisons = 0;
-        swaps = 0;
+    public int getSequentialCutoff() {
+        return sequentialCutoff;
     }
 
-    public void startTiming() {
-        startTime = System.currentTimeMillis();
+    /** Applies to every parallel algorithm of this service. */
+    public void setSequentialCutoff(int cutoff) {
+        if (cutoff < 2) {
+            throw new IllegalArgumentException("Sequential cutoff must be at least 2: " + cutoff);
+        }
+        sequentialCutoff = cutoff;
+        for (SortingAlgorithm algorithm : algorithms.values()) {
+            if (algorithm instanceof ParallelSortingAlgorithm parallel) {
+                parallel.sequentialCutoff = cutoff;
+            }
+        }
+    }
+
+    /**
+     * Sorts the array in place without recording any steps. Safe to call from
+     * several threads at once; each run counts into its own sink.
+     */
+    public SortMetrics runHeadless(String algorithmName, int[] array) {
+        SortingAlgorithm algorithm = getAlgorithm(algorithmName);
+        if (algorithm == null) {
+            throw new IllegalArgumentException("Unknown algorithm: " + algorithmName);
+        }
+        CountingSink counter = new CountingSink();
+        long start = System.nanoTime();
+        algorithm.sort(array, counter);
+        return counter.toMetrics(System.nanoTime() - start);
     }
 
-    public long stopTiming() {
-        return System.currentTimeMillis() - startTime;
+    /**
+     * Sorts the array in place while every element access goes through the
+     * cache model. The returned sink holds the hit rates and miss heatmap.
+     */
+    public CacheSink simulateCache(String algorithmName, int[] array, CacheSimulator cache) {
+        SortingAlgorithm algorithm = getAlgorithm(algorithmName);
+        if (algorithm == null) {
+            throw new IllegalArgumentException("Unknown algorithm: " + algorithmName);
+        }
+        CacheSink sink = new CacheSink(cache, array.length);
+        algorithm.sort(array, sink);
+        return sink;
     }
 
     // ==================== EXISTING ALGORITHMS ====================
 
     private static class BubbleSortAlgorithm implements SortingAlgorithm {
         @Override
-        public List<SortingController.SortingStep> generateSteps(int[] array) {
-            List<SortingController.SortingStep> steps = new ArrayList<>();
+        public long estimateSteps(int n) {
+            return 3L * n * n / 4;
+        }
+
+        @Override
+        public void sort(int[] array, StepSink sink) {
             int n = array.length;
 
             for (int i = 0; i < n - 1; i++) {
                 for (int j = 0; j < n - i - 1; j++) {
-                    steps.add(new SortingController.SortingStep(
-                            SortingController.SortingStep.StepType.COMPARE, j, j + 1));
+                    sink.compare(j, j + 1);
 
                     if (array[j] > array[j + 1]) {
-                        steps.add(new SortingController.SortingStep(
-                                SortingController.SortingStep.StepType.SWAP, j, j + 1));
+                        sink.swap(j, j + 1);
                         // Perform actual swap
                         int temp = array[j];
                         array[j] = array[j + 1];
@@ -71,95 +168,90 @@ public class SortingService {
                     }
                 }
             }
-            return steps;
         }
     }
 
     private static class SelectionSortAlgorithm implements SortingAlgorithm {
         @Override
-        public List<SortingController.SortingStep> generateSteps(int[] array) {
-            List<SortingController.SortingStep> steps = new ArrayList<>();
+        public long estimateSteps(int n) {
+            return (long) n * n / 2;
+        }
+
+        @Override
+        public void sort(int[] array, StepSink sink) {
             int n = array.length;
 
             for (int i = 0; i < n - 1; i++) {
                 int minIdx = i;
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.HIGHLIGHT, i));
+                sink.highlight(i);
 
                 for (int j = i + 1; j < n; j++) {
-                    steps.add(new SortingController.SortingStep(
-                            SortingController.SortingStep.StepType.COMPARE, minIdx, j));
+                    sink.compare(minIdx, j);
                     if (array[j] < array[minIdx]) {
                         minIdx = j;
                     }
                 }
 
                 if (minIdx != i) {
-                    steps.add(new SortingController.SortingStep(
-                            SortingController.SortingStep.StepType.SWAP, i, minIdx));
+                    sink.swap(i, minIdx);
                     // Perform actual swap
                     int temp = array[i];
                     array[i] = array[minIdx];
                     array[minIdx] = temp;
                 }
             }
-            return steps;
         }
     }
 
     private static class InsertionSortAlgorithm implements SortingAlgorithm {
         @Override
-        public List<SortingController.SortingStep> generateSteps(int[] array) {
-            List<SortingController.SortingStep> steps = new ArrayList<>();
+        public long estimateSteps(int n) {
+            return (long) n * n / 2;
+        }
 
+        @Override
+        public void sort(int[] array, StepSink sink) {
             for (int i = 1; i < array.length; i++) {
                 int key = array[i];
                 int j = i - 1;
 
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.HIGHLIGHT, i));
+                sink.highlight(i);
 
                 while (j >= 0 && array[j] > key) {
-                    steps.add(new SortingController.SortingStep(
-                            SortingController.SortingStep.StepType.COMPARE, j, j + 1));
-                    steps.add(new SortingController.SortingStep(
-                            SortingController.SortingStep.StepType.SET, j + 1, -1, array[j]));
+                    sink.compare(j, j + 1);
+                    sink.set(j + 1, array[j]);
                     array[j + 1] = array[j];
                     j--;
                 }
 
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.SET, j + 1, -1, key));
+                sink.set(j + 1, key);
                 array[j + 1] = key;
             }
-            return steps;
         }
     }
 
     private static class MergeSortAlgorithm implements SortingAlgorithm {
-        private List<SortingController.SortingStep> steps;
-        private int[] workingArray;
-
         @Override
-        public List<SortingController.SortingStep> generateSteps(int[] array) {
-            steps = new ArrayList<>();
-            workingArray = Arrays.copyOf(array, array.length);
-            mergeSort(0, array.length - 1);
-            return steps;
+        public void sort(int[] array, StepSink sink) {
+            mergeSort(array, sink, 0, array.length - 1);
         }
 
-        private void mergeSort(int left, int right) {
+        private void mergeSort(int[] workingArray, StepSink sink, int left, int right) {
             if (left < right) {
+                sink.enterCall();
                 int mid = left + (right - left) / 2;
-                mergeSort(left, mid);
-                mergeSort(mid + 1, right);
-                merge(left, mid, right);
+                mergeSort(workingArray, sink, left, mid);
+                mergeSort(workingArray, sink, mid + 1, right);
+                merge(workingArray, sink, left, mid, right);
+                sink.exitCall();
             }
         }
 
-        private void merge(int left, int mid, int right) {
+        private void merge(int[] workingArray, StepSink sink, int left, int mid, int right) {
             int[] leftArray = new int[mid - left + 1];
             int[] rightArray = new int[right - mid];
+            long scratch = (long) (right - left + 1) * Integer.BYTES;
+            sink.allocate(scratch);
 
             System.arraycopy(workingArray, left, leftArray, 0, leftArray.length);
             System.arraycopy(workingArray, mid + 1, rightArray, 0, rightArray.length);
@@ -167,17 +259,14 @@ public class SortingService {
             int i = 0, j = 0, k = left;
 
             while (i < leftArray.length && j < rightArray.length) {
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.COMPARE, left + i, mid + 1 + j));
+                sink.compare(left + i, mid + 1 + j);
 
                 if (leftArray[i] <= rightArray[j]) {
-                    steps.add(new SortingController.SortingStep(
-                            SortingController.SortingStep.StepType.SET, k, -1, leftArray[i]));
+                    sink.set(k, leftArray[i]);
                     workingArray[k] = leftArray[i];
                     i++;
                 } else {
-                    steps.add(new SortingController.SortingStep(
-                            SortingController.SortingStep.StepType.SET, k, -1, rightArray[j]));
+                    sink.set(k, rightArray[j]);
                     workingArray[k] = rightArray[j];
                     j++;
                 }
@@ -186,59 +275,51 @@ public class SortingService {
 
             // Copy remaining elements
             while (i < leftArray.length) {
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.SET, k, -1, leftArray[i]));
+                sink.set(k, leftArray[i]);
                 workingArray[k] = leftArray[i];
                 i++;
                 k++;
             }
 
             while (j < rightArray.length) {
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.SET, k, -1, rightArray[j]));
+                sink.set(k, rightArray[j]);
                 workingArray[k] = rightArray[j];
                 j++;
                 k++;
             }
+            sink.release(scratch);
         }
     }
 
     private static class QuickSortAlgorithm implements SortingAlgorithm {
-        private List<SortingController.SortingStep> steps;
-        private int[] workingArray;
-
         @Override
-        public List<SortingController.SortingStep> generateSteps(int[] array) {
-            steps = new ArrayList<>();
-            workingArray = Arrays.copyOf(array, array.length);
-            quickSort(0, array.length - 1);
-            return steps;
+        public void sort(int[] array, StepSink sink) {
+            quickSort(array, sink, 0, array.length - 1);
         }
 
-        private void quickSort(int low, int high) {
+        private void quickSort(int[] workingArray, StepSink sink, int low, int high) {
             if (low < high) {
-                int pivotIndex = partition(low, high);
-                quickSort(low, pivotIndex - 1);
-                quickSort(pivotIndex + 1, high);
+                sink.enterCall();
+                int pivotIndex = partition(workingArray, sink, low, high);
+                quickSort(workingArray, sink, low, pivotIndex - 1);
+                quickSort(workingArray, sink, pivotIndex + 1, high);
+                sink.exitCall();
             }
         }
 
-        private int partition(int low, int high) {
+        private int partition(int[] workingArray, StepSink sink, int low, int high) {
             int pivot = workingArray[high];
-            steps.add(new SortingController.SortingStep(
-                    SortingController.SortingStep.StepType.HIGHLIGHT, high));
+            sink.highlight(high);
 
             int i = low - 1;
 
             for (int j = low; j < high; j++) {
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.COMPARE, j, high));
+                sink.compare(j, high);
 
                 if (workingArray[j] < pivot) {
                     i++;
                     if (i != j) {
-                        steps.add(new SortingController.SortingStep(
-                                SortingController.SortingStep.StepType.SWAP, i, j));
+                        sink.swap(i, j);
                         // Perform actual swap
                         int temp = workingArray[i];
                         workingArray[i] = workingArray[j];
@@ -247,8 +328,7 @@ public class SortingService {
                 }
             }
 
-            steps.add(new SortingController.SortingStep(
-                    SortingController.SortingStep.StepType.SWAP, i + 1, high));
+            sink.swap(i + 1, high);
             // Final swap
             int temp = workingArray[i + 1];
             workingArray[i + 1] = workingArray[high];
@@ -261,48 +341,45 @@ public class SortingService {
     // ==================== NEW ADVANCED ALGORITHMS ====================
 
     private static class HeapSortAlgorithm implements SortingAlgorithm {
-        private List<SortingController.SortingStep> steps;
-        private int[] workingArray;
+        @Override
+        public long estimateSteps(int n) {
+            return 3L * n * SortingAlgorithm.log2(n);
+        }
 
         @Override
-        public List<SortingController.SortingStep> generateSteps(int[] array) {
-            steps = new ArrayList<>();
-            workingArray = Arrays.copyOf(array, array.length);
-            heapSort();
-            return steps;
+        public void sort(int[] array, StepSink sink) {
+            heapSort(array, sink);
         }
 
-        private void heapSort() {
+        private void heapSort(int[] workingArray, StepSink sink) {
             int n = workingArray.length;
 
             // Build heap (rearrange array)
             for (int i = n / 2 - 1; i >= 0; i--) {
-                heapify(n, i);
+                heapify(workingArray, sink, n, i);
             }
 
             // Extract elements from heap one by one
             for (int i = n - 1; i > 0; i--) {
                 // Move current root to end
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.SWAP, 0, i));
+                sink.swap(0, i);
                 int temp = workingArray[0];
                 workingArray[0] = workingArray[i];
                 workingArray[i] = temp;
 
                 // Call heapify on the reduced heap
-                heapify(i, 0);
+                heapify(workingArray, sink, i, 0);
             }
         }
 
-        private void heapify(int n, int i) {
+        private void heapify(int[] workingArray, StepSink sink, int n, int i) {
             int largest = i; // Initialize largest as root
             int left = 2 * i + 1;
             int right = 2 * i + 2;
 
             // If left child is larger than root
             if (left < n) {
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.COMPARE, left, largest));
+                sink.compare(left, largest);
                 if (workingArray[left] > workingArray[largest]) {
                     largest = left;
                 }
@@ -310,8 +387,7 @@ public class SortingService {
 
             // If right child is larger than largest so far
             if (right < n) {
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.COMPARE, right, largest));
+                sink.compare(right, largest);
                 if (workingArray[right] > workingArray[largest]) {
                     largest = right;
                 }
@@ -319,86 +395,88 @@ public class SortingService {
 
             // If largest is not root
             if (largest != i) {
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.SWAP, i, largest));
+                sink.swap(i, largest);
                 int temp = workingArray[i];
                 workingArray[i] = workingArray[largest];
                 workingArray[largest] = temp;
 
                 // Recursively heapify the affected sub-tree
-                heapify(n, largest);
+                sink.enterCall();
+                heapify(workingArray, sink, n, largest);
+                sink.exitCall();
             }
         }
     }
 
     private static class ShellSortAlgorithm implements SortingAlgorithm {
         @Override
-        public List<SortingController.SortingStep> generateSteps(int[] array) {
-            List<SortingController.SortingStep> steps = new ArrayList<>();
+        public long estimateSteps(int n) {
+            return 4L * n * SortingAlgorithm.log2(n);
+        }
+
+        @Override
+        public void sort(int[] array, StepSink sink) {
             int n = array.length;
 
             // Start with a big gap, then reduce the gap
             for (int gap = n / 2; gap > 0; gap /= 2) {
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.HIGHLIGHT, gap % n));
+                sink.highlight(gap % n);
 
                 // Do a gapped insertion sort for this gap size
                 for (int i = gap; i < n; i++) {
                     int temp = array[i];
                     int j;
 
-                    steps.add(new SortingController.SortingStep(
-                            SortingController.SortingStep.StepType.HIGHLIGHT, i));
+                    sink.highlight(i);
 
                     for (j = i; j >= gap; j -= gap) {
-                        steps.add(new SortingController.SortingStep(
-                                SortingController.SortingStep.StepType.COMPARE, j - gap, j));
+                        sink.compare(j - gap, j);
 
                         if (array[j - gap] > temp) {
-                            steps.add(new SortingController.SortingStep(
-                                    SortingController.SortingStep.StepType.SET, j, -1, array[j - gap]));
+                            sink.set(j, array[j - gap]);
                             array[j] = array[j - gap];
                         } else {
                             break;
                         }
                     }
 
-                    steps.add(new SortingController.SortingStep(
-                            SortingController.SortingStep.StepType.SET, j, -1, temp));
+                    sink.set(j, temp);
                     array[j] = temp;
                 }
             }
-            return steps;
         }
     }
 
     private static class RadixSortAlgorithm implements SortingAlgorithm {
         @Override
-        public List<SortingController.SortingStep> generateSteps(int[] array) {
-            List<SortingController.SortingStep> steps = new ArrayList<>();
+        public long estimateSteps(int n) {
+            return 30L * n;
+        }
+
+        @Override
+        public void sort(int[] array, StepSink sink) {
 
             // Find the maximum number to know number of digits
             int max = Arrays.stream(array).max().orElse(0);
 
             // Do counting sort for every digit
             for (int exp = 1; max / exp > 0; exp *= 10) {
-                countingSortByDigit(array, steps, exp);
+                countingSortByDigit(array, sink, exp);
             }
-
-            return steps;
         }
 
-        private void countingSortByDigit(int[] array, List<SortingController.SortingStep> steps, int exp) {
+        private void countingSortByDigit(int[] array, StepSink sink, int exp) {
             int n = array.length;
             int[] output = new int[n];
             int[] count = new int[10];
+            long scratch = (long) (n + count.length) * Integer.BYTES;
+            sink.allocate(scratch);
 
             // Store count of occurrences of each digit
             for (int i = 0; i < n; i++) {
                 int digit = (array[i] / exp) % 10;
                 count[digit]++;
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.HIGHLIGHT, i));
+                sink.highlight(i);
             }
 
             // Change count[i] so that it contains actual position of this digit in output[]
@@ -412,66 +490,1751 @@ public class SortingService {
                 output[count[digit] - 1] = array[i];
                 count[digit]--;
 
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.SET, count[digit], -1, array[i]));
+                sink.set(count[digit], array[i]);
             }
 
             // Copy the output array to array[]
+            sink.setRange(0, output, 0, n);
+            System.arraycopy(output, 0, array, 0, n);
+            sink.release(scratch);
+        }
+    }
+
+    /**
+     * Range-aware counting sort. Small key ranges get a dense count array,
+     * counted in parallel chunks with per-thread arrays on large inputs. Sparse
+     * ranges (one outlier is enough) count into a hash table of the distinct
+     * keys instead, sized from a sample. When the sample or the table shows
+     * mostly distinct keys, counting saves nothing, and the keys are bucketed
+     * byte by byte with {@link AmericanFlagSort}. Memory therefore stays below
+     * fixed caps whatever max - min is. Counts are written straight back to
+     * the array.
+     */
+    private static class CountingSortAlgorithm implements SortingAlgorithm {
+        // Dense counts while the range is at most this many times the length, or small anyway
+        private static final int DENSE_RANGE_FACTOR = 4;
+        private static final int SMALL_RANGE = 1 << 16;
+        // Hard cap on dense counters held at once, all chunks together: 16 MB
+        private static final int MAX_DENSE_COUNTERS = 1 << 22;
+        private static final int PARALLEL_HISTOGRAM_THRESHOLD = 1 << 18;
+        private static final int SAMPLE_SIZE = 1024;
+        // Hashing stops paying off beyond this many distinct keys (a 32 MB table at most)
+        private static final int MAX_HASHED_KEYS = 1 << 20;
+
+        @Override
+        public long estimateSteps(int n) {
+            return 2L * n;
+        }
+
+        @Override
+        public void sort(int[] array, StepSink sink) {
+            int n = array.length;
+            if (n < 2) return;
+
+            int min = array[0], max = array[0];
+            for (int value : array) {
+                if (value < min) min = value;
+                if (value > max) max = value;
+            }
+            long range = (long) max - min + 1;
+            if (range <= MAX_DENSE_COUNTERS && (range <= SMALL_RANGE || range <= (long) DENSE_RANGE_FACTOR * n)) {
+                denseSort(array, sink, min, (int) range);
+            } else if (!hashedSort(array, sink)) {
+                AmericanFlagSort.sort(array, sink, DEFAULT_SEQUENTIAL_CUTOFF);
+            }
+        }
+
+        private void denseSort(int[] array, StepSink sink, int min, int range) {
+            int n = array.length;
+            int chunks = n < PARALLEL_HISTOGRAM_THRESHOLD ? 1
+                    : Math.min(ForkJoinPool.getCommonPoolParallelism(), MAX_DENSE_COUNTERS / range);
+            long scratch = (long) Math.max(1, chunks) * range * Integer.BYTES;
+            sink.allocate(scratch);
+
+            int[] count;
+            if (chunks <= 1) {
+                count = new int[range];
+                for (int i = 0; i < n; i++) {
+                    count[array[i] - min]++;
+                    sink.highlight(i);
+                }
+            } else {
+                // Every chunk counts into its own array; the arrays are summed afterwards
+                int[][] partial = new int[chunks][];
+                StepSink[] workers = new StepSink[chunks];
+                for (int c = 0; c < chunks; c++) {
+                    workers[c] = sink.fork();
+                }
+                IntStream.range(0, chunks).parallel().forEach(c -> {
+                    int[] local = new int[range];
+                    StepSink worker = workers[c];
+                    int to = (int) ((long) n * (c + 1) / chunks);
+                    for (int i = (int) ((long) n * c / chunks); i < to; i++) {
+                        local[array[i] - min]++;
+                        worker.highlight(i);
+                    }
+                    partial[c] = local;
+                });
+                sink.join(workers);
+                count = partial[0];
+                for (int c = 1; c < chunks; c++) {
+                    int[] local = partial[c];
+                    for (int v = 0; v < range; v++) {
+                        count[v] += local[v];
+                    }
+                }
+            }
+
+            // Write every value back as often as it was counted
+            int pos = 0;
+            for (int v = 0; v < range; v++) {
+                int value = min + v;
+                for (int c = count[v]; c > 0; c--) {
+                    array[pos] = value;
+                    sink.set(pos++, value);
+                }
+            }
+            sink.release(scratch);
+        }
+
+        /**
+         * Guaranteed-error estimate of the distinct keys among n from a sorted
+         * sample: keys seen once stand for sqrt(n / sample) keys each, repeated
+         * keys for themselves.
+         */
+        private static long estimateDistinct(int[] sortedSample, int n) {
+            long once = 0, repeated = 0;
+            for (int s = 0; s < sortedSample.length; ) {
+                int run = 1;
+                while (s + run < sortedSample.length && sortedSample[s + run] == sortedSample[s]) run++;
+                if (run == 1) once++; else repeated++;
+                s += run;
+            }
+            return (long) Math.ceil(Math.sqrt((double) n / sortedSample.length) * once) + repeated;
+        }
+
+        /** Counts into a hash table and writes back; false, with the array untouched, if keys are mostly distinct. */
+        private boolean hashedSort(int[] array, StepSink sink) {
+            int n = array.length;
+            int maxKeys = Math.min(MAX_HASHED_KEYS, n / 4);
+            // A sorted sample predicts the number of distinct keys, so the table rarely grows
+            int sampleSize = Math.min(SAMPLE_SIZE, n);
+            int[] sample = new int[sampleSize];
+            for (int s = 0; s < sampleSize; s++) {
+                sample[s] = array[(int) ((long) s * n / sampleSize)];
+            }
+            Arrays.sort(sample);
+            int sampleDistinct = 1;
+            for (int s = 1; s < sampleSize; s++) {
+                if (sample[s] != sample[s - 1]) sampleDistinct++;
+            }
+            if (sampleDistinct == sampleSize && sampleSize < n) return false;
+            long expected = Math.max(16, estimateDistinct(sample, n));
+            if (expected > maxKeys) return false;
+
+            KeyCounts counts = new KeyCounts((int) expected);
+            long tableBytes = counts.sizeInBytes();
+            sink.allocate(tableBytes);
             for (int i = 0; i < n; i++) {
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.SET, i, -1, output[i]));
-                array[i] = output[i];
+                counts.add(array[i]);
+                sink.highlight(i);
+                // Account for a grow first, so an abort below releases the table as it is now
+                if (counts.sizeInBytes() != tableBytes) {
+                    sink.allocate(counts.sizeInBytes() - tableBytes);
+                    tableBytes = counts.sizeInBytes();
+                }
+                if (counts.size() > maxKeys) {
+                    // The sample was misleading; give the memory back and bucket instead
+                    sink.release(tableBytes);
+                    return false;
+                }
+            }
+
+            // Key in the high half, count in the low half: sorting the longs sorts the keys
+            long[] entries = counts.toEntries();
+            long entryBytes = (long) entries.length * Long.BYTES;
+            sink.allocate(entryBytes);
+            AmericanFlagSort.sort(entries, DEFAULT_SEQUENTIAL_CUTOFF);
+            int pos = 0;
+            for (long entry : entries) {
+                int value = (int) (entry >> 32);
+                for (int c = (int) entry; c > 0; c--) {
+                    array[pos] = value;
+                    sink.set(pos++, value);
+                }
             }
+            sink.release(entryBytes + tableBytes);
+            return true;
         }
     }
 
-    private static class CountingSortAlgorithm implements SortingAlgorithm {
+    /**
+     * Open-addressing count per distinct int key, grown at half load. An empty
+     * slot has count 0, so any key value can be stored.
+     */
+    private static final class KeyCounts {
+        private int[] keys;
+        private int[] counts;
+        private int size;
+
+        KeyCounts(int expectedKeys) {
+            int capacity = Integer.highestOneBit(Math.max(16, expectedKeys) * 2 - 1) << 1;
+            keys = new int[capacity];
+            counts = new int[capacity];
+        }
+
+        void add(int key) {
+            int mask = keys.length - 1;
+            int slot = (key * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(keys.length));
+            while (counts[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (counts[slot] == 0) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    counts[slot] = 1;
+                    grow();
+                    return;
+                }
+            }
+            counts[slot]++;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            int shift = 32 - Integer.numberOfTrailingZeros(keys.length);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCounts[i] == 0) continue;
+                int slot = (oldKeys[i] * 0x9E3779B9) >>> shift;
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+
+        long[] toEntries() {
+            long[] entries = new long[size];
+            int e = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (counts[i] != 0) {
+                    entries[e++] = ((long) keys[i] << 32) | counts[i];
+                }
+            }
+            return entries;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long sizeInBytes() {
+            return 2L * keys.length * Integer.BYTES;
+        }
+    }
+
+    // ==================== HYBRID ALGORITHMS ====================
+
+    private static void swap(int[] workingArray, StepSink sink, int i, int j) {
+        sink.swap(i, j);
+        int temp = workingArray[i];
+        workingArray[i] = workingArray[j];
+        workingArray[j] = temp;
+    }
+
+    // Insertion sort of [low, high], shifting with writes like InsertionSortAlgorithm
+    private static void insertionSort(int[] workingArray, StepSink sink, int low, int high) {
+        for (int i = low + 1; i <= high; i++) {
+            int key = workingArray[i];
+            int j = i - 1;
+            while (j >= low) {
+                sink.compare(j, j + 1);
+                if (workingArray[j] <= key) break;
+                sink.set(j + 1, workingArray[j]);
+                workingArray[j + 1] = workingArray[j];
+                j--;
+            }
+            if (j + 1 != i) {
+                sink.set(j + 1, key);
+                workingArray[j + 1] = key;
+            }
+        }
+    }
+
+    /**
+     * Quick Sort with a median-of-three pivot that falls back to Heap Sort once
+     * recursion passes 2·log2(n), and finishes short ranges with Insertion Sort.
+     * Always O(n log n), and the stack stays O(log n).
+     */
+    private static class IntroSortAlgorithm implements SortingAlgorithm {
+        private static final int INSERTION_CUTOFF = 16;
+        private final QuickSortAlgorithm quickSort = new QuickSortAlgorithm();
+
         @Override
-        public List<SortingController.SortingStep> generateSteps(int[] array) {
-            List<SortingController.SortingStep> steps = new ArrayList<>();
+        public void sort(int[] array, StepSink sink) {
+            sort(array, 0, array.length, sink);
+        }
 
-            if (array.length == 0) return steps;
+        @Override
+        public void sort(int[] array, int from, int to, StepSink sink) {
+            if (to - from < 2) return;
+            introSort(array, sink, from, to - 1, 2 * (int) SortingAlgorithm.log2(to - from));
+        }
 
-            // Find range
-            int max = Arrays.stream(array).max().orElse(0);
-            int min = Arrays.stream(array).min().orElse(0);
-            int range = max - min + 1;
+        private void introSort(int[] workingArray, StepSink sink, int low, int high, int depthLimit) {
+            sink.enterCall();
+            while (high - low + 1 > INSERTION_CUTOFF) {
+                if (depthLimit == 0) {
+                    heapSort(workingArray, sink, low, high);
+                    sink.exitCall();
+                    return;
+                }
+                depthLimit--;
 
-            // Create count array
-            int[] count = new int[range];
-            int[] output = new int[array.length];
+                medianOfThreeToHigh(workingArray, sink, low, high);
+                int pivotIndex = quickSort.partition(workingArray, sink, low, high);
 
-            // Count occurrences
-            for (int i = 0; i < array.length; i++) {
-                count[array[i] - min]++;
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.HIGHLIGHT, i));
+                // Recurse into the smaller side and loop on the larger one
+                if (pivotIndex - low < high - pivotIndex) {
+                    introSort(workingArray, sink, low, pivotIndex - 1, depthLimit);
+                    low = pivotIndex + 1;
+                } else {
+                    introSort(workingArray, sink, pivotIndex + 1, high, depthLimit);
+                    high = pivotIndex - 1;
+                }
             }
+            insertionSort(workingArray, sink, low, high);
+            sink.exitCall();
+        }
 
-            // Calculate cumulative count
-            for (int i = 1; i < range; i++) {
-                count[i] += count[i - 1];
+        // Orders low/mid/high, then parks the median at high where partition expects the pivot
+        private void medianOfThreeToHigh(int[] workingArray, StepSink sink, int low, int high) {
+            int mid = low + (high - low) / 2;
+            sink.compare(mid, low);
+            if (workingArray[mid] < workingArray[low]) swap(workingArray, sink, mid, low);
+            sink.compare(high, low);
+            if (workingArray[high] < workingArray[low]) swap(workingArray, sink, high, low);
+            sink.compare(high, mid);
+            if (workingArray[high] < workingArray[mid]) swap(workingArray, sink, high, mid);
+            swap(workingArray, sink, mid, high);
+        }
+
+        private void heapSort(int[] workingArray, StepSink sink, int low, int high) {
+            int n = high - low + 1;
+            for (int i = n / 2 - 1; i >= 0; i--) {
+                siftDown(workingArray, sink, low, n, i);
+            }
+            for (int i = n - 1; i > 0; i--) {
+                swap(workingArray, sink, low, low + i);
+                siftDown(workingArray, sink, low, i, 0);
             }
+        }
+
+        private void siftDown(int[] workingArray, StepSink sink, int offset, int n, int i) {
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < n) {
+                    sink.compare(offset + left, offset + largest);
+                    if (workingArray[offset + left] > workingArray[offset + largest]) largest = left;
+                }
+                if (right < n) {
+                    sink.compare(offset + right, offset + largest);
+                    if (workingArray[offset + right] > workingArray[offset + largest]) largest = right;
+                }
+                if (largest == i) return;
+                swap(workingArray, sink, offset + i, offset + largest);
+                i = largest;
+            }
+        }
+    }
 
-            // Build output array
-            for (int i = array.length - 1; i >= 0; i--) {
-                int value = array[i];
-                int pos = count[value - min] - 1;
-                output[pos] = value;
-                count[value - min]--;
+    /**
+     * Yaroslavskiy's dual-pivot Quick Sort: two pivots split each range into
+     * three parts (&lt; p, between, &gt; q). Pivots are taken at the tertiles so
+     * sorted and reversed input stay balanced.
+     */
+    private static class DualPivotQuickSortAlgorithm implements SortingAlgorithm {
+        private static final int INSERTION_CUTOFF = 16;
 
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.SET, pos, -1, value));
+        @Override
+        public void sort(int[] array, StepSink sink) {
+            dualPivotSort(array, sink, 0, array.length - 1);
+        }
+
+        private void dualPivotSort(int[] workingArray, StepSink sink, int low, int high) {
+            int length = high - low + 1;
+            if (length <= INSERTION_CUTOFF) {
+                insertionSort(workingArray, sink, low, high);
+                return;
             }
 
-            // Copy output array back to original array
-            for (int i = 0; i < array.length; i++) {
-                steps.add(new SortingController.SortingStep(
-                        SortingController.SortingStep.StepType.SET, i, -1, output[i]));
-                array[i] = output[i];
+            int third = length / 3;
+            swap(workingArray, sink, low, low + third);
+            swap(workingArray, sink, high, high - third);
+            sink.compare(low, high);
+            if (workingArray[low] > workingArray[high]) swap(workingArray, sink, low, high);
+            int p = workingArray[low];
+            int q = workingArray[high];
+
+            int less = low + 1;
+            int great = high - 1;
+            int k = less;
+            while (k <= great) {
+                sink.compare(k, low);
+                if (workingArray[k] < p) {
+                    if (k != less) swap(workingArray, sink, k, less);
+                    less++;
+                } else {
+                    sink.compare(k, high);
+                    if (workingArray[k] > q) {
+                        while (k < great) {
+                            sink.compare(great, high);
+                            if (workingArray[great] <= q) break;
+                            great--;
+                        }
+                        swap(workingArray, sink, k, great);
+                        great--;
+                        sink.compare(k, low);
+                        if (workingArray[k] < p) {
+                            if (k != less) swap(workingArray, sink, k, less);
+                            less++;
+                        }
+                    }
+                }
+                k++;
+            }
+            less--;
+            great++;
+            if (less != low) swap(workingArray, sink, low, less);
+            if (great != high) swap(workingArray, sink, high, great);
+
+            sink.enterCall();
+            dualPivotSort(workingArray, sink, low, less - 1);
+            if (p < q) {
+                dualPivotSort(workingArray, sink, less + 1, great - 1);
+            }
+            dualPivotSort(workingArray, sink, great + 1, high);
+            sink.exitCall();
+        }
+    }
+
+    /**
+     * TimSort: finds natural runs (reversing descending ones), extends short
+     * runs to minRun with binary insertion, and merges runs off a stack that
+     * keeps their lengths balanced. Merges switch to galloping when one run keeps
+     * winning, so presorted input costs close to n comparisons.
+     */
+    private static class TimSortAlgorithm implements SortingAlgorithm {
+        @Override
+        public void sort(int[] array, StepSink sink) {
+            new TimSorter(array, sink).sort();
+        }
+    }
+
+    // Per-run state of TimSortAlgorithm: the run stack and the adaptive gallop threshold
+    private static final class TimSorter {
+        private static final int MIN_MERGE = 32;
+        private static final int MIN_GALLOP = 7;
+
+        private final int[] a;
+        private final StepSink sink;
+        private int minGallop = MIN_GALLOP;
+        // 49 runs cover any int-sized array given the stack invariants
+        private final int[] runBase = new int[49];
+        private final int[] runLen = new int[49];
+        private int stackSize;
+
+        TimSorter(int[] a, StepSink sink) {
+            this.a = a;
+            this.sink = sink;
+        }
+
+        void sort() {
+            int remaining = a.length;
+            if (remaining < 2) return;
+            int low = 0;
+            if (remaining < MIN_MERGE) {
+                int initRunLength = countRunAndMakeAscending(low, a.length);
+                binaryInsertionSort(low, a.length, low + initRunLength);
+                return;
             }
 
-            return steps;
+            int minRun = minRunLength(remaining);
+            do {
+                int runLength = countRunAndMakeAscending(low, low + remaining);
+                if (runLength < minRun) {
+                    int forced = Math.min(remaining, minRun);
+                    binaryInsertionSort(low, low + forced, low + runLength);
+                    runLength = forced;
+                }
+                runBase[stackSize] = low;
+                runLen[stackSize] = runLength;
+                stackSize++;
+                mergeCollapse();
+
+                low += runLength;
+                remaining -= runLength;
+            } while (remaining != 0);
+            mergeForceCollapse();
+        }
+
+        private static int minRunLength(int n) {
+            int r = 0;
+            while (n >= MIN_MERGE) {
+                r |= n & 1;
+                n >>= 1;
+            }
+            return n + r;
+        }
+
+        // Length of the run starting at low; a strictly descending run is reversed in place
+        private int countRunAndMakeAscending(int low, int high) {
+            int runHigh = low + 1;
+            if (runHigh == high) return 1;
+
+            sink.compare(runHigh, low);
+            if (a[runHigh++] < a[low]) {
+                while (runHigh < high) {
+                    sink.compare(runHigh, runHigh - 1);
+                    if (a[runHigh] >= a[runHigh - 1]) break;
+                    runHigh++;
+                }
+                for (int i = low, j = runHigh - 1; i < j; i++, j--) {
+                    swap(a, sink, i, j);
+                }
+            } else {
+                while (runHigh < high) {
+                    sink.compare(runHigh, runHigh - 1);
+                    if (a[runHigh] < a[runHigh - 1]) break;
+                    runHigh++;
+                }
+            }
+            return runHigh - low;
+        }
+
+        // Sorts [low, high) given that [low, start) is already sorted
+        private void binaryInsertionSort(int low, int high, int start) {
+            for (; start < high; start++) {
+                int pivot = a[start];
+                int left = low;
+                int right = start;
+                while (left < right) {
+                    int mid = (left + right) >>> 1;
+                    sink.compare(start, mid);
+                    if (pivot < a[mid]) {
+                        right = mid;
+                    } else {
+                        left = mid + 1;
+                    }
+                }
+                for (int i = start; i > left; i--) {
+                    write(i, a[i - 1]);
+                }
+                if (left != start) {
+                    write(left, pivot);
+                }
+            }
+        }
+
+        private void mergeCollapse() {
+            while (stackSize > 1) {
+                int n = stackSize - 2;
+                if (n > 0 && runLen[n - 1] <= runLen[n] + runLen[n + 1]
+                        || n > 1 && runLen[n - 2] <= runLen[n] + runLen[n - 1]) {
+                    if (runLen[n - 1] < runLen[n + 1]) n--;
+                } else if (runLen[n] > runLen[n + 1]) {
+                    break;
+                }
+                mergeAt(n);
+            }
+        }
+
+        private void mergeForceCollapse() {
+            while (stackSize > 1) {
+                int n = stackSize - 2;
+                if (n > 0 && runLen[n - 1] < runLen[n + 1]) n--;
+                mergeAt(n);
+            }
+        }
+
+        private void mergeAt(int i) {
+            int base1 = runBase[i];
+            int len1 = runLen[i];
+            int base2 = runBase[i + 1];
+            int len2 = runLen[i + 1];
+
+            runLen[i] = len1 + len2;
+            if (i == stackSize - 3) {
+                runBase[i + 1] = runBase[i + 2];
+                runLen[i + 1] = runLen[i + 2];
+            }
+            stackSize--;
+
+            // Elements of run1 below run2's first element are already in place
+            int k = gallopRight(a[base2], base2, a, base1, len1, 0, base1);
+            base1 += k;
+            len1 -= k;
+            if (len1 == 0) return;
+
+            // Elements of run2 above run1's last element are already in place
+            len2 = gallopLeft(a[base1 + len1 - 1], base1 + len1 - 1, a, base2, len2, len2 - 1, base2);
+            if (len2 == 0) return;
+
+            // The shorter run is copied out, so that is the merge's scratch space
+            long scratch = (long) Math.min(len1, len2) * Integer.BYTES;
+            sink.allocate(scratch);
+            if (len1 <= len2) {
+                mergeLo(base1, len1, base2, len2);
+            } else {
+                mergeHi(base1, len1, base2, len2);
+            }
+            sink.release(scratch);
+        }
+
+        // Merges with run1 copied out; fills the array from the left
+        private void mergeLo(int base1, int len1, int base2, int len2) {
+            int[] tmp = Arrays.copyOfRange(a, base1, base1 + len1);
+            int cursor1 = 0;
+            int cursor2 = base2;
+            int dest = base1;
+
+            write(dest++, a[cursor2++]);
+            if (--len2 == 0) {
+                copyForward(tmp, cursor1, dest, len1);
+                return;
+            }
+            if (len1 == 1) {
+                copyForward(a, cursor2, dest, len2);
+                write(dest + len2, tmp[cursor1]);
+                return;
+            }
+
+            int gallop = minGallop;
+            outer:
+            while (true) {
+                int count1 = 0;
+                int count2 = 0;
+
+                // One element at a time until a run wins `gallop` times in a row
+                do {
+                    sink.compare(cursor2, base1 + cursor1);
+                    if (a[cursor2] < tmp[cursor1]) {
+                        write(dest++, a[cursor2++]);
+                        count2++;
+                        count1 = 0;
+                        if (--len2 == 0) break outer;
+                    } else {
+                        write(dest++, tmp[cursor1++]);
+                        count1++;
+                        count2 = 0;
+                        if (--len1 == 1) break outer;
+                    }
+                } while ((count1 | count2) < gallop);
+
+                // Galloping: copy whole stretches found by exponential search
+                do {
+                    count1 = gallopRight(a[cursor2], cursor2, tmp, cursor1, len1, 0, base1 + cursor1);
+                    if (count1 != 0) {
+                        copyForward(tmp, cursor1, dest, count1);
+                        dest += count1;
+                        cursor1 += count1;
+                        len1 -= count1;
+                        if (len1 <= 1) break outer;
+                    }
+                    write(dest++, a[cursor2++]);
+                    if (--len2 == 0) break outer;
+
+                    count2 = gallopLeft(tmp[cursor1], base1 + cursor1, a, cursor2, len2, 0, cursor2);
+                    if (count2 != 0) {
+                        copyForward(a, cursor2, dest, count2);
+                        dest += count2;
+                        cursor2 += count2;
+                        len2 -= count2;
+                        if (len2 == 0) break outer;
+                    }
+                    write(dest++, tmp[cursor1++]);
+                    if (--len1 == 1) break outer;
+                    gallop--;
+                } while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+                if (gallop < 0) gallop = 0;
+                gallop += 2;
+            }
+            minGallop = Math.max(1, gallop);
+
+            if (len1 == 1) {
+                copyForward(a, cursor2, dest, len2);
+                write(dest + len2, tmp[cursor1]);
+            } else {
+                copyForward(tmp, cursor1, dest, len1);
+            }
+        }
+
+        // Mirror of mergeLo with run2 copied out; fills the array from the right
+        private void mergeHi(int base1, int len1, int base2, int len2) {
+            int[] tmp = Arrays.copyOfRange(a, base2, base2 + len2);
+            int cursor1 = base1 + len1 - 1;
+            int cursor2 = len2 - 1;
+            int dest = base2 + len2 - 1;
+
+            write(dest--, a[cursor1--]);
+            if (--len1 == 0) {
+                copyBackward(tmp, 0, dest - (len2 - 1), len2);
+                return;
+            }
+            if (len2 == 1) {
+                dest -= len1;
+                cursor1 -= len1;
+                copyBackward(a, cursor1 + 1, dest + 1, len1);
+                write(dest, tmp[cursor2]);
+                return;
+            }
+
+            int gallop = minGallop;
+            outer:
+            while (true) {
+                int count1 = 0;
+                int count2 = 0;
+
+                do {
+                    sink.compare(base2 + cursor2, cursor1);
+                    if (tmp[cursor2] < a[cursor1]) {
+                        write(dest--, a[cursor1--]);
+                        count1++;
+                        count2 = 0;
+                        if (--len1 == 0) break outer;
+                    } else {
+                        write(dest--, tmp[cursor2--]);
+                        count2++;
+                        count1 = 0;
+                        if (--len2 == 1) break outer;
+                    }
+                } while ((count1 | count2) < gallop);
+
+                do {
+                    count1 = len1 - gallopRight(tmp[cursor2], base2 + cursor2, a, base1, len1, len1 - 1, base1);
+                    if (count1 != 0) {
+                        dest -= count1;
+                        cursor1 -= count1;
+                        len1 -= count1;
+                        copyBackward(a, cursor1 + 1, dest + 1, count1);
+                        if (len1 == 0) break outer;
+                    }
+                    write(dest--, tmp[cursor2--]);
+                    if (--len2 == 1) break outer;
+
+                    count2 = len2 - gallopLeft(a[cursor1], cursor1, tmp, 0, len2, len2 - 1, base2);
+                    if (count2 != 0) {
+                        dest -= count2;
+                        cursor2 -= count2;
+                        len2 -= count2;
+                        copyBackward(tmp, cursor2 + 1, dest + 1, count2);
+                        if (len2 <= 1) break outer;
+                    }
+                    write(dest--, a[cursor1--]);
+                    if (--len1 == 0) break outer;
+                    gallop--;
+                } while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+                if (gallop < 0) gallop = 0;
+                gallop += 2;
+            }
+            minGallop = Math.max(1, gallop);
+
+            if (len2 == 1) {
+                dest -= len1;
+                cursor1 -= len1;
+                copyBackward(a, cursor1 + 1, dest + 1, len1);
+                write(dest, tmp[cursor2]);
+            } else {
+                copyBackward(tmp, 0, dest - (len2 - 1), len2);
+            }
+        }
+
+        /**
+         * Leftmost position in the sorted range run[base, base+len) where key could be
+         * inserted, searched outwards from hint. keyIndex and displayBase only label the
+         * recorded comparisons with array positions.
+         */
+        private int gallopLeft(int key, int keyIndex, int[] run, int base, int len, int hint, int displayBase) {
+            int lastOfs = 0;
+            int ofs = 1;
+            if (key > probe(run, base, hint, keyIndex, displayBase)) {
+                int maxOfs = len - hint;
+                while (ofs < maxOfs && key > probe(run, base, hint + ofs, keyIndex, displayBase)) {
+                    lastOfs = ofs;
+                    ofs = (ofs << 1) + 1;
+                    if (ofs <= 0) ofs = maxOfs;
+                }
+                if (ofs > maxOfs) ofs = maxOfs;
+                lastOfs += hint;
+                ofs += hint;
+            } else {
+                int maxOfs = hint + 1;
+                while (ofs < maxOfs && key <= probe(run, base, hint - ofs, keyIndex, displayBase)) {
+                    lastOfs = ofs;
+                    ofs = (ofs << 1) + 1;
+                    if (ofs <= 0) ofs = maxOfs;
+                }
+                if (ofs > maxOfs) ofs = maxOfs;
+                int previous = lastOfs;
+                lastOfs = hint - ofs;
+                ofs = hint - previous;
+            }
+
+            lastOfs++;
+            while (lastOfs < ofs) {
+                int m = lastOfs + ((ofs - lastOfs) >>> 1);
+                if (key > probe(run, base, m, keyIndex, displayBase)) {
+                    lastOfs = m + 1;
+                } else {
+                    ofs = m;
+                }
+            }
+            return ofs;
+        }
+
+        // Like gallopLeft, but returns the rightmost insertion position
+        private int gallopRight(int key, int keyIndex, int[] run, int base, int len, int hint, int displayBase) {
+            int lastOfs = 0;
+            int ofs = 1;
+            if (key < probe(run, base, hint, keyIndex, displayBase)) {
+                int maxOfs = hint + 1;
+                while (ofs < maxOfs && key < probe(run, base, hint - ofs, keyIndex, displayBase)) {
+                    lastOfs = ofs;
+                    ofs = (ofs << 1) + 1;
+                    if (ofs <= 0) ofs = maxOfs;
+                }
+                if (ofs > maxOfs) ofs = maxOfs;
+                int previous = lastOfs;
+                lastOfs = hint - ofs;
+                ofs = hint - previous;
+            } else {
+                int maxOfs = len - hint;
+                while (ofs < maxOfs && key >= probe(run, base, hint + ofs, keyIndex, displayBase)) {
+                    lastOfs = ofs;
+                    ofs = (ofs << 1) + 1;
+                    if (ofs <= 0) ofs = maxOfs;
+                }
+                if (ofs > maxOfs) ofs = maxOfs;
+                lastOfs += hint;
+                ofs += hint;
+            }
+
+            lastOfs++;
+            while (lastOfs < ofs) {
+                int m = lastOfs + ((ofs - lastOfs) >>> 1);
+                if (key < probe(run, base, m, keyIndex, displayBase)) {
+                    ofs = m;
+                } else {
+                    lastOfs = m + 1;
+                }
+            }
+            return ofs;
+        }
+
+        private int probe(int[] run, int base, int offset, int keyIndex, int displayBase) {
+            sink.compare(keyIndex, displayBase + offset);
+            return run[base + offset];
+        }
+
+        private void write(int index, int value) {
+            sink.set(index, value);
+            a[index] = value;
+        }
+
+        private void copyForward(int[] source, int from, int dest, int length) {
+            sink.setRange(dest, source, from, length);
+            System.arraycopy(source, from, a, dest, length);
+        }
+
+        private void copyBackward(int[] source, int from, int dest, int length) {
+            for (int i = length - 1; i >= 0; i--) {
+                write(dest + i, source[from + i]);
+            }
+        }
+    }
+
+    /**
+     * Pattern-defeating quicksort (pdqsort) with BlockQuicksort partitioning.
+     * Comparisons against the pivot only record offsets into two small blocks,
+     * adding 0 or 1 instead of branching, and the misplaced elements are then
+     * swapped pairwise, so random data costs almost no branch mispredictions.
+     * Sorted or already-partitioned ranges are detected and finished with a
+     * bounded insertion sort, runs of equal keys are split off in one pass,
+     * and unbalanced partitions shuffle a few elements before retrying; after
+     * log n bad partitions the range falls back to heap sort.
+     */
+    private static class PdqSortAlgorithm implements SortingAlgorithm {
+        private final IntroSortAlgorithm introSort = new IntroSortAlgorithm();
+
+        @Override
+        public void sort(int[] array, StepSink sink) {
+            if (array.length < 2) return;
+            new PdqSorter(array, sink, introSort).sort(0, array.length);
+        }
+    }
+
+    // Per-run state of PdqSortAlgorithm: the array, the sink and the two offset blocks
+    private static final class PdqSorter {
+        private static final int INSERTION_SORT_THRESHOLD = 24;
+        private static final int NINTHER_THRESHOLD = 128;
+        private static final int PARTIAL_INSERTION_SORT_LIMIT = 8;
+        private static final int BLOCK_SIZE = 64;
+
+        private final int[] a;
+        private final StepSink sink;
+        private final IntroSortAlgorithm heapSortFallback;
+        private final int[] offsetsLeft = new int[BLOCK_SIZE];
+        private final int[] offsetsRight = new int[BLOCK_SIZE];
+
+        PdqSorter(int[] a, StepSink sink, IntroSortAlgorithm heapSortFallback) {
+            this.a = a;
+            this.sink = sink;
+            this.heapSortFallback = heapSortFallback;
+        }
+
+        // Sorts [begin, end) of the array
+        void sort(int begin, int end) {
+            sink.allocate(2L * BLOCK_SIZE * Integer.BYTES);
+            sortLoop(begin, end, Integer.SIZE - Integer.numberOfLeadingZeros(end - begin), true);
+            sink.release(2L * BLOCK_SIZE * Integer.BYTES);
+        }
+
+        // Sorts [begin, end); leftmost is false when a[begin - 1] is a pivot no larger than the range
+        private void sortLoop(int begin, int end, int badAllowed, boolean leftmost) {
+            sink.enterCall();
+            while (true) {
+                int size = end - begin;
+                if (size < INSERTION_SORT_THRESHOLD) {
+                    insertionSort(a, sink, begin, end - 1);
+                    break;
+                }
+
+                // Median of three, or Tukey's ninther on large ranges, moved to begin
+                int half = size / 2;
+                if (size > NINTHER_THRESHOLD) {
+                    sort3(begin, begin + half, end - 1);
+                    sort3(begin + 1, begin + half - 1, end - 2);
+                    sort3(begin + 2, begin + half + 1, end - 3);
+                    sort3(begin + half - 1, begin + half, begin + half + 1);
+                    swap(a, sink, begin, begin + half);
+                } else {
+                    sort3(begin + half, begin, end - 1);
+                }
+
+                // A pivot equal to the one before this range means a run of equal keys: split them off
+                if (!leftmost) {
+                    sink.compare(begin - 1, begin);
+                    if (a[begin - 1] >= a[begin]) {
+                        begin = partitionLeft(begin, end) + 1;
+                        continue;
+                    }
+                }
+
+                int result = partitionRight(begin, end);
+                boolean alreadyPartitioned = result < 0;
+                int pivotPos = alreadyPartitioned ? ~result : result;
+                int leftSize = pivotPos - begin;
+                int rightSize = end - (pivotPos + 1);
+
+                if (leftSize < size / 8 || rightSize < size / 8) {
+                    // Bad split: after too many, give up on quicksort for this range
+                    if (--badAllowed == 0) {
+                        heapSortFallback.heapSort(a, sink, begin, end - 1);
+                        break;
+                    }
+                    breakPatterns(begin, pivotPos, leftSize);
+                    breakPatterns(pivotPos + 1, end, rightSize);
+                } else if (alreadyPartitioned
+                        && partialInsertionSort(begin, pivotPos) && partialInsertionSort(pivotPos + 1, end)) {
+                    break;
+                }
+
+                sortLoop(begin, pivotPos, badAllowed, leftmost);
+                begin = pivotPos + 1;
+                leftmost = false;
+            }
+            sink.exitCall();
+        }
+
+        // Swaps a few elements around the quarter points so the next pivot lands elsewhere
+        private void breakPatterns(int begin, int end, int size) {
+            if (size < INSERTION_SORT_THRESHOLD) return;
+            int quarter = size / 4;
+            swap(a, sink, begin, begin + quarter);
+            swap(a, sink, end - 1, end - quarter);
+            if (size > NINTHER_THRESHOLD) {
+                swap(a, sink, begin + 1, begin + quarter + 1);
+                swap(a, sink, begin + 2, begin + quarter + 2);
+                swap(a, sink, end - 2, end - quarter - 1);
+                swap(a, sink, end - 3, end - quarter - 2);
+            }
+        }
+
+        private void sort2(int i, int j) {
+            sink.compare(j, i);
+            if (a[j] < a[i]) swap(a, sink, i, j);
+        }
+
+        private void sort3(int i, int j, int k) {
+            sort2(i, j);
+            sort2(j, k);
+            sort2(i, j);
+        }
+
+        // 1 if value < pivot, else 0, without a branch
+        private static int less(int value, int pivot) {
+            return (int) (((long) value - pivot) >>> 63);
+        }
+
+        /**
+         * Partitions [begin, end) around a[begin] into elements less than the
+         * pivot and elements not less. Returns the pivot's final position,
+         * negated minus one ({@code ~pos}) if no element had to move.
+         */
+        private int partitionRight(int begin, int end) {
+            int pivot = a[begin];
+            int first = begin;
+            int last = end;
+
+            // The median-of-three guarantees a stop on both sides
+            do {
+                first++;
+                sink.compare(first, begin);
+            } while (a[first] < pivot);
+            if (first - 1 == begin) {
+                while (first < last) {
+                    last--;
+                    sink.compare(last, begin);
+                    if (a[last] < pivot) break;
+                }
+            } else {
+                do {
+                    last--;
+                    sink.compare(last, begin);
+                } while (a[last] >= pivot);
+            }
+
+            boolean alreadyPartitioned = first >= last;
+            if (!alreadyPartitioned) {
+                swap(a, sink, first, last);
+                first++;
+
+                // Offsets from first of elements >= pivot, and from last of elements < pivot
+                int numLeft = 0, numRight = 0, startLeft = 0, startRight = 0;
+                while (last - first > 2 * BLOCK_SIZE) {
+                    if (numLeft == 0) {
+                        startLeft = 0;
+                        for (int i = 0; i < BLOCK_SIZE; i++) {
+                            offsetsLeft[numLeft] = i;
+                            sink.compare(first + i, begin);
+                            numLeft += 1 - less(a[first + i], pivot);
+                        }
+                    }
+                    if (numRight == 0) {
+                        startRight = 0;
+                        for (int i = 1; i <= BLOCK_SIZE; i++) {
+                            offsetsRight[numRight] = i;
+                            sink.compare(last - i, begin);
+                            numRight += less(a[last - i], pivot);
+                        }
+                    }
+                    int num = Math.min(numLeft, numRight);
+                    swapOffsets(first, last, startLeft, startRight, num);
+                    numLeft -= num;
+                    numRight -= num;
+                    startLeft += num;
+                    startRight += num;
+                    if (numLeft == 0) first += BLOCK_SIZE;
+                    if (numRight == 0) last -= BLOCK_SIZE;
+                }
+
+                // Fewer than three blocks are left: split the unknown part between the blocks
+                int leftSize, rightSize;
+                int unknown = (last - first) - (numLeft != 0 || numRight != 0 ? BLOCK_SIZE : 0);
+                if (numRight != 0) {
+                    leftSize = unknown;
+                    rightSize = BLOCK_SIZE;
+                } else if (numLeft != 0) {
+                    leftSize = BLOCK_SIZE;
+                    rightSize = unknown;
+                } else {
+                    leftSize = unknown / 2;
+                    rightSize = unknown - leftSize;
+                }
+                if (unknown != 0 && numLeft == 0) {
+                    startLeft = 0;
+                    for (int i = 0; i < leftSize; i++) {
+                        offsetsLeft[numLeft] = i;
+                        sink.compare(first + i, begin);
+                        numLeft += 1 - less(a[first + i], pivot);
+                    }
+                }
+                if (unknown != 0 && numRight == 0) {
+                    startRight = 0;
+                    for (int i = 1; i <= rightSize; i++) {
+                        offsetsRight[numRight] = i;
+                        sink.compare(last - i, begin);
+                        numRight += less(a[last - i], pivot);
+                    }
+                }
+                int num = Math.min(numLeft, numRight);
+                swapOffsets(first, last, startLeft, startRight, num);
+                numLeft -= num;
+                numRight -= num;
+                startLeft += num;
+                startRight += num;
+                if (numLeft == 0) first += leftSize;
+                if (numRight == 0) last -= rightSize;
+
+                // Only one side has misplaced elements left; move them to the boundary
+                if (numLeft != 0) {
+                    while (numLeft-- > 0) {
+                        swap(a, sink, first + offsetsLeft[startLeft + numLeft], --last);
+                    }
+                    first = last;
+                }
+                if (numRight != 0) {
+                    while (numRight-- > 0) {
+                        swap(a, sink, last - offsetsRight[startRight + numRight], first++);
+                    }
+                    last = first;
+                }
+            }
+
+            int pivotPos = first - 1;
+            swap(a, sink, begin, pivotPos);
+            return alreadyPartitioned ? ~pivotPos : pivotPos;
+        }
+
+        private void swapOffsets(int first, int last, int startLeft, int startRight, int num) {
+            for (int i = 0; i < num; i++) {
+                swap(a, sink, first + offsetsLeft[startLeft + i], last - offsetsRight[startRight + i]);
+            }
+        }
+
+        /**
+         * Partitions [begin, end) around a[begin] into elements equal to the
+         * pivot (left) and greater (right). Used when the pivot equals its
+         * predecessor, so nothing in the range is smaller. Returns the pivot's position.
+         */
+        private int partitionLeft(int begin, int end) {
+            int pivot = a[begin];
+            int first = begin;
+            int last = end;
+
+            do {
+                last--;
+                sink.compare(begin, last);
+            } while (pivot < a[last]);
+            if (last + 1 == end) {
+                while (first < last) {
+                    first++;
+                    sink.compare(begin, first);
+                    if (pivot < a[first]) break;
+                }
+            } else {
+                do {
+                    first++;
+                    sink.compare(begin, first);
+                } while (pivot >= a[first]);
+            }
+
+            while (first < last) {
+                swap(a, sink, first, last);
+                do {
+                    last--;
+                    sink.compare(begin, last);
+                } while (pivot < a[last]);
+                do {
+                    first++;
+                    sink.compare(begin, first);
+                } while (pivot >= a[first]);
+            }
+
+            swap(a, sink, begin, last);
+            return last;
+        }
+
+        // Insertion sort that gives up once it has moved more than a few elements
+        private boolean partialInsertionSort(int begin, int end) {
+            int moves = 0;
+            for (int cur = begin + 1; cur < end; cur++) {
+                int j = cur;
+                while (j > begin) {
+                    sink.compare(j - 1, j);
+                    if (a[j - 1] <= a[j]) break;
+                    swap(a, sink, j - 1, j);
+                    j--;
+                }
+                moves += cur - j;
+                if (moves > PARTIAL_INSERTION_SORT_LIMIT) return false;
+            }
+            return true;
+        }
+    }
+
+    // ==================== PARALLEL ALGORITHMS ====================
+
+    /** Parallel sorts share the cutoff below which a worker stops splitting its work. */
+    private abstract static class ParallelSortingAlgorithm implements SortingAlgorithm {
+        volatile int sequentialCutoff = DEFAULT_SEQUENTIAL_CUTOFF;
+    }
+
+    /**
+     * Base for the fork/join sorts. Every task records into its own sink forked
+     * from its parent's, and joins its children back once both have finished.
+     * The root task records straight into the caller's sink, so a sink that
+     * reports progress sees the run as it happens and the finished trace is
+     * not copied once more at the end. invoke() hands the sink to the pool
+     * and back, so only one thread uses it at a time.
+     */
+    private abstract static class ForkJoinSortingAlgorithm extends ParallelSortingAlgorithm {
+
+        @Override
+        public void sort(int[] array, StepSink sink) {
+            if (array.length < 2) return;
+            ForkJoinPool.commonPool().invoke(createTask(array, sink, 0, array.length - 1, sequentialCutoff));
+        }
+
+        abstract RecursiveAction createTask(int[] array, StepSink sink, int left, int right, int cutoff);
+    }
+
+    private static class ParallelMergeSortAlgorithm extends ForkJoinSortingAlgorithm {
+        private final MergeSortAlgorithm sequential = new MergeSortAlgorithm();
+
+        @Override
+        RecursiveAction createTask(int[] array, StepSink sink, int left, int right, int cutoff) {
+            return new MergeTask(array, sink, left, right, cutoff);
+        }
+
+        private class MergeTask extends RecursiveAction {
+            private final int[] workingArray;
+            private final StepSink sink;
+            private final int left, right, cutoff;
+
+            MergeTask(int[] workingArray, StepSink sink, int left, int right, int cutoff) {
+                this.workingArray = workingArray;
+                this.sink = sink;
+                this.left = left;
+                this.right = right;
+                this.cutoff = cutoff;
+            }
+
+            @Override
+            protected void compute() {
+                sink.lane(left, right + 1);
+                if (right - left + 1 <= cutoff) {
+                    sequential.mergeSort(workingArray, sink, left, right);
+                    return;
+                }
+                sink.enterCall();
+
+                int mid = left + (right - left) / 2;
+                MergeTask lower = new MergeTask(workingArray, sink.fork(), left, mid, cutoff);
+                MergeTask upper = new MergeTask(workingArray, sink.fork(), mid + 1, right, cutoff);
+                invokeAll(lower, upper);
+                sink.join(lower.sink, upper.sink);
+
+                // Both halves are back in this worker's lane for the final merge
+                sink.lane(left, right + 1);
+                sequential.merge(workingArray, sink, left, mid, right);
+                sink.exitCall();
+            }
+        }
+    }
+
+    /**
+     * Quick Sort on the fork/join pool. The pivot is a median of three, and
+     * keys equal to it are gathered next to it, so sorted, reversed and
+     * all-equal input still split evenly. Each task forks only the smaller
+     * side and keeps the larger one, which bounds fork nesting by log2(n) and
+     * lets every step be copied up through at most that many joins. Ranges at
+     * or below the cutoff are finished in the task without forking. As in
+     * Intro Sort, a range still unsorted after 2·log2(n) partitions is heap
+     * sorted, so patterns that defeat the median of three, such as organ
+     * pipes, stay O(n log n).
+     */
+    private static class ParallelQuickSortAlgorithm extends ForkJoinSortingAlgorithm {
+        private final QuickSortAlgorithm sequential = new QuickSortAlgorithm();
+        private final IntroSortAlgorithm pivotChooser = new IntroSortAlgorithm();
+
+        @Override
+        RecursiveAction createTask(int[] array, StepSink sink, int left, int right, int cutoff) {
+            return new QuickTask(array, sink, left, right, cutoff,
+                    2 * (int) SortingAlgorithm.log2(right - left + 1));
+        }
+
+        // Sequential quick sort with the same pivot choice, recursing into the smaller side
+        private void quickSort(int[] workingArray, StepSink sink, int low, int high, int depthLimit) {
+            sink.enterCall();
+            while (low < high) {
+                if (depthLimit-- == 0) {
+                    pivotChooser.heapSort(workingArray, sink, low, high);
+                    break;
+                }
+                long bounds = partition(workingArray, sink, low, high);
+                int lt = (int) (bounds >> 32), gt = (int) bounds;
+                if (lt - low < high - gt) {
+                    quickSort(workingArray, sink, low, lt - 1, depthLimit);
+                    low = gt + 1;
+                } else {
+                    quickSort(workingArray, sink, gt + 1, high, depthLimit);
+                    high = lt - 1;
+                }
+            }
+            sink.exitCall();
+        }
+
+        /**
+         * Partitions around a median-of-three pivot into {@code < pivot},
+         * {@code == pivot} and {@code > pivot}. Returns the bounds of the equal
+         * run packed as {@code (first << 32) | last}.
+         */
+        private long partition(int[] workingArray, StepSink sink, int low, int high) {
+            if (high - low >= 2) {
+                pivotChooser.medianOfThreeToHigh(workingArray, sink, low, high);
+            }
+            int pivotIndex = sequential.partition(workingArray, sink, low, high);
+
+            // Everything right of the pivot is >= it; pull the equal keys up against it
+            int pivot = workingArray[pivotIndex];
+            int last = pivotIndex;
+            for (int j = pivotIndex + 1; j <= high; j++) {
+                sink.compare(j, pivotIndex);
+                if (workingArray[j] == pivot) {
+                    last++;
+                    if (last != j) {
+                        sink.swap(last, j);
+                        int temp = workingArray[last];
+                        workingArray[last] = workingArray[j];
+                        workingArray[j] = temp;
+                    }
+                }
+            }
+            return ((long) pivotIndex << 32) | (last & 0xFFFFFFFFL);
+        }
+
+        private class QuickTask extends RecursiveAction {
+            private final int[] workingArray;
+            private final StepSink sink;
+            private final int low, high, cutoff, depthLimit;
+
+            QuickTask(int[] workingArray, StepSink sink, int low, int high, int cutoff, int depthLimit) {
+                this.workingArray = workingArray;
+                this.sink = sink;
+                this.low = low;
+                this.high = high;
+                this.cutoff = cutoff;
+                this.depthLimit = depthLimit;
+            }
+
+            @Override
+            protected void compute() {
+                if (low >= high) return;
+                sink.lane(low, high + 1);
+                sink.enterCall();
+                List<QuickTask> forked = new ArrayList<>();
+                int lo = low, hi = high;
+                int depth = depthLimit;
+                while (hi - lo + 1 > cutoff && depth > 0) {
+                    depth--;
+                    // Partition here, then hand the smaller side to another worker
+                    long bounds = partition(workingArray, sink, lo, hi);
+                    int lt = (int) (bounds >> 32), gt = (int) bounds;
+                    QuickTask smaller;
+                    if (lt - lo < hi - gt) {
+                        smaller = new QuickTask(workingArray, sink.fork(), lo, lt - 1, cutoff, depth);
+                        lo = gt + 1;
+                    } else {
+                        smaller = new QuickTask(workingArray, sink.fork(), gt + 1, hi, cutoff, depth);
+                        hi = lt - 1;
+                    }
+                    smaller.fork();
+                    forked.add(smaller);
+                    sink.lane(lo, hi + 1);
+                }
+                // Out of budget this heap sorts what is left; otherwise it is at most the cutoff long
+                quickSort(workingArray, sink, lo, hi, depth);
+
+                StepSink[] workers = new StepSink[forked.size()];
+                for (int i = 0; i < workers.length; i++) {
+                    QuickTask task = forked.get(i);
+                    task.join();
+                    workers[i] = task.sink;
+                }
+                if (workers.length > 0) {
+                    sink.join(workers);
+                }
+                sink.exitCall();
+            }
+        }
+    }
+
+    /**
+     * Sample sort, which splits once into many independent buckets instead of
+     * recursively into two, so no phase waits on a sequential merge or
+     * partition:
+     * <ol>
+     * <li>A seeded random sample of {@value #OVERSAMPLING} keys per bucket is
+     * sorted and split evenly; the key at each split becomes a splitter.</li>
+     * <li>Chunks of the array are classified in parallel, each counting its
+     * keys per bucket into its own histogram. Splitters sit in a search tree
+     * laid out level by level, so finding a key's bucket is log2(buckets)
+     * steps without a data-dependent branch. Keys equal to a splitter get a
+     * bucket of their own, so heavy duplicates cannot swamp one bucket.</li>
+     * <li>Prefix sums over the histograms give every chunk its own write
+     * position in every bucket, and the chunks scatter their keys back into
+     * the array in parallel.</li>
+     * <li>Buckets are sorted independently with pattern-defeating quicksort.</li>
+     * </ol>
+     * There are about {@value #BUCKETS_PER_WORKER} buckets per pool thread,
+     * but no more than leave each at least the sequential cutoff long, so
+     * every thread stays busy while the bucket sizes even out. The bucket
+     * sizes are reported to the sink as a {@link LoadBalance}.
+     */
+    private static class ParallelSampleSortAlgorithm extends ParallelSortingAlgorithm {
+        private static final int OVERSAMPLING = 64;
+        private static final int BUCKETS_PER_WORKER = 4;
+        private static final int MAX_BUCKETS = 1 << 10;
+        private static final long SAMPLE_SEED = 0x5A3D1EL;
+
+        private final IntroSortAlgorithm heapSortFallback = new IntroSortAlgorithm();
+
+        @Override
+        public long estimateSteps(int n) {
+            // One read to classify and one write to scatter per key, then the bucket sorts
+            return 2L * n + 2L * n * SortingAlgorithm.log2(n);
+        }
+
+        @Override
+        public void sort(int[] array, StepSink sink) {
+            int n = array.length;
+            if (n < 2) return;
+            int parallelism = ForkJoinPool.getCommonPoolParallelism();
+            int maxLeaves = Integer.highestOneBit(Math.min(MAX_BUCKETS,
+                    Math.min(parallelism * BUCKETS_PER_WORKER, n / sequentialCutoff)));
+            if (maxLeaves < 2) {
+                new PdqSorter(array, sink, heapSortFallback).sort(0, n);
+                sink.loadBalance(new LoadBalance(new int[]{n}, 0));
+                return;
+            }
+
+            // Phase 1: splitters from a sorted sample, duplicates dropped
+            SplittableRandom random = new SplittableRandom(SAMPLE_SEED);
+            int[] sample = new int[Math.min(maxLeaves * OVERSAMPLING, n)];
+            for (int i = 0; i < sample.length; i++) {
+                int index = random.nextInt(n);
+                sample[i] = array[index];
+                sink.highlight(index);
+            }
+            Arrays.sort(sample);
+            int[] splitters = new int[maxLeaves - 1];
+            int distinct = 0;
+            for (int i = 1; i < maxLeaves; i++) {
+                int splitter = sample[(int) ((long) i * sample.length / maxLeaves)];
+                if (distinct == 0 || splitter != splitters[distinct - 1]) {
+                    splitters[distinct++] = splitter;
+                }
+            }
+            // Fewer distinct splitters need fewer leaves; spare slots hold the largest int,
+            // so only the keys equal to it go past the last real bucket
+            int leaves = Integer.highestOneBit(distinct) << 1;
+            splitters = Arrays.copyOf(splitters, leaves - 1);
+            Arrays.fill(splitters, distinct, leaves - 1, Integer.MAX_VALUE);
+            int[] tree = new int[leaves];
+            buildTree(splitters, tree, 1, new int[1]);
+            // bounds[j] is the largest splitter a key in leaf j can equal
+            int[] bounds = new int[leaves];
+            bounds[0] = splitters[0];
+            System.arraycopy(splitters, 0, bounds, 1, leaves - 1);
+
+            // Bucket 2j holds the keys strictly between splitters j-1 and j, bucket 2j-1 the keys equal to splitter j-1
+            int buckets = 2 * leaves;
+            int log = Integer.numberOfTrailingZeros(leaves);
+            int chunks = Math.max(1, Math.min(parallelism * BUCKETS_PER_WORKER, n / sequentialCutoff));
+            long scratch = (long) n * (Integer.BYTES + Short.BYTES) + (long) chunks * buckets * Integer.BYTES;
+            sink.allocate(scratch);
+            int[] buffer = new int[n];
+            short[] oracle = new short[n];
+            int[][] histograms = new int[chunks][buckets];
+
+            // Phase 2: classify each chunk in parallel, copying it aside for the scatter
+            StepSink[] workers = forkAll(sink, chunks);
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                StepSink worker = workers[c];
+                int from = chunkStart(n, chunks, c);
+                int to = chunkStart(n, chunks, c + 1);
+                int[] histogram = histograms[c];
+                worker.lane(from, to);
+                for (int i = from; i < to; i++) {
+                    int value = array[i];
+                    int j = 1;
+                    for (int level = 0; level < log; level++) {
+                        // Right child when value >= tree[j], computed without a branch
+                        j = 2 * j + (int) (((long) tree[j] - value - 1) >>> 63);
+                    }
+                    j -= leaves;
+                    int bucket = value == bounds[j] && j > 0 ? 2 * j - 1 : 2 * j;
+                    oracle[i] = (short) bucket;
+                    histogram[bucket]++;
+                    buffer[i] = value;
+                    worker.highlight(i);
+                }
+            });
+            sink.join(workers);
+
+            // Phase 3: every chunk's write position in every bucket, then a parallel scatter
+            int[] bucketStarts = new int[buckets + 1];
+            int[][] offsets = new int[chunks][buckets];
+            int position = 0;
+            for (int b = 0; b < buckets; b++) {
+                bucketStarts[b] = position;
+                for (int c = 0; c < chunks; c++) {
+                    offsets[c][b] = position;
+                    position += histograms[c][b];
+                }
+            }
+            bucketStarts[buckets] = n;
+            StepSink[] scatterers = forkAll(sink, chunks);
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                StepSink worker = scatterers[c];
+                int[] next = offsets[c];
+                int from = chunkStart(n, chunks, c);
+                int to = chunkStart(n, chunks, c + 1);
+                worker.lane(from, to);
+                for (int i = from; i < to; i++) {
+                    int target = next[oracle[i]]++;
+                    array[target] = buffer[i];
+                    worker.set(target, buffer[i]);
+                }
+            });
+            sink.join(scatterers);
+            sink.release(scratch);
+
+            // Phase 4: sort the buckets independently; equality buckets are already sorted
+            StepSink[] sorters = forkAll(sink, leaves);
+            IntStream.range(0, leaves).parallel().forEach(j -> {
+                int from = bucketStarts[2 * j];
+                int to = bucketStarts[2 * j + 1];
+                sorters[j].lane(from, to);
+                if (to - from > 1) {
+                    new PdqSorter(array, sorters[j], heapSortFallback).sort(from, to);
+                }
+            });
+            sink.join(sorters);
+
+            // Leaves past the distinct splitters stay empty and are left out
+            int[] sizes = new int[distinct + 1];
+            for (int j = 0; j <= distinct; j++) {
+                sizes[j] = bucketStarts[2 * j + 1] - bucketStarts[2 * j];
+            }
+            sink.loadBalance(new LoadBalance(sizes, n - Arrays.stream(sizes).asLongStream().sum()));
+        }
+
+        // Fills tree[node..] in order from the sorted splitters, so tree[1] is the median
+        private static void buildTree(int[] splitters, int[] tree, int node, int[] next) {
+            if (node >= tree.length) return;
+            buildTree(splitters, tree, 2 * node, next);
+            tree[node] = splitters[next[0]++];
+            buildTree(splitters, tree, 2 * node + 1, next);
+        }
+
+        private static int chunkStart(int n, int chunks, int c) {
+            return (int) ((long) n * c / chunks);
+        }
+
+        private static StepSink[] forkAll(StepSink sink, int count) {
+            StepSink[] workers = new StepSink[count];
+            for (int i = 0; i < count; i++) {
+                workers[i] = sink.fork();
+            }
+            return workers;
+        }
+    }
+
+    /**
+     * Byte-wise in-place MSD radix sort; buckets above the sequential cutoff
+     * are sorted by separate fork/join workers. See {@link AmericanFlagSort}.
+     */
+    private static class AmericanFlagSortAlgorithm extends ParallelSortingAlgorithm {
+        @Override
+        public long estimateSteps(int n) {
+            // A counting pass and up to one swap per element for each byte, at most four bytes
+            return 2L * n * Math.min(Integer.BYTES, SortingAlgorithm.log2(n) / 8 + 2);
+        }
+
+        @Override
+        public void sort(int[] array, StepSink sink) {
+            AmericanFlagSort.sort(array, sink, sequentialCutoff);
+        }
+    }
+
+    // ==================== SORTING NETWORKS ====================
+
+    /**
+     * Base for the sorting networks: a fixed sequence of comparator layers that
+     * does not depend on the data. Comparators of one layer touch disjoint
+     * elements, so each layer is recorded as one parallel group, and layers
+     * with more comparators than the sequential cutoff are split across the
+     * fork/join pool. Every comparator puts the smaller value at the lower index.
+     */
+    private abstract static class SortingNetworkAlgorithm extends ParallelSortingAlgorithm {
+
+        @Override
+        public long estimateSteps(int n) {
+            // About n/2 comparators in each of log n (log n + 1) / 2 layers, half of them swapping
+            long log = SortingAlgorithm.log2(n);
+            long layers = log * (log + 1) / 2;
+            return n * layers * 3 / 4 + layers;
+        }
+
+        @Override
+        public void sort(int[] array, StepSink sink) {
+            int n = array.length;
+            if (n < 2) return;
+            int[] lows = new int[n / 2];
+            int[] highs = new int[n / 2];
+            long bytes = 2L * lows.length * Integer.BYTES;
+            sink.allocate(bytes);
+            int cutoff = sequentialCutoff;
+            forEachLayer(n, lows, highs, count -> runLayer(array, sink, lows, highs, count, cutoff));
+            sink.release(bytes);
+        }
+
+        /** Fills lows/highs with the comparators of one layer at a time and passes on their count. */
+        abstract void forEachLayer(int n, int[] lows, int[] highs, IntConsumer layer);
+
+        private void runLayer(int[] array, StepSink sink, int[] lows, int[] highs, int count, int cutoff) {
+            LayerTask task = new LayerTask(array, sink.fork(), lows, highs, 0, count, cutoff);
+            if (count <= cutoff) {
+                task.compute();
+            } else {
+                ForkJoinPool.commonPool().invoke(task);
+            }
+            sink.joinGroup(task.sink);
+        }
+
+        // Applies comparators [from, to) of the current layer, splitting until a share fits the cutoff
+        private static class LayerTask extends RecursiveAction {
+            private final int[] workingArray;
+            private final StepSink sink;
+            private final int[] lows, highs;
+            private final int from, to, cutoff;
+
+            LayerTask(int[] workingArray, StepSink sink, int[] lows, int[] highs, int from, int to, int cutoff) {
+                this.workingArray = workingArray;
+                this.sink = sink;
+                this.lows = lows;
+                this.highs = highs;
+                this.from = from;
+                this.to = to;
+                this.cutoff = cutoff;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= cutoff) {
+                    for (int c = from; c < to; c++) {
+                        int low = lows[c];
+                        int high = highs[c];
+                        sink.compare(low, high);
+                        if (workingArray[low] > workingArray[high]) {
+                            int temp = workingArray[low];
+                            workingArray[low] = workingArray[high];
+                            workingArray[high] = temp;
+                            sink.swap(low, high);
+                        }
+                    }
+                    return;
+                }
+                int mid = (from + to) >>> 1;
+                LayerTask lower = new LayerTask(workingArray, sink.fork(), lows, highs, from, mid, cutoff);
+                LayerTask upper = new LayerTask(workingArray, sink.fork(), lows, highs, mid, to, cutoff);
+                invokeAll(lower, upper);
+                sink.join(lower.sink, upper.sink);
+            }
+        }
+    }
+
+    private static class BitonicSortAlgorithm extends SortingNetworkAlgorithm {
+        @Override
+        void forEachLayer(int n, int[] lows, int[] highs, IntConsumer layer) {
+            // Padded to a power of two; comparators reaching past n would only meet +infinity, so they are dropped
+            int size = Integer.highestOneBit(n - 1) << 1;
+            for (int block = 2; block <= size; block <<= 1) {
+                for (int distance = block >> 1; distance > 0; distance >>= 1) {
+                    int count = 0;
+                    for (int i = 0; i < n; i++) {
+                        // The first layer of each merge compares mirrored positions, which keeps all comparators ascending
+                        int partner = distance == block >> 1 ? i ^ (block - 1) : i ^ distance;
+                        if (partner > i && partner < n) {
+                            lows[count] = i;
+                            highs[count] = partner;
+                            count++;
+                        }
+                    }
+                    if (count > 0) layer.accept(count);
+                }
+            }
+        }
+    }
+
+    private static class OddEvenMergeSortAlgorithm extends SortingNetworkAlgorithm {
+        @Override
+        void forEachLayer(int n, int[] lows, int[] highs, IntConsumer layer) {
+            // Batcher's network: merge sorted blocks of p, comparing elements k apart
+            for (int p = 1; p < n; p <<= 1) {
+                for (int k = p; k >= 1; k >>= 1) {
+                    int count = 0;
+                    for (int j = k % p; j + k < n; j += 2 * k) {
+                        for (int i = 0; i < k && i + j + k < n; i++) {
+                            // Only pairs inside the two blocks currently being merged
+                            if ((i + j) / (2 * p) == (i + j + k) / (2 * p)) {
+                                lows[count] = i + j;
+                                highs[count] = i + j + k;
+                                count++;
+                            }
+                        }
+                    }
+                    if (count > 0) layer.accept(count);
+                }
+            }
+        }
+    }
+
+    // ==================== SELECTION ====================
+
+    // Quickselect for the median: afterwards the middle slot is final, smaller keys left, larger right
+    private static class QuickselectAlgorithm implements SortingAlgorithm {
+        @Override
+        public long estimateSteps(int n) {
+            return 4L * n;
+        }
+
+        @Override
+        public void sort(int[] array, StepSink sink) {
+            if (array.length < 2) return;
+            SelectionEngine.select(array, array.length / 2, sink);
+        }
+    }
+
+    // Heap partial sort of the smallest quarter into the front of the array
+    private static class PartialHeapSortAlgorithm implements SortingAlgorithm {
+        @Override
+        public long estimateSteps(int n) {
+            return 2L * n * SortingAlgorithm.log2(Math.max(2, n / 4));
+        }
+
+        @Override
+        public void sort(int[] array, StepSink sink) {
+            SelectionEngine.partialSort(array, Math.max(1, array.length / 4), sink);
         }
     }
 }
@@ -0,0 +1,284 @@
+package com.simulator;
+
+import java.util.Arrays;
+
+/**
+ * Compact, append-only record of sorting steps.
+ * Each step is packed into a single long:
+ * <pre>
+ *   bits 60-63  step type
+ *   bits 32-59  index1 (28 bits)
+ *   bits  0-31  index2 for COMPARE/SWAP, value for SET, range end for LANE,
+ *               step count for GROUP
+ * </pre>
+ * Recording a step is a single array store, and a trace costs 8 bytes per step
+ * instead of a SortingStep object plus its list slot.
+ */
+public class SortingTrace implements StepSink, RecordedTrace {
+
+    public enum StepType { COMPARE, SWAP, SET, HIGHLIGHT, LANE, GROUP }
+
+    private static final StepType[] TYPES = StepType.values();
+    private static final int TYPE_SHIFT = 60;
+    private static final int INDEX_SHIFT = 32;
+    private static final long INDEX_MASK = (1L << 28) - 1;
+    private static final long PAYLOAD_MASK = 0xFFFFFFFFL;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Largest array index that fits in a packed step. */
+    public static final int MAX_INDEX = (int) INDEX_MASK;
+
+    private long[] steps;
+    private int size;
+
+    public SortingTrace() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public SortingTrace(int initialCapacity) {
+        steps = new long[Math.max(16, initialCapacity)];
+    }
+
+    // ==================== RECORDING ====================
+
+    @Override
+    public void compare(int index1, int index2) {
+        add(encode(StepType.COMPARE, index1, index2));
+    }
+
+    @Override
+    public void swap(int index1, int index2) {
+        add(encode(StepType.SWAP, index1, index2));
+    }
+
+    @Override
+    public void set(int index, int value) {
+        add(encode(StepType.SET, index, value));
+    }
+
+    @Override
+    public void highlight(int index) {
+        add(encode(StepType.HIGHLIGHT, index, -1));
+    }
+
+    @Override
+    public void lane(int from, int to) {
+        add(encode(StepType.LANE, from, to));
+    }
+
+    @Override
+    public void group(int steps) {
+        add(encode(StepType.GROUP, 0, steps));
+    }
+
+    @Override
+    public StepSink fork() {
+        return new SortingTrace();
+    }
+
+    /** Appends the workers' steps round-robin, one step from each in turn. */
+    @Override
+    public void join(StepSink... workers) {
+        SortingTrace[] traces = new SortingTrace[workers.length];
+        long total = size;
+        int longest = 0;
+        for (int w = 0; w < workers.length; w++) {
+            if (!(workers[w] instanceof SortingTrace trace)) {
+                throw new IllegalArgumentException("Can only join traces forked from a trace");
+            }
+            traces[w] = trace;
+            total += trace.size;
+            longest = Math.max(longest, trace.size);
+        }
+        ensureCapacity(total);
+        for (int i = 0; i < longest; i++) {
+            for (SortingTrace trace : traces) {
+                if (i < trace.size) {
+                    steps[size++] = trace.steps[i];
+                }
+            }
+        }
+    }
+
+    public void add(long step) {
+        if (size == steps.length) {
+            grow();
+        }
+        steps[size++] = step;
+    }
+
+    private void ensureCapacity(long required) {
+        if (required > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Sorting trace exceeds maximum length");
+        }
+        while (steps.length < required) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        int newCapacity = steps.length + (steps.length >> 1);
+        if (newCapacity < 0 || newCapacity > Integer.MAX_VALUE - 8) {
+            if (steps.length == Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Sorting trace exceeds maximum length");
+            }
+            newCapacity = Integer.MAX_VALUE - 8;
+        }
+        steps = Arrays.copyOf(steps, newCapacity);
+    }
+
+    // ==================== ACCESS ====================
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long stepCount() {
+        return size;
+    }
+
+    public long get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Step " + position + " of " + size);
+        }
+        return steps[position];
+    }
+
+    /** Approximate heap footprint of the recorded steps. */
+    @Override
+    public long sizeInBytes() {
+        return (long) steps.length * Long.BYTES;
+    }
+
+    /** Releases unused capacity once recording is finished. */
+    public void trimToSize() {
+        if (steps.length > size) {
+            steps = Arrays.copyOf(steps, Math.max(16, size));
+        }
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public Cursor openCursor() {
+        return cursor();
+    }
+
+    /**
+     * Forward reader over the trace. Returns packed steps that are decoded with
+     * the static accessors below, so iterating allocates nothing.
+     */
+    public class Cursor implements StepCursor {
+        private int position;
+
+        @Override
+        public boolean hasNext() {
+            return position < size;
+        }
+
+        @Override
+        public long next() {
+            if (position >= size) {
+                throw new IllegalStateException("No more steps in trace");
+            }
+            return steps[position++];
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public long totalSteps() {
+            return size;
+        }
+
+        public void rewind() {
+            position = 0;
+        }
+
+        public void seek(int position) {
+            if (position < 0 || position > size) {
+                throw new IndexOutOfBoundsException("Step " + position + " of " + size);
+            }
+            this.position = position;
+        }
+    }
+
+    /** Re-issues every recorded step, in order, to another sink. */
+    public void replayInto(StepSink sink) {
+        for (int i = 0; i < size; i++) {
+            long step = steps[i];
+            int index1 = index1(step);
+            switch (type(step)) {
+                case COMPARE -> sink.compare(index1, (int) step);
+                case SWAP -> sink.swap(index1, (int) step);
+                case SET -> sink.set(index1, (int) step);
+                case HIGHLIGHT -> sink.highlight(index1);
+                case LANE -> sink.lane(index1, (int) step);
+                case GROUP -> sink.group((int) step);
+            }
+        }
+    }
+
+    /** Applies the data movement of a step (SWAP or SET) to the array. */
+    public static void applyTo(int[] array, long step) {
+        switch (type(step)) {
+            case SWAP -> {
+                int index1 = index1(step);
+                int index2 = (int) step;
+                int temp = array[index1];
+                array[index1] = array[index2];
+                array[index2] = temp;
+            }
+            case SET -> array[index1(step)] = (int) step;
+            default -> { }
+        }
+    }
+
+    // ==================== ENCODING ====================
+
+    public static long encode(StepType type, int index1, int payload) {
+        if (index1 < 0 || index1 > MAX_INDEX) {
+            throw new IllegalArgumentException("Index out of range for packed step: " + index1);
+        }
+        return ((long) type.ordinal() << TYPE_SHIFT)
+                | ((long) index1 << INDEX_SHIFT)
+                | (payload & PAYLOAD_MASK);
+    }
+
+    public static StepType type(long step) {
+        return TYPES[(int) (step >>> TYPE_SHIFT)];
+    }
+
+    public static int index1(long step) {
+        return (int) ((step >>> INDEX_SHIFT) & INDEX_MASK);
+    }
+
+    public static int index2(long step) {
+        StepType type = type(step);
+        return type == StepType.COMPARE || type == StepType.SWAP ? (int) step : -1;
+    }
+
+    public static int value(long step) {
+        return type(step) == StepType.SET ? (int) step : -1;
+    }
+
+    /** Number of steps a GROUP marker covers, not counting the marker. */
+    public static int groupSize(long step) {
+        return type(step) == StepType.GROUP ? (int) step : 0;
+    }
+
+    /** Exclusive end of the range a LANE step marks. */
+    public static int laneEnd(long step) {
+        return type(step) == StepType.LANE ? (int) step : -1;
+    }
+}
@@ -0,0 +1,34 @@
+package com.simulator;
+
+/**
+ * Forward-only reader over a sequence of packed sorting steps
+ * (see {@link SortingTrace} for the encoding).
+ */
+public interface StepCursor extends AutoCloseable {
+
+    /** Returned by {@link #totalSteps()} when the length is not known yet. */
+    long UNKNOWN_LENGTH = -1;
+
+    boolean hasNext();
+
+    /**
+     * Whether {@link #hasNext()} can answer without waiting. Cursors filled
+     * by another thread return false while the next steps are still being
+     * produced, so the FX thread can skip a frame instead of blocking.
+     */
+    default boolean isReady() {
+        return true;
+    }
+
+    long next();
+
+    /** Number of steps consumed so far. */
+    long position();
+
+    long totalSteps();
+
+    @Override
+    default void close() {
+        // Nothing to release by default
+    }
+}
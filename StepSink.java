@@ -0,0 +1,98 @@
+package com.simulator;
+
+/**
+ * Receiver for the operations a sorting algorithm performs.
+ * Algorithms report every compare/swap/set/highlight here instead of
+ * allocating step objects, so the same sort can record a trace or run bare.
+ */
+public interface StepSink {
+
+    void compare(int index1, int index2);
+
+    void swap(int index1, int index2);
+
+    void set(int index, int value);
+
+    void highlight(int index);
+
+    /**
+     * Block copy: {@code values[offset .. offset+length)} written to consecutive
+     * indices starting at {@code from}. Same as that many {@link #set} calls,
+     * which is what the default does; compact sinks can store it as one record.
+     */
+    default void setRange(int from, int[] values, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            set(from + i, values[offset + i]);
+        }
+    }
+
+    /** The algorithm entered a recursive call; sinks that track depth count these. */
+    default void enterCall() {
+    }
+
+    /** Matches an {@link #enterCall()} when the call returns. */
+    default void exitCall() {
+    }
+
+    /** The algorithm now holds this many bytes of scratch memory besides the array. */
+    default void allocate(long bytes) {
+    }
+
+    /** Scratch memory from {@link #allocate} was dropped. */
+    default void release(long bytes) {
+    }
+
+    /**
+     * Marks the next {@code steps} steps as one parallel group, e.g. a layer of
+     * sorting-network comparators, so players apply them as one unit. The
+     * marker itself counts as a step. Sinks that don't record steps ignore it.
+     */
+    default void group(int steps) {
+    }
+
+    /** How evenly a parallel sort split its work. Sinks that don't measure runs ignore it. */
+    default void loadBalance(LoadBalance balance) {
+    }
+
+    /** Marks [from, to) as the range one parallel worker owns. Sinks that don't show lanes ignore it. */
+    default void lane(int from, int to) {
+    }
+
+    /**
+     * Fresh sink of the same kind for a parallel worker to record into. Workers
+     * are handed back through {@link #join} once they finish.
+     */
+    default StepSink fork() {
+        return new SortingTrace();
+    }
+
+    /**
+     * Folds in finished workers forked from this sink. Workers cover disjoint
+     * ranges, so their steps are interleaved to replay side by side.
+     */
+    default void join(StepSink... workers) {
+        SortingTrace merged = new SortingTrace();
+        merged.join(workers);
+        merged.replayInto(this);
+    }
+
+    /**
+     * Like {@link #join}, for workers whose steps all happened at once. When
+     * the workers recorded traces, their steps are preceded by a {@link #group}
+     * marker covering all of them.
+     */
+    default void joinGroup(StepSink... workers) {
+        long steps = 0;
+        for (StepSink worker : workers) {
+            if (!(worker instanceof SortingTrace trace)) {
+                join(workers);
+                return;
+            }
+            steps += trace.size();
+        }
+        if (steps > 0) {
+            group((int) Math.min(steps, Integer.MAX_VALUE));
+        }
+        join(workers);
+    }
+}
@@ -0,0 +1,231 @@
+package com.simulator;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pull-based step source. The algorithm runs on a producer thread and hands
+ * steps over in fixed-size blocks through a bounded queue, so it only runs a
+ * few blocks ahead of the consumer and memory stays constant regardless of how
+ * long the trace is.
+ * <p>
+ * Parallel sorts stream too: every forked worker fills blocks of its own and
+ * queues them as they fill, so workers' steps arrive interleaved in the order
+ * they were produced. Workers own disjoint ranges, so that order replays
+ * correctly. GROUP markers from joins are not kept, as the grouped steps have
+ * already been streamed by then.
+ */
+public class StepStream implements StepCursor {
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final int MAX_BUFFERED_BLOCKS = 8;
+    private static final Block END = new Block(0);
+    // How often a producer blocked on a full queue checks whether the stream was closed
+    private static final long CLOSED_CHECK_MILLIS = 50;
+
+    private final BlockingQueue<Block> filled = new ArrayBlockingQueue<>(MAX_BUFFERED_BLOCKS);
+    private final BlockingQueue<Block> free = new ArrayBlockingQueue<>(MAX_BUFFERED_BLOCKS + 2);
+    private final Thread producer;
+
+    private Block current;
+    private Block prefetched;
+    private int readIndex;
+    private long position;
+    private boolean finished;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    public StepStream(SortingAlgorithm algorithm, int[] array) {
+        int[] input = Arrays.copyOf(array, array.length);
+        producer = new Thread(() -> produce(algorithm, input), "step-stream-producer");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    // ==================== PRODUCER SIDE ====================
+
+    private void produce(SortingAlgorithm algorithm, int[] input) {
+        BlockSink sink = new BlockSink();
+        try {
+            algorithm.sort(input, sink);
+            sink.flush();
+        } catch (Throwable t) {
+            // Workers that saw the stream close may surface it wrapped by the pool
+            if (closed) return;
+            failure = t;
+        }
+        try {
+            filled.put(END);
+        } catch (InterruptedException ignored) {
+            // Consumer already closed the stream
+        }
+    }
+
+    private class BlockSink implements StepSink {
+        // Taken on the first append, so forked workers that record nothing hold no block
+        private Block block;
+
+        @Override
+        public void compare(int index1, int index2) {
+            append(SortingTrace.encode(SortingTrace.StepType.COMPARE, index1, index2));
+        }
+
+        @Override
+        public void swap(int index1, int index2) {
+            append(SortingTrace.encode(SortingTrace.StepType.SWAP, index1, index2));
+        }
+
+        @Override
+        public void set(int index, int value) {
+            append(SortingTrace.encode(SortingTrace.StepType.SET, index, value));
+        }
+
+        @Override
+        public void highlight(int index) {
+            append(SortingTrace.encode(SortingTrace.StepType.HIGHLIGHT, index, -1));
+        }
+
+        @Override
+        public void lane(int from, int to) {
+            append(SortingTrace.encode(SortingTrace.StepType.LANE, from, to));
+        }
+
+        @Override
+        public void group(int steps) {
+            append(SortingTrace.encode(SortingTrace.StepType.GROUP, 0, steps));
+        }
+
+        /** Queues what this sink has so far, so the worker's steps come after it. */
+        @Override
+        public StepSink fork() {
+            flush();
+            return new BlockSink();
+        }
+
+        /** The workers' full blocks are already queued; only their last partial blocks are left. */
+        @Override
+        public void join(StepSink... workers) {
+            flush();
+            for (StepSink worker : workers) {
+                if (!(worker instanceof BlockSink blockSink)) {
+                    throw new IllegalArgumentException("Can only join sinks forked from this stream");
+                }
+                blockSink.flush();
+            }
+        }
+
+        private void append(long step) {
+            if (block == null) {
+                Block recycled = free.poll();
+                block = recycled != null ? recycled : new Block(BLOCK_SIZE);
+                block.size = 0;
+            }
+            block.steps[block.size++] = step;
+            if (block.size == BLOCK_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (block == null || block.size == 0) return;
+            try {
+                // Pool workers are not interrupted by close(), so they poll for it instead
+                while (!filled.offer(block, CLOSED_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (closed) throw new StreamClosedException();
+                }
+                block = null;
+            } catch (InterruptedException e) {
+                throw new StreamClosedException();
+            }
+        }
+    }
+
+    // ==================== CONSUMER SIDE ====================
+
+    /** True once the next step, or the end, is buffered; false while the producer is behind. */
+    @Override
+    public boolean isReady() {
+        if (finished || (current != null && readIndex < current.size)) return true;
+        if (prefetched == null) {
+            prefetched = filled.poll();
+        }
+        return prefetched != null;
+    }
+
+    /** Waits for the producer when nothing is buffered; check {@link #isReady()} first to avoid that. */
+    @Override
+    public boolean hasNext() {
+        if (finished) return false;
+        if (current != null && readIndex < current.size) return true;
+
+        if (current != null) {
+            free.offer(current);
+            current = null;
+        }
+        try {
+            Block next = prefetched != null ? prefetched : filled.take();
+            prefetched = null;
+            if (next == END) {
+                finished = true;
+                if (failure != null) {
+                    throw new IllegalStateException("Step generation failed", failure);
+                }
+                return false;
+            }
+            current = next;
+            readIndex = 0;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = true;
+            return false;
+        }
+    }
+
+    @Override
+    public long next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more steps in stream");
+        }
+        position++;
+        return current.steps[readIndex++];
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public long totalSteps() {
+        return finished ? position : UNKNOWN_LENGTH;
+    }
+
+    /** Stops the producer and drops any buffered steps. */
+    @Override
+    public void close() {
+        finished = true;
+        closed = true;
+        producer.interrupt();
+        prefetched = null;
+        filled.clear();
+    }
+
+    private static final class Block {
+        final long[] steps;
+        int size;
+
+        Block(int capacity) {
+            steps = new long[capacity];
+        }
+    }
+
+    private static final class StreamClosedException extends RuntimeException {
+        StreamClosedException() {
+            super(null, null, false, false);
+        }
+    }
+}
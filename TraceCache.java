@@ -0,0 +1,123 @@
+package com.simulator;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least-recently-used cache of finished traces, so resetting and replaying the
+ * same array with the same algorithm skips regeneration. Entries are keyed by
+ * algorithm name, sequential cutoff and a fingerprint of the input; the input
+ * itself is kept to rule out hash collisions. Eviction is by total size in
+ * bytes (trace, checkpoints and input) rather than by entry count.
+ * Access is synchronized, since the sorting and race views share the cache.
+ */
+public class TraceCache {
+
+    /** Default heap allowance for all cached traces together. */
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    private final long maxBytes;
+    // Access order: iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public TraceCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public TraceCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /** A cached recording together with its seek snapshots (null for compressed traces). */
+    public record Entry(int[] input, RecordedTrace trace, TraceCheckpoints checkpoints) {
+        long sizeInBytes() {
+            return trace.sizeInBytes() + (checkpoints != null ? checkpoints.sizeInBytes() : 0)
+                    + (long) input.length * Integer.BYTES;
+        }
+    }
+
+    private record Key(String algorithm, int cutoff, int length, int fingerprint) {
+    }
+
+    /** Cached trace of {@code algorithm} on {@code input}, or null; counts a hit or a miss. */
+    public synchronized Entry get(String algorithm, int cutoff, int[] input) {
+        Entry entry = entries.get(keyOf(algorithm, cutoff, input));
+        if (entry != null && Arrays.equals(entry.input(), input)) {
+            hits++;
+            return entry;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Caches a finished trace, evicting the least recently used entries until
+     * it fits. A trace larger than the whole cache is not stored.
+     */
+    public synchronized void put(String algorithm, int cutoff, int[] input,
+                                 RecordedTrace trace, TraceCheckpoints checkpoints) {
+        Entry entry = new Entry(Arrays.copyOf(input, input.length), trace, checkpoints);
+        long size = entry.sizeInBytes();
+        Entry previous = entries.remove(keyOf(algorithm, cutoff, input));
+        if (previous != null) totalBytes -= previous.sizeInBytes();
+        if (size > maxBytes) return;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (totalBytes + size > maxBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().sizeInBytes();
+            eldest.remove();
+            evictions++;
+        }
+        entries.put(keyOf(algorithm, cutoff, input), entry);
+        totalBytes += size;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long sizeInBytes() {
+        return totalBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** One-line summary for logs and status labels. */
+    public synchronized String describe() {
+        long lookups = hits + misses;
+        return String.format("%d hits, %d misses (%.0f%% hit rate), %d traces, %s of %s",
+                hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups, entries.size(),
+                SortMetrics.formatBytes(totalBytes), SortMetrics.formatBytes(maxBytes));
+    }
+
+    private static Key keyOf(String algorithm, int cutoff, int[] input) {
+        return new Key(algorithm, cutoff, input.length, Arrays.hashCode(input));
+    }
+}
@@ -0,0 +1,160 @@
+package com.simulator;
+
+import java.util.Arrays;
+
+/**
+ * Array snapshots taken every {@code interval} steps of a recorded trace, so
+ * any step can be reached by restoring the nearest earlier snapshot and
+ * replaying at most {@code interval - 1} steps. The interval is picked so all
+ * snapshots together stay within a memory budget.
+ * LANE steps are indexed separately, because lane shading is not part of the
+ * array state but still has to be rebuilt after a seek. GROUP markers are
+ * indexed too, so stepping back can land on the start of a parallel group.
+ */
+public class TraceCheckpoints {
+
+    /** Default heap allowance for the snapshots of one trace. */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+    // Below this spacing replaying is cheaper than copying a snapshot
+    private static final int MIN_INTERVAL = 256;
+
+    private final SortingTrace trace;
+    private final int interval;
+    private final int[][] snapshots;
+    private final long[] comparisons;
+    private final long[] swaps;
+    private final long[] reads;
+    private final long[] writes;
+    private final long[] laneSteps;
+    private final int[] lanePositions;
+    private final int[] groupPositions;
+    private final int[] groupSizes;
+
+    public TraceCheckpoints(SortingTrace trace, int[] initial) {
+        this(trace, initial, DEFAULT_MEMORY_BUDGET);
+    }
+
+    public TraceCheckpoints(SortingTrace trace, int[] initial, long memoryBudget) {
+        this.trace = trace;
+        this.interval = chooseInterval(trace.size(), initial.length, memoryBudget);
+
+        int count = trace.size() / interval + 1;
+        snapshots = new int[count][];
+        comparisons = new long[count];
+        swaps = new long[count];
+        reads = new long[count];
+        writes = new long[count];
+
+        int[] working = Arrays.copyOf(initial, initial.length);
+        CountingSink counter = new CountingSink();
+        int laneCount = 0;
+        long[] lanes = new long[16];
+        int[] positions = new int[16];
+        int groupCount = 0;
+        int[] groupStarts = new int[16];
+        int[] groupLengths = new int[16];
+
+        for (int position = 0; position <= trace.size(); position++) {
+            if (position % interval == 0) {
+                int index = position / interval;
+                snapshots[index] = Arrays.copyOf(working, working.length);
+                comparisons[index] = counter.getComparisons();
+                swaps[index] = counter.getSwaps();
+                reads[index] = counter.getReads();
+                writes[index] = counter.getWrites();
+            }
+            if (position == trace.size()) break;
+
+            long step = trace.get(position);
+            counter.add(step);
+            if (SortingTrace.type(step) == SortingTrace.StepType.LANE) {
+                if (laneCount == lanes.length) {
+                    lanes = Arrays.copyOf(lanes, laneCount * 2);
+                    positions = Arrays.copyOf(positions, laneCount * 2);
+                }
+                lanes[laneCount] = step;
+                positions[laneCount] = position;
+                laneCount++;
+            } else if (SortingTrace.type(step) == SortingTrace.StepType.GROUP) {
+                if (groupCount == groupStarts.length) {
+                    groupStarts = Arrays.copyOf(groupStarts, groupCount * 2);
+                    groupLengths = Arrays.copyOf(groupLengths, groupCount * 2);
+                }
+                groupStarts[groupCount] = position;
+                groupLengths[groupCount] = SortingTrace.groupSize(step);
+                groupCount++;
+            }
+            SortingTrace.applyTo(working, step);
+        }
+        laneSteps = Arrays.copyOf(lanes, laneCount);
+        lanePositions = Arrays.copyOf(positions, laneCount);
+        groupPositions = Arrays.copyOf(groupStarts, groupCount);
+        groupSizes = Arrays.copyOf(groupLengths, groupCount);
+    }
+
+    private static int chooseInterval(int steps, int arrayLength, long memoryBudget) {
+        long snapshotBytes = Math.max(1, (long) arrayLength * Integer.BYTES);
+        long affordable = Math.max(1, memoryBudget / snapshotBytes);
+        long interval = (steps + affordable - 1) / affordable;
+        return (int) Math.max(MIN_INTERVAL, Math.min(interval, Integer.MAX_VALUE));
+    }
+
+    public SortingTrace getTrace() {
+        return trace;
+    }
+
+    /** Steps between snapshots; a seek replays fewer than this many steps. */
+    public int getInterval() {
+        return interval;
+    }
+
+    public long sizeInBytes() {
+        long arrayBytes = snapshots.length == 0 ? 0 : (long) snapshots[0].length * Integer.BYTES;
+        return snapshots.length * (arrayBytes + 4L * Long.BYTES);
+    }
+
+    /** Last snapshot at or before the given step. */
+    public int checkpointFor(long position) {
+        long clamped = Math.max(0, Math.min(position, trace.size()));
+        return (int) (clamped / interval);
+    }
+
+    public int positionOf(int checkpoint) {
+        return checkpoint * interval;
+    }
+
+    /** Copies the array state of a snapshot into target, which must have the trace's array length. */
+    public void restore(int checkpoint, int[] target) {
+        int[] snapshot = snapshots[checkpoint];
+        System.arraycopy(snapshot, 0, target, 0, snapshot.length);
+    }
+
+    /** Operation counts up to a snapshot; timing, memory and depth are not part of a trace. */
+    public SortMetrics metricsAt(int checkpoint) {
+        return new SortMetrics(comparisons[checkpoint], swaps[checkpoint], reads[checkpoint], writes[checkpoint], 0, 0, 0, null);
+    }
+
+    /** Number of LANE steps recorded before the given step. */
+    public int lanesBefore(long position) {
+        int index = Arrays.binarySearch(lanePositions, (int) Math.min(position, Integer.MAX_VALUE));
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /** The i-th LANE step of the trace, packed as in {@link SortingTrace}. */
+    public long laneStep(int i) {
+        return laneSteps[i];
+    }
+
+    /**
+     * Position of the GROUP marker when the given position falls part-way
+     * through a parallel group; otherwise the position itself.
+     */
+    public long unitStart(long position) {
+        int index = Arrays.binarySearch(groupPositions, (int) Math.min(position, Integer.MAX_VALUE));
+        // Last marker strictly before the position
+        int marker = index >= 0 ? index - 1 : -index - 2;
+        if (marker < 0) return position;
+        long start = groupPositions[marker];
+        return position < start + 1 + groupSizes[marker] ? start : position;
+    }
+}
@@ -0,0 +1,303 @@
+package com.simulator;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
+/**
+ * Binary sorting trace on disk. All values are little-endian:
+ * <pre>
+ *   int    magic "ASTR"
+ *   int    format version
+ *   long   step count
+ *   int    algorithm name length, then the name in UTF-8
+ *   int    input length n, then n ints of input
+ *   (zero padding to an 8-byte boundary)
+ *   steps to end of file: version 1 packs each as a long (see {@link SortingTrace}),
+ *   version 2 uses the {@link CompressedTrace} encoding
+ * </pre>
+ * Files are written through a FileChannel from any {@link StepCursor}, so a
+ * streamed run never has to fit on the heap. Replay memory-maps the step
+ * section in windows, so multi-gigabyte traces play back without being loaded.
+ */
+public final class TraceFile implements AutoCloseable {
+
+    public static final String EXTENSION = "*.strace";
+
+    private static final int MAGIC = 0x52545341; // "ASTR" read little-endian
+    private static final int VERSION_PACKED = 1;
+    private static final int VERSION_COMPRESSED = 2;
+    private static final int STEP_COUNT_OFFSET = 8;
+    private static final int FIXED_HEADER_BYTES = 20;
+    private static final int MAX_NAME_BYTES = 1 << 16;
+    private static final int WRITE_BUFFER_STEPS = 1 << 17;
+    // Largest slice of the step section mapped at once; a mapping is int-indexed
+    private static final long MAP_WINDOW_BYTES = 1L << 28;
+    private static final long MAP_WINDOW_STEPS = MAP_WINDOW_BYTES / Long.BYTES;
+
+    private final FileChannel channel;
+    private final String algorithmName;
+    private final int[] input;
+    private final long stepCount;
+    private final long stepsOffset;
+    private final boolean compressed;
+
+    private TraceFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer fixed = readAt(channel, 0, FIXED_HEADER_BYTES);
+        if (fixed.getInt(0) != MAGIC) {
+            throw new IOException("Not a sorting trace file");
+        }
+        int version = fixed.getInt(4);
+        compressed = version == VERSION_COMPRESSED;
+        if (version != VERSION_PACKED && !compressed) {
+            throw new IOException("Unsupported trace file version " + version);
+        }
+        stepCount = fixed.getLong(STEP_COUNT_OFFSET);
+        int nameLength = fixed.getInt(16);
+        if (stepCount < 0 || nameLength < 0 || nameLength > MAX_NAME_BYTES) {
+            throw new IOException("Corrupt trace file header");
+        }
+
+        long position = FIXED_HEADER_BYTES;
+        algorithmName = StandardCharsets.UTF_8.decode(readAt(channel, position, nameLength)).toString();
+        position += nameLength;
+
+        int length = readAt(channel, position, Integer.BYTES).getInt(0);
+        if (length < 0 || length > SortingTrace.MAX_INDEX + 1) {
+            throw new IOException("Corrupt trace file header");
+        }
+        position += Integer.BYTES;
+        input = new int[length];
+        readAt(channel, position, length * Integer.BYTES).asIntBuffer().get(input);
+        position += (long) length * Integer.BYTES;
+
+        stepsOffset = align(position);
+        long minimumSize = stepsOffset + (compressed ? Math.min(stepCount, 1) : stepCount * Long.BYTES);
+        if (minimumSize > channel.size()) {
+            throw new IOException("Trace file is truncated");
+        }
+    }
+
+    public static TraceFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new TraceFile(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static long write(Path path, String algorithmName, int[] input, SortingTrace trace) throws IOException {
+        return write(path, algorithmName, input, trace.cursor(), false, written -> { });
+    }
+
+    /**
+     * Drains the cursor into a new file at path.
+     *
+     * @param compressed store steps in the {@link CompressedTrace} encoding instead of packed longs
+     * @param progress called with the number of steps written after every buffer flush
+     * @return number of steps written
+     */
+    public static long write(Path path, String algorithmName, int[] input, StepCursor steps,
+                             boolean compressed, LongConsumer progress) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] name = algorithmName.getBytes(StandardCharsets.UTF_8);
+            long headerEnd = FIXED_HEADER_BYTES + name.length + Integer.BYTES + (long) input.length * Integer.BYTES;
+            ByteBuffer header = ByteBuffer.allocate((int) align(headerEnd)).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(compressed ? VERSION_COMPRESSED : VERSION_PACKED).putLong(0).putInt(name.length).put(name).putInt(input.length);
+            header.asIntBuffer().put(input);
+            header.position(0);
+            writeFully(channel, header, 0);
+
+            long position = header.capacity();
+            long count = compressed
+                    ? writeCompressed(channel, position, steps, progress)
+                    : writePacked(channel, position, steps, progress);
+
+            // The count is only known once the cursor is drained
+            ByteBuffer countBuffer = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            countBuffer.putLong(0, count);
+            writeFully(channel, countBuffer, STEP_COUNT_OFFSET);
+            progress.accept(count);
+            return count;
+        }
+    }
+
+    private static long writePacked(FileChannel channel, long position, StepCursor steps,
+                                    LongConsumer progress) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_STEPS * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long count = 0;
+        while (steps.hasNext()) {
+            buffer.putLong(steps.next());
+            count++;
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                position += writeFully(channel, buffer, position);
+                buffer.clear();
+                progress.accept(count);
+            }
+        }
+        buffer.flip();
+        writeFully(channel, buffer, position);
+        return count;
+    }
+
+    // The encoder's buffer is drained whenever it passes the flush size; its delta
+    // state carries over, so the chunks on disk decode as one stream
+    private static long writeCompressed(FileChannel channel, long position, StepCursor steps,
+                                        LongConsumer progress) throws IOException {
+        int flushBytes = WRITE_BUFFER_STEPS * Long.BYTES;
+        CompressedTrace encoder = new CompressedTrace(flushBytes + (flushBytes >> 1));
+        long count = 0;
+        while (steps.hasNext()) {
+            encoder.add(steps.next());
+            count++;
+            if (encoder.encodedLength() >= flushBytes) {
+                position += writeFully(channel, ByteBuffer.wrap(encoder.encodedBytes(), 0, encoder.encodedLength()), position);
+                encoder.discardEncoded();
+                progress.accept(count);
+            }
+        }
+        encoder.finish();
+        writeFully(channel, ByteBuffer.wrap(encoder.encodedBytes(), 0, encoder.encodedLength()), position);
+        return count;
+    }
+
+    // ==================== ACCESS ====================
+
+    public String getAlgorithmName() {
+        return algorithmName;
+    }
+
+    /** The array the recorded run started from. */
+    public int[] getInput() {
+        return input.clone();
+    }
+
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    /** Whether steps are stored in the {@link CompressedTrace} encoding. */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public StepCursor cursor() {
+        if (!compressed) {
+            return new Cursor();
+        }
+        try {
+            long sectionBytes = channel.size() - stepsOffset;
+            return new CompressedTrace.Decoder(mapSection(0, sectionBytes), sectionBytes, stepCount,
+                    offset -> mapSection(offset, sectionBytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map trace file", e);
+        }
+    }
+
+    private ByteBuffer mapSection(long offset, long sectionBytes) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, stepsOffset + offset,
+                    Math.min(MAP_WINDOW_BYTES, sectionBytes - offset));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map trace file", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Forward reader over the mapped step section of a packed file. A new
+     * window is mapped whenever the position leaves the current one.
+     */
+    public class Cursor implements StepCursor {
+        private long position;
+        private ByteBuffer window;
+        private long windowStart;
+        private long windowEnd;
+
+        @Override
+        public boolean hasNext() {
+            return position < stepCount;
+        }
+
+        @Override
+        public long next() {
+            if (position >= stepCount) {
+                throw new IllegalStateException("No more steps in trace file");
+            }
+            if (window == null || position < windowStart || position >= windowEnd) {
+                mapWindow(position);
+            }
+            return window.getLong((int) ((position++ - windowStart) * Long.BYTES));
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public long totalSteps() {
+            return stepCount;
+        }
+
+        public void seek(long position) {
+            if (position < 0 || position > stepCount) {
+                throw new IndexOutOfBoundsException("Step " + position + " of " + stepCount);
+            }
+            this.position = position;
+        }
+
+        private void mapWindow(long first) {
+            long steps = Math.min(MAP_WINDOW_STEPS, stepCount - first);
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, stepsOffset + first * Long.BYTES, steps * Long.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not map trace file", e);
+            }
+            windowStart = first;
+            windowEnd = first + steps;
+        }
+    }
+
+    // ==================== IO HELPERS ====================
+
+    private static long align(long position) {
+        return (position + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Trace file is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+}
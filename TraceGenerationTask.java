@@ -0,0 +1,182 @@
+package com.simulator;
+
+import javafx.concurrent.Task;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background task that records a full sorting trace off the JavaFX thread.
+ * Packed traces are indexed with {@link TraceCheckpoints} for seeking; long
+ * runs can be recorded as a {@link CompressedTrace} instead. Progress is
+ * reported against the algorithm's step estimate, and the sort is aborted
+ * promptly once the task is cancelled. Workers of parallel sorts get sinks
+ * that do the same, so progress and cancellation are not held up until the
+ * workers are joined.
+ */
+public class TraceGenerationTask extends Task<RecordedTrace> {
+
+    // Traces estimated above this many steps are streamed while playing instead of recorded in full
+    static final long MAX_RECORDED_STEPS = 50_000_000L;
+    // Above this, recorded traces are kept in the compact encoding, without seek checkpoints
+    static final long MAX_PACKED_STEPS = 8_000_000L;
+
+    // How many steps are recorded between progress updates / cancellation checks
+    private static final int PROGRESS_INTERVAL = 1 << 14;
+    private static final int MAX_PRESIZED_CAPACITY = 1 << 24;
+
+    private final SortingAlgorithm algorithm;
+    private final String algorithmName;
+    private final int[] input;
+    private final boolean compressed;
+    // Steps reported by the sort so far, summed over all worker sinks
+    private final AtomicLong generatedSteps = new AtomicLong();
+    private volatile TraceCheckpoints checkpoints;
+
+    public TraceGenerationTask(String algorithmName, SortingAlgorithm algorithm, int[] array) {
+        this(algorithmName, algorithm, array, false);
+    }
+
+    public TraceGenerationTask(String algorithmName, SortingAlgorithm algorithm, int[] array, boolean compressed) {
+        this.algorithmName = algorithmName;
+        this.algorithm = algorithm;
+        this.input = Arrays.copyOf(array, array.length);
+        this.compressed = compressed;
+    }
+
+    public String getAlgorithmName() {
+        return algorithmName;
+    }
+
+    /** Seek snapshots for a packed trace, available once the task has succeeded; null when compressed. */
+    public TraceCheckpoints getCheckpoints() {
+        return checkpoints;
+    }
+
+    @Override
+    protected RecordedTrace call() {
+        long estimate = Math.max(1, algorithm.estimateSteps(input.length));
+        updateMessage("Generating " + algorithmName + " steps...");
+        if (compressed) {
+            CompressedTrace trace = new CompressedTrace();
+            algorithm.sort(Arrays.copyOf(input, input.length), new ProgressSink(trace, estimate));
+            trace.trimToSize();
+            checkCancelled();
+            updateProgress(1, 1);
+            updateMessage("Generated " + trace.stepCount() + " steps (" + trace.sizeInBytes() / 1024 + " KB compressed)");
+            return trace;
+        }
+
+        SortingTrace trace = new SortingTrace((int) Math.min(estimate, MAX_PRESIZED_CAPACITY));
+        algorithm.sort(Arrays.copyOf(input, input.length), new ProgressSink(trace, estimate));
+
+        trace.trimToSize();
+        checkCancelled();
+        updateMessage("Indexing " + trace.size() + " steps for seeking...");
+        checkpoints = new TraceCheckpoints(trace, input);
+        updateProgress(1, 1);
+        updateMessage("Generated " + trace.size() + " steps");
+        return trace;
+    }
+
+    private void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Trace generation cancelled");
+        }
+    }
+
+    private class ProgressSink implements StepSink {
+        private final StepSink trace;
+        private final long estimate;
+        private int pending;
+
+        ProgressSink(StepSink trace, long estimate) {
+            this.trace = trace;
+            this.estimate = estimate;
+        }
+
+        @Override
+        public void compare(int index1, int index2) {
+            trace.compare(index1, index2);
+            tick(1);
+        }
+
+        @Override
+        public void swap(int index1, int index2) {
+            trace.swap(index1, index2);
+            tick(1);
+        }
+
+        @Override
+        public void set(int index, int value) {
+            trace.set(index, value);
+            tick(1);
+        }
+
+        @Override
+        public void setRange(int from, int[] values, int offset, int length) {
+            trace.setRange(from, values, offset, length);
+            tick(length);
+        }
+
+        @Override
+        public void highlight(int index) {
+            trace.highlight(index);
+            tick(1);
+        }
+
+        @Override
+        public void lane(int from, int to) {
+            trace.lane(from, to);
+            tick(1);
+        }
+
+        @Override
+        public void group(int steps) {
+            trace.group(steps);
+            tick(1);
+        }
+
+        /** Workers record into a fork of the trace, checking progress as they go. */
+        @Override
+        public StepSink fork() {
+            return new ProgressSink(trace.fork(), estimate);
+        }
+
+        @Override
+        public void join(StepSink... workers) {
+            trace.join(unwrap(workers));
+            tick(0);
+        }
+
+        @Override
+        public void joinGroup(StepSink... workers) {
+            trace.joinGroup(unwrap(workers));
+            tick(0);
+        }
+
+        // Also takes over steps the workers had not reported, so many short workers still add up
+        private StepSink[] unwrap(StepSink[] workers) {
+            StepSink[] traces = new StepSink[workers.length];
+            for (int w = 0; w < workers.length; w++) {
+                ProgressSink worker = (ProgressSink) workers[w];
+                traces[w] = worker.trace;
+                pending += worker.pending;
+                worker.pending = 0;
+            }
+            return traces;
+        }
+
+        private void tick(int steps) {
+            pending += steps;
+            if (pending < PROGRESS_INTERVAL) return;
+            long generated = generatedSteps.addAndGet(pending);
+            pending = 0;
+            checkCancelled();
+            // The estimate is approximate, so hold back the last percent until the sort returns
+            updateProgress(Math.min(generated, estimate * 99 / 100), estimate);
+            updateMessage("Generating " + algorithmName + " steps... (" + generated + " recorded)");
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.simulator.bench;
+
+import com.simulator.CountingSink;
+import com.simulator.SortingAlgorithm;
+import com.simulator.SortingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Large-input raw sorts for the sub-quadratic algorithms, the sizes the
+ * headless measure mode is meant for. Nothing is recorded here; the
+ * quadratic sorts and trace recording are covered by {@link SortingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class HeadlessScalingBenchmark {
+
+    @Param({"Merge Sort", "Quick Sort", "Heap Sort", "Shell Sort", "Radix Sort", "Counting Sort",
+            "Intro Sort", "Dual-Pivot Quick Sort", "Tim Sort", "Pattern-Defeating Quick Sort",
+            "Parallel Merge Sort", "Parallel Quick Sort", "Parallel Sample Sort", "American Flag Sort",
+            "Bitonic Sort", "Odd-Even Merge Sort"})
+    private String algorithmName;
+
+    @Param({"100000", "1000000", "10000000"})
+    private int size;
+
+    private SortingAlgorithm algorithm;
+    private int[] input;
+
+    @Setup
+    public void setUp() {
+        algorithm = new SortingService().getAlgorithm(algorithmName);
+        input = InputDistribution.RANDOM.generate(size);
+    }
+
+    @Benchmark
+    public long sortOnly() {
+        CountingSink sink = new CountingSink();
+        algorithm.sort(Arrays.copyOf(input, input.length), sink);
+        return sink.getComparisons() + sink.getSwaps() + sink.getWrites();
+    }
+}
@@ -0,0 +1,38 @@
+package com.simulator.bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * Input shapes the benchmarks sort. Generation is seeded so every fork
+ * sorts exactly the same data.
+ */
+public enum InputDistribution {
+    RANDOM,
+    SORTED,
+    REVERSED,
+    /** About sqrt(n) distinct values, each repeated many times. */
+    FEW_UNIQUE;
+
+    private static final long SEED = 0x5EED_2024L;
+
+    public int[] generate(int size) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        int[] data = new int[size];
+        switch (this) {
+            case RANDOM -> {
+                for (int i = 0; i < size; i++) data[i] = random.nextInt(size);
+            }
+            case SORTED -> {
+                for (int i = 0; i < size; i++) data[i] = i;
+            }
+            case REVERSED -> {
+                for (int i = 0; i < size; i++) data[i] = size - 1 - i;
+            }
+            case FEW_UNIQUE -> {
+                int distinct = Math.max(1, (int) Math.sqrt(size));
+                for (int i = 0; i < size; i++) data[i] = random.nextInt(distinct);
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,75 @@
+package com.simulator.bench;
+
+import com.simulator.CountingSink;
+import com.simulator.SortingAlgorithm;
+import com.simulator.SortingService;
+import com.simulator.SortingTrace;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every registered algorithm across sizes and input shapes. {@link #sortOnly}
+ * runs against a {@link CountingSink}; {@link #sortAndRecord} builds the full
+ * {@link SortingTrace}, so the gap between the two is the recording cost.
+ * {@link #copyBaseline} measures the defensive input copy both of them pay.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// Quick Sort recurses n deep on sorted input, and traces can run to hundreds of MB
+@Fork(value = 1, jvmArgsAppend = {"-Xss64m", "-Xmx4g"})
+public class SortingBenchmark {
+
+    @Param({"Bubble Sort", "Selection Sort", "Insertion Sort", "Merge Sort", "Quick Sort",
+            "Heap Sort", "Shell Sort", "Radix Sort", "Counting Sort",
+            "Intro Sort", "Dual-Pivot Quick Sort", "Tim Sort", "Pattern-Defeating Quick Sort",
+            "Parallel Merge Sort", "Parallel Quick Sort", "Parallel Sample Sort", "American Flag Sort",
+            "Bitonic Sort", "Odd-Even Merge Sort"})
+    private String algorithmName;
+
+    @Param({"1000", "10000"})
+    private int size;
+
+    @Param({"RANDOM", "SORTED", "REVERSED", "FEW_UNIQUE"})
+    private InputDistribution distribution;
+
+    private SortingAlgorithm algorithm;
+    private int[] input;
+
+    @Setup
+    public void setUp() {
+        algorithm = new SortingService().getAlgorithm(algorithmName);
+        input = distribution.generate(size);
+    }
+
+    @Benchmark
+    public int[] copyBaseline() {
+        return Arrays.copyOf(input, input.length);
+    }
+
+    @Benchmark
+    public long sortOnly() {
+        CountingSink sink = new CountingSink();
+        algorithm.sort(Arrays.copyOf(input, input.length), sink);
+        return sink.getComparisons() + sink.getSwaps() + sink.getWrites();
+    }
+
+    @Benchmark
+    public SortingTrace sortAndRecord() {
+        return algorithm.generateSteps(Arrays.copyOf(input, input.length));
+    }
+}